@@ -0,0 +1,404 @@
+package net.sf.j2s.core;
+
+/**
+ * The output buffer for Java2ScriptVisitor: a replacement for StringBuffer
+ * with only the operations the visitor uses.
+ *
+ * Nothing is synchronized; each visitor has its own buffers. The text is kept
+ * as a list of full chunks followed by the tail chunk that is appended to.
+ * Once the tail has reached CHUNK_SIZE, appending never copies text already
+ * written. Inserting at a recorded position shifts at most the rest of one
+ * chunk; if that chunk is full, it is split there and the new text starts a
+ * chunk of its own, with room for more. Truncating with setLength just drops
+ * chunks. Nearly all reads and insertions are near the end, in the tail.
+ */
+final class Java2ScriptBuffer implements CharSequence {
+
+	/**
+	 * Most buffers are small; the tail starts at INITIAL_SIZE and doubles until
+	 * it reaches CHUNK_SIZE. Only then is a new tail started.
+	 */
+	private final static int INITIAL_SIZE = 32;
+	private final static int CHUNK_SIZE = 8192;
+
+	/**
+	 * the full chunks before the tail
+	 */
+	private char[][] chunks;
+
+	/**
+	 * number of characters in use in each full chunk
+	 */
+	private int[] lengths;
+
+	/**
+	 * position of the first character of each full chunk
+	 */
+	private int[] starts;
+
+	private int nChunks;
+
+	private char[] tail;
+	private int tailLength, tailStart;
+
+	Java2ScriptBuffer() {
+		tail = new char[INITIAL_SIZE];
+	}
+
+	Java2ScriptBuffer(String s) {
+		tail = new char[Math.max(INITIAL_SIZE, s.length())];
+		append(s);
+	}
+
+	@Override
+	public int length() {
+		return tailStart + tailLength;
+	}
+
+	private static void checkIndex(int pt, int max) {
+		if (pt < 0 || pt > max)
+			throw new StringIndexOutOfBoundsException(pt);
+	}
+
+	/**
+	 * Find the full chunk holding position pt, which must be before the tail.
+	 *
+	 * @param pt
+	 * @return chunk index
+	 */
+	private int getChunk(int pt) {
+		int lo = 0;
+		int hi = nChunks - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (starts[mid] <= pt)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	@Override
+	public char charAt(int pt) {
+		if (pt >= tailStart) {
+			checkIndex(pt, tailStart + tailLength - 1);
+			return tail[pt - tailStart];
+		}
+		checkIndex(pt, tailStart);
+		int i = getChunk(pt);
+		return chunks[i][pt - starts[i]];
+	}
+
+	void setCharAt(int pt, char c) {
+		if (pt >= tailStart) {
+			checkIndex(pt, tailStart + tailLength - 1);
+			tail[pt - tailStart] = c;
+			return;
+		}
+		checkIndex(pt, tailStart);
+		int i = getChunk(pt);
+		chunks[i][pt - starts[i]] = c;
+	}
+
+	/**
+	 * Open a slot for a full chunk at index i.
+	 *
+	 * @param i
+	 */
+	private void openChunk(int i) {
+		if (chunks == null) {
+			chunks = new char[8][];
+			lengths = new int[8];
+			starts = new int[8];
+		} else if (nChunks == chunks.length) {
+			int len = nChunks * 2;
+			char[][] c = new char[len][];
+			System.arraycopy(chunks, 0, c, 0, nChunks);
+			chunks = c;
+			int[] a = new int[len];
+			System.arraycopy(lengths, 0, a, 0, nChunks);
+			lengths = a;
+			a = new int[len];
+			System.arraycopy(starts, 0, a, 0, nChunks);
+			starts = a;
+		}
+		int nMove = nChunks - i;
+		if (nMove > 0) {
+			System.arraycopy(chunks, i, chunks, i + 1, nMove);
+			System.arraycopy(lengths, i, lengths, i + 1, nMove);
+			System.arraycopy(starts, i, starts, i + 1, nMove);
+		}
+		nChunks++;
+	}
+
+	/**
+	 * Make room in the tail for at least n more characters: grow the tail if it
+	 * is still small; otherwise make it a full chunk and start a new tail.
+	 *
+	 * @param n
+	 */
+	private void ensureRoom(int n) {
+		if (tail.length - tailLength >= n)
+			return;
+		if (tail.length < CHUNK_SIZE) {
+			char[] c = new char[Math.max(Math.min(tail.length * 2, CHUNK_SIZE), tailLength + n)];
+			System.arraycopy(tail, 0, c, 0, tailLength);
+			tail = c;
+			return;
+		}
+		openChunk(nChunks);
+		chunks[nChunks - 1] = tail;
+		lengths[nChunks - 1] = tailLength;
+		starts[nChunks - 1] = tailStart;
+		tailStart += tailLength;
+		tail = new char[Math.max(CHUNK_SIZE, n)];
+		tailLength = 0;
+	}
+
+	Java2ScriptBuffer append(String s) {
+		if (s == null)
+			s = "null";
+		int n = s.length();
+		if (tail.length - tailLength < n)
+			ensureRoom(n);
+		s.getChars(0, n, tail, tailLength);
+		tailLength += n;
+		return this;
+	}
+
+	Java2ScriptBuffer append(char c) {
+		if (tailLength == tail.length)
+			ensureRoom(1);
+		tail[tailLength++] = c;
+		return this;
+	}
+
+	Java2ScriptBuffer append(char[] c, int offset, int n) {
+		if (tail.length - tailLength < n)
+			ensureRoom(n);
+		System.arraycopy(c, offset, tail, tailLength, n);
+		tailLength += n;
+		return this;
+	}
+
+	Java2ScriptBuffer append(CharSequence s) {
+		if (s instanceof Java2ScriptBuffer && s != this) {
+			Java2ScriptBuffer b = (Java2ScriptBuffer) s;
+			for (int i = 0; i < b.nChunks; i++)
+				append(b.chunks[i], 0, b.lengths[i]);
+			return append(b.tail, 0, b.tailLength);
+		}
+		return append(s == null ? "null" : s.toString());
+	}
+
+	Java2ScriptBuffer append(Object o) {
+		return append(String.valueOf(o));
+	}
+
+	Java2ScriptBuffer append(int i) {
+		return append(String.valueOf(i));
+	}
+
+	Java2ScriptBuffer append(long l) {
+		return append(String.valueOf(l));
+	}
+
+	Java2ScriptBuffer append(boolean b) {
+		return append(b ? "true" : "false");
+	}
+
+	Java2ScriptBuffer insert(int pt, char c) {
+		return insert(pt, String.valueOf(c));
+	}
+
+	/**
+	 * Insert text at a position recorded earlier.
+	 *
+	 * @param pt
+	 * @param s
+	 * @return this
+	 */
+	Java2ScriptBuffer insert(int pt, String s) {
+		int n = s.length();
+		if (pt >= tailStart) {
+			checkIndex(pt, tailStart + tailLength);
+			int offset = pt - tailStart;
+			int rest = tailLength - offset;
+			if (tail.length - tailLength < n && tail.length < CHUNK_SIZE)
+				ensureRoom(n);
+			if (tail.length - tailLength >= n) {
+				System.arraycopy(tail, offset, tail, offset + n, rest);
+				s.getChars(0, n, tail, offset);
+				tailLength += n;
+				return this;
+			}
+			// split the tail: [head] becomes a full chunk; [s + rest] is the new tail
+			char[] t = new char[Math.max(CHUNK_SIZE, (n + rest) * 2)];
+			s.getChars(0, n, t, 0);
+			System.arraycopy(tail, offset, t, n, rest);
+			openChunk(nChunks);
+			chunks[nChunks - 1] = tail;
+			lengths[nChunks - 1] = offset;
+			starts[nChunks - 1] = tailStart;
+			tail = t;
+			tailLength = n + rest;
+			tailStart = pt;
+			return this;
+		}
+		checkIndex(pt, tailStart);
+		int i = getChunk(pt);
+		char[] chunk = chunks[i];
+		int offset = pt - starts[i];
+		int rest = lengths[i] - offset;
+		if (chunk.length - lengths[i] >= n) {
+			System.arraycopy(chunk, offset, chunk, offset + n, rest);
+			s.getChars(0, n, chunk, offset);
+			lengths[i] += n;
+		} else {
+			// split this chunk: [head][s + rest]
+			char[] t = new char[Math.max(CHUNK_SIZE, (n + rest) * 2)];
+			s.getChars(0, n, t, 0);
+			System.arraycopy(chunk, offset, t, n, rest);
+			lengths[i] = offset;
+			openChunk(++i);
+			chunks[i] = t;
+			lengths[i] = n + rest;
+			starts[i] = pt;
+		}
+		for (int j = i + 1; j < nChunks; j++)
+			starts[j] += n;
+		tailStart += n;
+		return this;
+	}
+
+	/**
+	 * Truncate the buffer; as for StringBuffer, a longer length pads with '\0'.
+	 *
+	 * @param len
+	 */
+	void setLength(int len) {
+		if (len < 0)
+			throw new StringIndexOutOfBoundsException(len);
+		if (len >= tailStart) {
+			int n = len - tailStart;
+			if (n > tailLength) {
+				ensureRoom(n - tailLength);
+				for (int i = tailLength; i < n; i++)
+					tail[i] = '\0';
+			}
+			tailLength = n;
+			return;
+		}
+		int i = getChunk(len);
+		tail = chunks[i];
+		tailStart = starts[i];
+		tailLength = len - tailStart;
+		for (int j = i; j < nChunks; j++)
+			chunks[j] = null;
+		nChunks = i;
+	}
+
+	String substring(int start) {
+		return substring(start, tailStart + tailLength);
+	}
+
+	String substring(int start, int end) {
+		checkIndex(end, tailStart + tailLength);
+		checkIndex(start, end);
+		if (start >= tailStart)
+			return new String(tail, start - tailStart, end - start);
+		char[] c = new char[end - start];
+		getChars(start, end, c);
+		return new String(c);
+	}
+
+	/**
+	 * Copy characters start through end - 1, where start is before the tail.
+	 *
+	 * @param start
+	 * @param end
+	 * @param c
+	 */
+	private void getChars(int start, int end, char[] c) {
+		int pt = 0;
+		for (int i = getChunk(start); i < nChunks && start < end; i++) {
+			int offset = start - starts[i];
+			int len = Math.min(lengths[i] - offset, end - start);
+			System.arraycopy(chunks[i], offset, c, pt, len);
+			pt += len;
+			start += len;
+		}
+		if (start < end)
+			System.arraycopy(tail, start - tailStart, c, pt, end - start);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return substring(start, end);
+	}
+
+	/**
+	 *
+	 * @param pt
+	 * @param s
+	 * @return true if s is found at pt, given that its first character is
+	 */
+	private boolean matches(int pt, String s) {
+		for (int i = 1, n = s.length(); i < n; i++)
+			if (charAt(pt + i) != s.charAt(i))
+				return false;
+		return true;
+	}
+
+	int indexOf(String s) {
+		return indexOf(s, 0);
+	}
+
+	int indexOf(String s, int from) {
+		int length = tailStart + tailLength;
+		if (s.length() == 0)
+			return Math.min(Math.max(from, 0), length);
+		char c = s.charAt(0);
+		int max = length - s.length();
+		for (int pt = Math.max(from, 0); pt <= max; pt++) {
+			if (pt >= tailStart) {
+				for (int j = pt - tailStart, n = max - tailStart; j <= n; j++)
+					if (tail[j] == c && matches(tailStart + j, s))
+						return tailStart + j;
+				break;
+			}
+			if (charAt(pt) == c && matches(pt, s))
+				return pt;
+		}
+		return -1;
+	}
+
+	int lastIndexOf(String s) {
+		return lastIndexOf(s, tailStart + tailLength);
+	}
+
+	int lastIndexOf(String s, int from) {
+		int pt = Math.min(from, tailStart + tailLength - s.length());
+		if (pt < 0)
+			return -1;
+		if (s.length() == 0)
+			return pt;
+		char c = s.charAt(0);
+		for (int j = pt - tailStart; j >= 0; j--, pt--)
+			if (tail[j] == c && matches(pt, s))
+				return pt;
+		for (; pt >= 0; pt--)
+			if (charAt(pt) == c && matches(pt, s))
+				return pt;
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		if (nChunks == 0)
+			return new String(tail, 0, tailLength);
+		return substring(0, tailStart + tailLength);
+	}
+
+}
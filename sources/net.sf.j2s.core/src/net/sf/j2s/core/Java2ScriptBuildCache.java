@@ -0,0 +1,368 @@
+package net.sf.j2s.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.Name;
+
+/**
+ * A persistent record of what each source file produced last time, kept in
+ * site/.j2scache/units.properties; from j2s.compiler.cache=true in .j2s.
+ *
+ * Each entry is keyed by a hash of the .java file, the .j2s settings, the
+ * transpiler version, and the resolved signatures of every type the file
+ * refers to -- declared methods and fields, constant values, and supertypes.
+ * When that hash has not changed and the .js files listed for it are still in
+ * the site directory just as they were written, the file is not visited and
+ * nothing is written for it.
+ *
+ * Method logging (j2s.log.methods.*) needs every file visited, so the cache is
+ * not used for those builds. Delete the .j2scache directory to force a full
+ * rebuild.
+ */
+class Java2ScriptBuildCache {
+
+	private static final String CACHE_DIR = ".j2scache";
+	private static final String CACHE_FILE = "units.properties";
+
+	/**
+	 * The parts of an entry are separated by '|'. Element names and lengths are
+	 * name:length, separated by ','; so are app and applet class names.
+	 */
+	private static final String SEP = "|";
+
+	/**
+	 * One file's output, as last written.
+	 */
+	class Entry {
+
+		String hash;
+		String packageName;
+
+		/**
+		 * {elementName, length, elementName, length, ...}
+		 */
+		String[] elements;
+		ArrayList<String> apps, applets;
+
+	}
+
+	private final File cacheFile;
+
+	private final String j2sPath;
+
+	private final String configSignature;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * hashes of type signatures, including supertypes, already computed in this
+	 * build, by binding key
+	 */
+	private final Map<String, String> htTypeHashes = new ConcurrentHashMap<>();
+
+	private boolean isChanged;
+
+	/**
+	 *
+	 * @param siteFolder
+	 * @param j2sPath         the site/swingjs/j2s directory
+	 * @param configSignature anything other than source that changes the output,
+	 *                        such as the .j2s settings
+	 * @param isClean         start afresh, but still save the new entries
+	 */
+	Java2ScriptBuildCache(String siteFolder, String j2sPath, String configSignature, boolean isClean) {
+		cacheFile = new File(new File(siteFolder, CACHE_DIR), CACHE_FILE);
+		this.j2sPath = j2sPath;
+		this.configSignature = configSignature + ";" + Java2ScriptVisitor.VERSION;
+		if (!isClean)
+			load();
+	}
+
+	private void load() {
+		if (!cacheFile.exists())
+			return;
+		Properties props = new Properties();
+		try (FileInputStream is = new FileInputStream(cacheFile)) {
+			props.load(is);
+		} catch (IOException e) {
+			System.out.println("J2S cannot read " + cacheFile + " " + e.getMessage());
+			return;
+		}
+		for (String sourceLocation : props.stringPropertyNames()) {
+			String[] parts = (props.getProperty(sourceLocation) + " ").split("\\" + SEP);
+			if (parts.length != 5)
+				continue;
+			Entry e = new Entry();
+			e.hash = parts[0];
+			e.packageName = (parts[1].length() == 0 ? null : parts[1]);
+			e.elements = parts[2].split("[,:]");
+			e.apps = split(parts[3]);
+			e.applets = split(parts[4].trim());
+			entries.put(sourceLocation, e);
+		}
+		System.out.println("J2S cache has " + entries.size() + " entr" + (entries.size() == 1 ? "y" : "ies"));
+	}
+
+	private static ArrayList<String> split(String list) {
+		ArrayList<String> a = new ArrayList<String>();
+		String[] names = list.split(",");
+		for (int i = 0; i < names.length; i++)
+			if (names[i].length() > 0)
+				a.add(names[i]);
+		return a;
+	}
+
+	private static String join(ArrayList<String> list) {
+		StringBuffer sb = new StringBuffer();
+		if (list != null)
+			for (int i = 0; i < list.size(); i++)
+				sb.append(i == 0 ? "" : ",").append(list.get(i));
+		return sb.toString();
+	}
+
+	/**
+	 * Save the entries if any have changed; from finalizeProject.
+	 */
+	void save() {
+		if (!isChanged)
+			return;
+		Properties props = new Properties();
+		for (Map.Entry<String, Entry> me : entries.entrySet()) {
+			Entry e = me.getValue();
+			StringBuffer sb = new StringBuffer();
+			for (int i = 0; i < e.elements.length; i += 2)
+				sb.append(i == 0 ? "" : ",").append(e.elements[i]).append(":").append(e.elements[i + 1]);
+			props.setProperty(me.getKey(), e.hash + SEP + (e.packageName == null ? "" : e.packageName) + SEP + sb
+					+ SEP + join(e.apps) + SEP + join(e.applets));
+		}
+		try {
+			Files.createDirectories(cacheFile.getParentFile().toPath());
+			try (FileOutputStream os = new FileOutputStream(cacheFile)) {
+				props.store(os, "J2S transpiler cache -- delete this directory to force a full build");
+			}
+		} catch (IOException e) {
+			System.out.println("J2S cannot write " + cacheFile + " " + e.getMessage());
+		}
+		isChanged = false;
+	}
+
+	/**
+	 * Get the hash that an entry for this file must match. Called before
+	 * visiting, from any thread.
+	 *
+	 * @param sourceLocation
+	 * @param root
+	 * @return the hash, or null if the source file cannot be read
+	 */
+	String getHash(String sourceLocation, CompilationUnit root) {
+		byte[] source;
+		try {
+			source = Files.readAllBytes(new File(sourceLocation).toPath());
+		} catch (IOException e) {
+			return null;
+		}
+		final TreeSet<String> types = new TreeSet<String>();
+		root.accept(new ASTVisitor(false) {
+
+			@Override
+			public boolean preVisit2(ASTNode node) {
+				if (node instanceof Name)
+					addBinding(((Name) node).resolveBinding(), types);
+				if (node instanceof Expression)
+					addType(((Expression) node).resolveTypeBinding(), types);
+				return true;
+			}
+
+		});
+		MessageDigest md = getDigest();
+		md.update(configSignature.getBytes(StandardCharsets.UTF_8));
+		md.update(source);
+		for (String type : types)
+			md.update(type.getBytes(StandardCharsets.UTF_8));
+		return toHex(md.digest());
+	}
+
+	private void addBinding(IBinding b, TreeSet<String> types) {
+		if (b == null)
+			return;
+		switch (b.getKind()) {
+		case IBinding.TYPE:
+			addType((ITypeBinding) b, types);
+			break;
+		case IBinding.VARIABLE:
+			IVariableBinding v = (IVariableBinding) b;
+			addType(v.getDeclaringClass(), types);
+			addType(v.getType(), types);
+			break;
+		case IBinding.METHOD:
+			IMethodBinding m = (IMethodBinding) b;
+			addType(m.getDeclaringClass(), types);
+			addType(m.getReturnType(), types);
+			ITypeBinding[] params = m.getParameterTypes();
+			for (int i = 0; i < params.length; i++)
+				addType(params[i], types);
+			break;
+		}
+	}
+
+	private void addType(ITypeBinding t, TreeSet<String> types) {
+		t = getDeclaration(t);
+		if (t != null)
+			types.add(t.getKey() + "=" + getTypeHash(t));
+	}
+
+	/**
+	 * 
+	 * @param t
+	 * @return the generic declaration of a class or interface type, or null for
+	 *         a primitive type
+	 */
+	private static ITypeBinding getDeclaration(ITypeBinding t) {
+		if (t == null)
+			return null;
+		if (t.isArray())
+			t = t.getElementType();
+		if (t.isTypeVariable() || t.isCapture() || t.isWildcardType())
+			t = t.getErasure();
+		if (t == null || t.isPrimitive() || t.isNullType())
+			return null;
+		t = t.getTypeDeclaration();
+		return (t.getKey() == null ? null : t);
+	}
+
+	/**
+	 * Hash a type's members and the hashes of its supertypes, the first time it
+	 * is seen in this build.
+	 *
+	 * @param t
+	 * @return
+	 */
+	private String getTypeHash(ITypeBinding t) {
+		String key = t.getKey();
+		String hash = htTypeHashes.get(key);
+		if (hash != null)
+			return hash;
+		StringBuffer sb = new StringBuffer(key).append(' ').append(t.getModifiers());
+		ITypeBinding sup = getDeclaration(t.getSuperclass());
+		if (sup != null)
+			sb.append(" extends ").append(getTypeHash(sup));
+		ITypeBinding[] interfaces = t.getInterfaces();
+		for (int i = 0; i < interfaces.length; i++) {
+			ITypeBinding it = getDeclaration(interfaces[i]);
+			if (it != null)
+				sb.append(" implements ").append(getTypeHash(it));
+		}
+		IMethodBinding[] methods = t.getDeclaredMethods();
+		for (int i = 0; i < methods.length; i++)
+			sb.append('\n').append(methods[i].getKey()).append(' ').append(methods[i].getModifiers());
+		IVariableBinding[] fields = t.getDeclaredFields();
+		for (int i = 0; i < fields.length; i++) {
+			sb.append('\n').append(fields[i].getKey()).append(' ').append(fields[i].getModifiers());
+			Object c = fields[i].getConstantValue();
+			if (c != null)
+				sb.append('=').append(c);
+		}
+		ITypeBinding[] members = t.getDeclaredTypes();
+		for (int i = 0; i < members.length; i++)
+			sb.append('\n').append(members[i].getKey());
+		hash = toHex(getDigest().digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+		htTypeHashes.put(key, hash);
+		return hash;
+	}
+
+	/**
+	 * Get the entry for this file if its hash is unchanged and all of its .js
+	 * files are still in place.
+	 *
+	 * @param sourceLocation
+	 * @param hash
+	 * @return the entry, or null if the file must be visited
+	 */
+	Entry get(String sourceLocation, String hash) {
+		Entry e = (hash == null ? null : entries.get(sourceLocation));
+		if (e == null || !e.hash.equals(hash))
+			return null;
+		File folder = (e.packageName == null ? new File(j2sPath)
+				: new File(j2sPath, e.packageName.replace('.', File.separatorChar)));
+		for (int i = 0; i < e.elements.length; i += 2) {
+			File f = new File(folder, e.elements[i] + ".js");
+			if (!f.exists() || !e.elements[i + 1].equals(String.valueOf(f.length())))
+				return null;
+		}
+		return e;
+	}
+
+	/**
+	 * Record what was just written for a file.
+	 *
+	 * @param sourceLocation
+	 * @param hash
+	 * @param packageName
+	 * @param jsFiles        the files written or left in place, in element order
+	 * @param apps
+	 * @param applets
+	 */
+	void put(String sourceLocation, String hash, String packageName, ArrayList<File> jsFiles,
+			ArrayList<String> apps, ArrayList<String> applets) {
+		if (hash == null) {
+			remove(sourceLocation);
+			return;
+		}
+		Entry e = new Entry();
+		e.hash = hash;
+		e.packageName = packageName;
+		e.elements = new String[jsFiles.size() * 2];
+		for (int i = 0, pt = 0; i < jsFiles.size(); i++) {
+			File f = jsFiles.get(i);
+			String name = f.getName();
+			e.elements[pt++] = name.substring(0, name.length() - 3);
+			e.elements[pt++] = String.valueOf(f.length());
+		}
+		e.apps = (apps == null ? new ArrayList<String>() : new ArrayList<String>(apps));
+		e.applets = (applets == null ? new ArrayList<String>() : new ArrayList<String>(applets));
+		entries.put(sourceLocation, e);
+		isChanged = true;
+	}
+
+	void remove(String sourceLocation) {
+		if (entries.remove(sourceLocation) != null)
+			isChanged = true;
+	}
+
+	private static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// every JRE has SHA-1
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < bytes.length; i++)
+			sb.append(Integer.toHexString((bytes[i] & 0xFF) | 0x100).substring(1));
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,209 @@
+package net.sf.j2s.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Per-package bundles for j2s.bundle.packages in .j2s.
+ *
+ * Each class file of a bundled package is also written, wrapped in a function,
+ * into site/swingjs/j2s/_bundles/&lt;package&gt;.js, and the bundled packages
+ * are listed in site/swingjs/j2s/_bundles.txt. With Info.bundles set on the
+ * page, the class loader reads that list, and the first class it needs from a
+ * listed package brings in the whole bundle with one request. The other class
+ * files of the package are then run from memory when they are first needed,
+ * just as they would have been loaded, so nothing runs earlier than it did
+ * before; see _Loader.addBundle in j2sClazz.js.
+ *
+ * The class files themselves are still written, so a page without
+ * Info.bundles, or a class left out of a bundle, loads just as it always has.
+ *
+ * A bundle is remade from the class files in its package directory at the end
+ * of any build that touches the package, so classes that were not transpiled
+ * in this build are included, and deleted classes are not. It is only written
+ * if it has changed.
+ */
+class Java2ScriptBundles {
+
+	static final String DIRECTORY = "_bundles";
+
+	static final String INDEX = "_bundles.txt";
+
+	private static final String HEADER = "# j2s.bundle.packages";
+
+	/**
+	 * the start of every class file, as in Java2ScriptVisitor.getElementList
+	 */
+	private static final String CLASS_FILE_START = "(function(){";
+
+	private final File j2sFolder;
+
+	private final File bundleFolder;
+
+	private final File indexFile;
+
+	/**
+	 * package names, each also covering its subpackages, or null for all
+	 */
+	private final List<String> roots;
+
+	/**
+	 * packages touched in this build
+	 */
+	private final Set<String> packages = new TreeSet<>();
+
+	/**
+	 *
+	 * @param j2sPath the site/swingjs/j2s directory
+	 * @param roots   semicolon-separated packages to bundle, each with its
+	 *                subpackages, such as com.example.*; "*" for all
+	 */
+	Java2ScriptBundles(String j2sPath, String roots) {
+		j2sFolder = new File(j2sPath);
+		bundleFolder = new File(j2sFolder, DIRECTORY);
+		indexFile = new File(j2sFolder, INDEX);
+		List<String> list = new ArrayList<>();
+		String[] packages = roots.split(";");
+		for (int i = 0; i < packages.length; i++) {
+			String s = packages[i].trim();
+			if (s.equals("*")) {
+				list = null;
+				break;
+			}
+			if (s.endsWith("*"))
+				s = s.substring(0, s.length() - 1);
+			if (s.endsWith("."))
+				s = s.substring(0, s.length() - 1);
+			if (s.length() > 0)
+				list.add(s);
+		}
+		this.roots = list;
+	}
+
+	/**
+	 * Note a package with a class transpiled, or found unchanged, in this build.
+	 *
+	 * @param packageName
+	 */
+	void add(String packageName) {
+		if (packageName != null && packageName.length() > 0 && isBundled(packageName))
+			packages.add(packageName);
+	}
+
+	private boolean isBundled(String packageName) {
+		if (roots == null)
+			return true;
+		for (int i = roots.size(); --i >= 0;) {
+			String s = roots.get(i);
+			if (packageName.equals(s) || packageName.startsWith(s) && packageName.charAt(s.length()) == '.')
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Remake the bundles of every package in the index, as after tree-shaking.
+	 */
+	void addAll() {
+		packages.addAll(readIndex());
+	}
+
+	/**
+	 * Write the bundles of the packages touched in this build and update the
+	 * index; from finalizeProject.
+	 *
+	 * @param writer
+	 * @return the number of bundles written
+	 */
+	int write(Java2ScriptWriter writer) {
+		if (packages.isEmpty())
+			return 0;
+		Set<String> index = readIndex();
+		int nWritten = 0;
+		try {
+			writer.ensureDirectory(bundleFolder);
+			for (String pkg : packages) {
+				File bundle = new File(bundleFolder, pkg + ".js");
+				String js = getBundle(pkg);
+				if (js == null) {
+					index.remove(pkg);
+					bundle.delete();
+					continue;
+				}
+				index.add(pkg);
+				if (writer.write(bundle, js, false))
+					nWritten++;
+			}
+			StringBuffer sb = new StringBuffer(HEADER).append(": bundled packages\n");
+			for (String pkg : index)
+				sb.append(pkg).append('\n');
+			writer.write(indexFile, sb, false);
+		} catch (IOException e) {
+			System.out.println("J2S cannot write bundles in " + bundleFolder + " " + e.getMessage());
+		}
+		packages.clear();
+		return nWritten;
+	}
+
+	/**
+	 *
+	 * @return the packages now in the index
+	 */
+	private Set<String> readIndex() {
+		Set<String> index = new TreeSet<>();
+		if (!indexFile.exists())
+			return index;
+		try {
+			List<String> lines = Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8);
+			for (int i = 0; i < lines.size(); i++) {
+				String line = lines.get(i).trim();
+				if (line.length() > 0 && !line.startsWith("#"))
+					index.add(line);
+			}
+		} catch (IOException e) {
+			System.out.println("J2S cannot read " + indexFile + " " + e.getMessage());
+		}
+		return index;
+	}
+
+	/**
+	 * Concatenate a package's class files, in name order, each as a function
+	 * keyed by its path under swingjs/j2s, the way _Loader.getClasspathFor
+	 * names it.
+	 *
+	 * @param pkg
+	 * @return the bundle, or null if the package has no class files
+	 * @throws IOException
+	 */
+	private String getBundle(String pkg) throws IOException {
+		String dir = pkg.replace('.', '/') + "/";
+		File[] list = new File(j2sFolder, pkg.replace('.', File.separatorChar)).listFiles();
+		if (list == null)
+			return null;
+		Arrays.sort(list);
+		StringBuffer sb = new StringBuffer();
+		int n = 0;
+		for (int i = 0; i < list.length; i++) {
+			File f = list[i];
+			String name = f.getName();
+			if (!name.endsWith(".js") || !f.isFile())
+				continue;
+			String js = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+			if (!js.startsWith(CLASS_FILE_START))
+				continue;
+			sb.append(n++ == 0 ? "" : ",\n").append('"').append(dir).append(name).append("\":function(){\n")
+					.append(js).append("\n}");
+		}
+		return (n == 0 ? null
+				: "// j2s.bundle.packages: " + pkg + ", " + n + " class file" + (n == 1 ? "" : "s")
+						+ "\nClazz._Loader.addBundle({\n" + sb + "\n});\n");
+	}
+
+}
@@ -0,0 +1,367 @@
+package net.sf.j2s.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+
+/**
+ * Runs the Java2Script transpiler without Eclipse, for example from a CI
+ * build. JDT's standalone ASTParser resolves bindings against the given source
+ * and class paths, and Java2ScriptCompiler writes the same site/swingjs/j2s
+ * tree as the compilation participant does, using the same .j2s file.
+ *
+ * Only org.eclipse.jdt.core and its dependencies (org.eclipse.core.*,
+ * org.eclipse.equinox.*, org.eclipse.osgi) need to be on the classpath; no
+ * workspace or OSGi framework is started.
+ *
+ * <pre>
+ * java -cp net.sf.j2s.core.jar:&lt;jdt jars&gt; net.sf.j2s.core.Java2ScriptCommandLine
+ *    [-project dir] [-j2s file] [-sourcepath path] [-classpath path]
+ *    [-bootclasspath path | -jre dir] [-encoding enc] [-clean] [-strict]
+ *    [file.java ...]
+ * </pre>
+ *
+ * With no files listed, all .java files in the source path are transpiled.
+ *
+ * The system library is that of the running JVM unless -bootclasspath or -jre
+ * gives the one the project is built against in Eclipse (JavaSE-1.8 for
+ * net.sf.j2s.java.core); only then are all of its bindings the same as in the
+ * Eclipse build.
+ *
+ * Errors in resolving types, imports, and members against these paths are
+ * reported as warnings and the file is still written, just as the compilation
+ * participant writes whatever JDT has parsed. With -strict they are errors,
+ * and the file is not written. A file with any other compile error, such as a
+ * syntax error, is never written. Exits with status 1 if any file could not be
+ * transpiled.
+ *
+ */
+public class Java2ScriptCommandLine {
+
+	private static final String USAGE = "Usage: java net.sf.j2s.core.Java2ScriptCommandLine [options] [file.java ...]\n"
+			+ "  -project <dir>       project directory; the site directory and template.html are relative to this\n"
+			+ "                       (default: the directory of the .j2s file, or the current directory)\n"
+			+ "  -j2s <file>          the .j2s configuration file (default: <project>/.j2s)\n"
+			+ "  -sourcepath <path>   source folders, separated by " + File.pathSeparator
+			+ " (default: <project>/src)\n"
+			+ "  -classpath <path>    jars and class folders needed to resolve bindings, separated by "
+			+ File.pathSeparator + "\n"
+			+ "  -bootclasspath <path>\n"
+			+ "                       the system library, in place of the running JVM's; for Java 9 and\n"
+			+ "                       later, give <java.home>/lib/jrt-fs.jar\n"
+			+ "  -jre <dir>           the Java home whose system library to use, for example a JDK 8\n"
+			+ "  -encoding <enc>      source file encoding (default: UTF-8)\n"
+			+ "  -clean               log methods declared and called, as for a clean build in Eclipse\n"
+			+ "  -strict              do not write files with unresolved types, imports, or members\n"
+			+ "With no files listed, all .java files in the source path are transpiled.";
+
+	private String projectDir;
+	private String j2sFile;
+	private String[] sourcepath;
+	private String[] classpath = new String[0];
+	private String[] bootclasspath;
+	private String encoding = "UTF-8";
+	private boolean isClean;
+	private boolean isStrict;
+	private List<String> files = new ArrayList<String>();
+
+	public static void main(String[] args) {
+		Java2ScriptCommandLine cl = new Java2ScriptCommandLine();
+		if (!cl.setArgs(args)) {
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		System.exit(cl.run() == 0 ? 0 : 1);
+	}
+
+	private boolean setArgs(String[] args) {
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				switch (arg) {
+				case "-project":
+					projectDir = args[++i];
+					break;
+				case "-j2s":
+					j2sFile = args[++i];
+					break;
+				case "-sourcepath":
+					sourcepath = split(args[++i]);
+					break;
+				case "-cp":
+				case "-classpath":
+					classpath = split(args[++i]);
+					break;
+				case "-bootclasspath":
+					bootclasspath = split(args[++i]);
+					break;
+				case "-jre":
+					bootclasspath = getJRELibrary(new File(args[++i]));
+					if (bootclasspath == null) {
+						System.err.println("J2S no system library found in " + args[i]);
+						return false;
+					}
+					break;
+				case "-encoding":
+					encoding = args[++i];
+					break;
+				case "-clean":
+					isClean = true;
+					break;
+				case "-strict":
+					isStrict = true;
+					break;
+				case "-help":
+				case "-?":
+					return false;
+				default:
+					if (arg.startsWith("-")) {
+						System.err.println("J2S unknown option " + arg);
+						return false;
+					}
+					files.add(new File(arg).getAbsolutePath());
+					break;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return false;
+		}
+		if (projectDir == null)
+			projectDir = (j2sFile == null ? "." : new File(j2sFile).getAbsoluteFile().getParent());
+		projectDir = new File(projectDir).getAbsolutePath();
+		if (j2sFile == null)
+			j2sFile = new File(projectDir, ".j2s").getPath();
+		if (sourcepath == null)
+			sourcepath = new String[] { new File(projectDir, "src").getPath() };
+		for (int i = 0; i < sourcepath.length; i++)
+			sourcepath[i] = new File(sourcepath[i]).getAbsolutePath();
+		return true;
+	}
+
+	private static String[] split(String path) {
+		return path.split(File.pathSeparator);
+	}
+
+	/**
+	 * Find the system library of a Java home: lib/jrt-fs.jar for Java 9 and
+	 * later, or the jars in jre/lib (for a JDK) or lib (for a JRE) for Java 8.
+	 *
+	 * @param javaHome
+	 * @return the library entries, or null if there are none
+	 */
+	private static String[] getJRELibrary(File javaHome) {
+		File jrt = new File(javaHome, "lib/jrt-fs.jar");
+		if (jrt.isFile())
+			return new String[] { jrt.getAbsolutePath() };
+		File lib = new File(javaHome, "jre/lib");
+		if (!lib.isDirectory())
+			lib = new File(javaHome, "lib");
+		File[] jars = lib.listFiles();
+		if (jars == null)
+			return null;
+		Arrays.sort(jars);
+		List<String> entries = new ArrayList<String>();
+		for (int i = 0; i < jars.length; i++)
+			if (jars[i].getName().endsWith(".jar"))
+				entries.add(jars[i].getAbsolutePath());
+		return (entries.size() == 0 ? null : entries.toArray(new String[entries.size()]));
+	}
+
+	/**
+	 *
+	 * @return the number of files that could not be transpiled
+	 */
+	private int run() {
+		File j2s = new File(j2sFile);
+		if (!j2s.exists()) {
+			System.err.println("J2S cannot find " + j2s);
+			return 1;
+		}
+		final Java2ScriptCompiler j2sCompiler = new Java2ScriptCompiler();
+		j2sCompiler.startBuild(isClean);
+		if (!j2sCompiler.initializeProject(projectDir, new File(projectDir).getName(), j2s, false)) {
+			System.out.println("J2S .j2s disabled");
+			return 0;
+		}
+		if (files.size() == 0)
+			for (int i = 0; i < sourcepath.length; i++)
+				addJavaFiles(new File(sourcepath[i]));
+		final List<String> sources = new ArrayList<String>();
+		for (int i = 0; i < files.size(); i++) {
+			String filePath = files.get(i);
+			if (j2sCompiler.excludeFile(getWorkspacePath(filePath)))
+				System.out.println("J2S excluded " + filePath);
+			else
+				sources.add(filePath);
+		}
+		System.out.println("J2S building JavaScript " + projectDir + " " + new Date());
+		System.out.println("J2S building JavaScript for " + sources.size() + " file"
+				+ Java2ScriptCompilationParticipant.plural(sources.size()));
+		final boolean breakOnError = j2sCompiler.doBreakOnError();
+		final int[] counts = new int[3]; // ntotal, nerror, n
+		ASTParser parser = newParser(j2sCompiler.getJSLLevel());
+		String[] encodings = new String[sources.size()];
+		for (int i = encodings.length; --i >= 0;)
+			encodings[i] = encoding;
+		parser.createASTs(sources.toArray(new String[sources.size()]), encodings, new String[0],
+				new FileASTRequestor() {
+
+					@Override
+					public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+						if (breakOnError && counts[1] > 0)
+							return;
+						System.out.println("J2S transpiling (" + (++counts[2]) + "/" + sources.size() + ") "
+								+ sourceFilePath);
+						if (reportProblems(sourceFilePath, ast, isStrict) > 0) {
+							counts[1]++;
+							System.out.println("J2S Error processing " + sourceFilePath + "; not written");
+							return;
+						}
+						try {
+							if (j2sCompiler.compileToJavaScript(sourceFilePath, ast)) {
+								counts[0]++;
+							} else {
+								counts[1]++;
+								System.out.println("J2S Error processing " + sourceFilePath);
+							}
+						} catch (Exception e) {
+							counts[1]++;
+							System.out.println("J2S Exception " + e);
+							e.printStackTrace(System.out);
+							e.printStackTrace(System.err);
+						}
+					}
+
+				}, null);
+		j2sCompiler.finalizeProject();
+		System.out.println("J2S buildFinished " + counts[0] + " file"
+				+ Java2ScriptCompilationParticipant.plural(counts[0]) + " transpiled for " + projectDir);
+		System.out.println("J2S buildFinished nerror = " + counts[1] + " " + new Date());
+		return counts[1];
+	}
+
+	/**
+	 * Report the compile errors JDT found in a unit, as javac would.
+	 * Unresolved types, imports, and members are only warnings unless strict.
+	 *
+	 * @param sourceFilePath
+	 * @param ast
+	 * @param isStrict
+	 * @return the number of errors that keep the unit from being written
+	 */
+	private static int reportProblems(String sourceFilePath, CompilationUnit ast, boolean isStrict) {
+		IProblem[] problems = ast.getProblems();
+		int n = 0;
+		for (int i = 0; i < problems.length; i++) {
+			IProblem p = problems[i];
+			if (!p.isError())
+				continue;
+			boolean isError = (isStrict || !isResolutionProblem(p));
+			if (isError)
+				n++;
+			System.err.println(sourceFilePath + ":" + p.getSourceLineNumber() + (isError ? ": error: " : ": warning: ")
+					+ p.getMessage());
+		}
+		return n;
+	}
+
+	/**
+	 * Problems that depend only on what the class and boot paths provide -- a
+	 * type, import, or member that is missing or differs there.
+	 *
+	 * @param p
+	 * @return true for the categories JDT gives these problems
+	 */
+	private static boolean isResolutionProblem(IProblem p) {
+		if (!(p instanceof CategorizedProblem))
+			return false;
+		switch (((CategorizedProblem) p).getCategoryID()) {
+		case CategorizedProblem.CAT_BUILDPATH:
+		case CategorizedProblem.CAT_IMPORT:
+		case CategorizedProblem.CAT_TYPE:
+		case CategorizedProblem.CAT_MEMBER:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Set up a standalone parser with the source and class paths in place of an
+	 * IJavaProject.
+	 *
+	 * @param jslLevel
+	 * @return
+	 */
+	@SuppressWarnings("deprecation")
+	private ASTParser newParser(int jslLevel) {
+		ASTParser parser;
+		try {
+			parser = ASTParser.newParser(jslLevel);
+		} catch (Exception e) {
+			System.out.println("J2S compiler version " + jslLevel + " could not be set; using 8");
+			parser = ASTParser.newParser(jslLevel = AST.JLS8);
+		}
+		String version = (jslLevel <= 8 ? "1." + jslLevel : "" + jslLevel);
+		@SuppressWarnings("unchecked")
+		Map<String, String> options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(version, options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		// files only found on the source path, not just those listed, must be read
+		// in the given encoding, not the platform's
+		String[] encodings = new String[sourcepath.length];
+		Arrays.fill(encodings, encoding);
+		if (bootclasspath == null) {
+			parser.setEnvironment(classpath, sourcepath, encodings, true);
+		} else {
+			String[] entries = new String[bootclasspath.length + classpath.length];
+			System.arraycopy(bootclasspath, 0, entries, 0, bootclasspath.length);
+			System.arraycopy(classpath, 0, entries, bootclasspath.length, classpath.length);
+			parser.setEnvironment(entries, sourcepath, encodings, false);
+		}
+		parser.setResolveBindings(true);
+		parser.setBindingsRecovery(false);
+		return parser;
+	}
+
+	/**
+	 * Match Eclipse's IFile.getFullPath() for j2s.excluded.paths, which are
+	 * relative to the project directory.
+	 *
+	 * @param filePath
+	 * @return /projectName/path/to/File.java
+	 */
+	private String getWorkspacePath(String filePath) {
+		String path = filePath;
+		if (path.startsWith(projectDir + File.separator))
+			path = path.substring(projectDir.length() + 1);
+		return "/" + new File(projectDir).getName() + "/" + path.replace(File.separatorChar, '/');
+	}
+
+	private void addJavaFiles(File dir) {
+		File[] list = dir.listFiles();
+		if (list == null)
+			return;
+		Arrays.sort(list);
+		for (int i = 0; i < list.length; i++) {
+			File f = list[i];
+			if (f.isDirectory())
+				addJavaFiles(f);
+			else if (f.getName().endsWith(".java"))
+				files.add(f.getAbsolutePath());
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package net.sf.j2s.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The symbol table for j2s.compact.names in .j2s, kept in
+ * site/swingjs/j2s/_names.txt.
+ *
+ * With that option, the private and package-private methods of the listed
+ * packages -- other than those overriding a method that keeps its j2s name --
+ * are written with a short name such as _$1c in place of their j2s name, such
+ * as getValueAt$I$I. Public and protected methods keep their j2s names, so a
+ * separately built project or hand-written JavaScript can still call them.
+ * The same j2s name always gets the same short name, in every class, so
+ * overriding works just as it did. @j2sNative code that calls one of these
+ * methods by its j2s name is a transpiler error.
+ *
+ * The table is read at the start of each build and only ever added to, so a
+ * class written in an earlier build still agrees with one written now. If it
+ * is missing or cannot be used, numbering starts over, and the build cache
+ * must not keep any class written with the old numbers; see isNew(). The
+ * runtime reads it the first time reflection needs it; see
+ * Clazz._getCompactName in j2sClazz.js.
+ *
+ * The file has a header line and then one short name and j2s name per line,
+ * separated by a tab.
+ */
+class Java2ScriptCompactNames {
+
+	static final String FILE_NAME = "_names.txt";
+
+	private static final String HEADER = "# j2s.compact.names";
+
+	private static final String PREFIX = "_$";
+
+	private final File file;
+
+	/**
+	 * j2s name to short name
+	 */
+	private final Map<String, String> shortNames = new ConcurrentHashMap<>();
+
+	/**
+	 * j2s names in the order their short names were given out
+	 */
+	private final List<String> names = new ArrayList<>();
+
+	private boolean isChanged;
+
+	/**
+	 * no table was read; short names are given out from _$0 again
+	 */
+	private boolean isNew = true;
+
+	/**
+	 *
+	 * @param j2sPath the site/swingjs/j2s directory
+	 */
+	Java2ScriptCompactNames(String j2sPath) {
+		file = new File(j2sPath, FILE_NAME);
+		load();
+	}
+
+	private void load() {
+		if (!file.exists())
+			return;
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			System.out.println("J2S cannot read " + file + " " + e.getMessage());
+			return;
+		}
+		for (int i = 0; i < lines.size(); i++) {
+			String line = lines.get(i);
+			int pt = line.indexOf('\t');
+			if (line.startsWith("#") || pt < 0)
+				continue;
+			String shortName = line.substring(0, pt);
+			String name = line.substring(pt + 1);
+			if (!shortName.equals(getShortName(names.size()))) {
+				// not ours -- start over, rather than risk two names for one
+				System.out.println("J2S ignoring " + file + " at line " + (i + 1));
+				shortNames.clear();
+				names.clear();
+				isChanged = true;
+				return;
+			}
+			shortNames.put(name, shortName);
+			names.add(name);
+		}
+		isNew = false;
+		System.out.println("J2S " + file + " has " + names.size() + " name" + (names.size() == 1 ? "" : "s"));
+	}
+
+	/**
+	 * Classes written before this build used a table that is now gone, so the
+	 * compiler must visit every file again rather than use the build cache.
+	 *
+	 * @return true if no table was read
+	 */
+	boolean isNew() {
+		return isNew;
+	}
+
+	private static String getShortName(int index) {
+		return PREFIX + Integer.toString(index, 36);
+	}
+
+	/**
+	 * Get the short name for a j2s method name, giving it the next one if it has
+	 * none yet. Called from any thread.
+	 *
+	 * @param name a j2s method name, such as getValueAt$I$I
+	 * @return its short name
+	 */
+	String get(String name) {
+		String shortName = shortNames.get(name);
+		if (shortName == null) {
+			synchronized (this) {
+				shortName = shortNames.get(name);
+				if (shortName == null) {
+					shortNames.put(name, shortName = getShortName(names.size()));
+					names.add(name);
+					isChanged = true;
+				}
+			}
+		}
+		return shortName;
+	}
+
+	/**
+	 * Save the table if it has changed; from finalizeProject.
+	 */
+	synchronized void save() {
+		if (!isChanged)
+			return;
+		StringBuffer sb = new StringBuffer(HEADER).append(": short name, j2s name\n");
+		for (int i = 0; i < names.size(); i++)
+			sb.append(getShortName(i)).append('\t').append(names.get(i)).append('\n');
+		try {
+			Files.createDirectories(file.getParentFile().toPath());
+			Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			System.out.println("J2S cannot write " + file + " " + e.getMessage());
+			return;
+		}
+		isChanged = false;
+	}
+
+}
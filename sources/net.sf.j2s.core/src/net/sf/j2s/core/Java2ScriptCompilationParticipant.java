@@ -2,6 +2,8 @@ package net.sf.j2s.core;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.jdt.core.IJavaProject;
@@ -142,6 +144,9 @@ public class Java2ScriptCompilationParticipant extends org.eclipse.jdt.core.comp
 				BuildContext[] files = contexts.get(j);
 				System.out.println("J2S building JavaScript for " + files.length + " file" + plural(files.length));
 
+				// null unless j2s.compiler.threads > 1
+				List<Future<Java2ScriptCompiler.TranspiledUnit>> pending = j2sCompiler.startTranspiling(files);
+
 				for (int i = 0, n = files.length; i < n; i++) {
 // trying to keep the progess monitor running - didn't work
 //				try {
@@ -161,13 +166,16 @@ public class Java2ScriptCompilationParticipant extends org.eclipse.jdt.core.comp
 					} else {
 						System.out.println("J2S transpiling (" + (i + 1) + "/" + n + ") " + filePath);
 						try {
-							if (j2sCompiler.compileToJavaScript(f)) {
+							if (pending == null ? j2sCompiler.compileToJavaScript(f)
+									: j2sCompiler.compileToJavaScript(pending.get(i))) {
 								ntotal++;
 							} else {
 								nerror++;
 								System.out.println("J2S Error processing " + filePath);
-								if (breakOnError)
+								if (breakOnError) {
+									j2sCompiler.stopTranspiling(pending);
 									break;
+								}
 							}
 						} catch (Exception e) {
 							System.out.println("J2S Exception " + e);
@@ -16,12 +16,23 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.compiler.BuildContext;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 
 /**
@@ -53,7 +64,7 @@ class Java2ScriptCompiler {
 	 */
 	private static final String J2S_OPTIONS_ALTFILEPROPERTY = "j2s.config.altfileproperty";
 
-	private int nResources, nSources, nJS, nHTML;
+	private int nResources, nSources, nJS, nHTML, nCached, nUnchanged;
 
 	// We copy all non .java files from any directory from which we loaded a
 	// java file into the site directory
@@ -69,6 +80,79 @@ class Java2ScriptCompiler {
 	private final static String J2S_COMPILER_JAVA_VERSION = "j2s.compiler.java.version";
 	private final static String J2S_COMPILER_JAVA_VERSION_DEFAULT = "8";
 
+	/**
+	 * number of worker threads used to parse and visit the files of a build;
+	 * "auto" uses one per available processor. Files are still written out in
+	 * build order, so output and logs are the same as for a serial build.
+	 */
+	private static final String J2S_COMPILER_THREADS = "j2s.compiler.threads";
+	private static final String J2S_COMPILER_THREADS_DEFAULT = "1";
+	private static final String J2S_COMPILER_THREADS_AUTO = "auto";
+
+	/**
+	 * parse all the files of a build context with ASTParser.createASTs, so that
+	 * binding resolution is shared rather than repeated for every file. With
+	 * j2s.compiler.threads > 1, the files are dealt out to that many batches.
+	 */
+	private static final String J2S_COMPILER_BATCH = "j2s.compiler.batch";
+	private static final String J2S_COMPILER_BATCH_DEFAULT = "false";
+
+	/**
+	 * skip visiting files whose source, .j2s settings, and referenced types are
+	 * unchanged since the last build; see Java2ScriptBuildCache
+	 */
+	private static final String J2S_COMPILER_CACHE = "j2s.compiler.cache";
+	private static final String J2S_COMPILER_CACHE_DEFAULT = "false";
+
+	/**
+	 * time each phase of transpiling each file, listing the slowest
+	 * j2s.profile.slowest files at the end of the build and writing
+	 * j2s-profile.csv and j2s-profile.json next to the site directory; see
+	 * Java2ScriptProfiler
+	 */
+	private static final String J2S_PROFILE = "j2s.profile";
+	private static final String J2S_PROFILE_DEFAULT = "false";
+
+	private static final String J2S_PROFILE_SLOWEST = "j2s.profile.slowest";
+	private static final String J2S_PROFILE_SLOWEST_DEFAULT = "20";
+
+	/**
+	 * after each build, write a copy of the site directory to this directory,
+	 * relative to the project, without the classes that nothing can load; see
+	 * Java2ScriptTreeShaker
+	 */
+	private static final String J2S_SHAKE_DIRECTORY = "j2s.shake.directory";
+	private static final String J2S_SHAKE_DIRECTORY_DEFAULT = "<none>";
+
+	/**
+	 * semicolon-separated classes or package.* to keep in the reduced site
+	 * regardless
+	 */
+	private static final String J2S_SHAKE_ROOTS = "j2s.shake.roots";
+	private static final String J2S_SHAKE_ROOTS_DEFAULT = "<none>";
+
+	/**
+	 * semicolon-separated packages whose methods are written with short names
+	 * where nothing outside them can call the method by name; see
+	 * Java2ScriptCompactNames
+	 */
+	private static final String J2S_COMPACT_NAMES = "j2s.compact.names";
+	private static final String J2S_COMPACT_NAMES_DEFAULT = "<none>";
+
+	/**
+	 * semicolon-separated packages, or *, whose class files are also written
+	 * together as one bundle per package; see Java2ScriptBundles
+	 */
+	private static final String J2S_BUNDLE_PACKAGES = "j2s.bundle.packages";
+	private static final String J2S_BUNDLE_PACKAGES_DEFAULT = "<none>";
+
+	/**
+	 * after each build, write a .js.gz next to each .js file in site/swingjs,
+	 * and site/swingjs/j2s-manifest.txt; see Java2ScriptManifest
+	 */
+	private static final String J2S_GZIP = "j2s.gzip";
+	private static final String J2S_GZIP_DEFAULT = "false";
+
 	private static final String J2S_SITE_DIRECTORY = "j2s.site.directory";
 	private static final String J2S_SITE_DIRECTORY_DEFAULT = "site";
 
@@ -86,6 +170,22 @@ class Java2ScriptCompiler {
 	private static final String J2S_EXACT_LONG = "j2s.exact.long";
 	private static final String J2S_EXACT_LONG_DEFAULT = "true";
 
+	/**
+	 * with j2s.exact.long, use JavaScript operators for long local variables
+	 * that provably stay within +/-2^53; see Java2ScriptLongRanges
+	 * 
+	 */
+	private static final String J2S_EXACT_LONG_RANGES = "j2s.exact.long.ranges";
+	private static final String J2S_EXACT_LONG_RANGES_DEFAULT = "true";
+
+	/**
+	 * write calls to short methods that cannot be overridden, such as private
+	 * getters, as the method body itself
+	 * 
+	 */
+	private static final String J2S_INLINE_METHODS = "j2s.inline.methods";
+	private static final String J2S_INLINE_METHODS_DEFAULT = "false";
+
 	/**
 	 * allow async for Runnable.run (experimental) 
 	 * 
@@ -182,8 +282,73 @@ class Java2ScriptCompiler {
 
 	private ASTParser astParser;
 
+	private int jslLevel;
+
+	private int nThreads;
+
+	private boolean isBatch;
+
+	private ExecutorService transpilers;
+
+	/**
+	 * writes all files to the site directory
+	 */
+	private final Java2ScriptWriter writer = new Java2ScriptWriter();
+
+	/**
+	 * null unless j2s.compiler.cache=true
+	 */
+	private Java2ScriptBuildCache cache;
+
+	/**
+	 * null unless j2s.profile=true
+	 */
+	private Java2ScriptProfiler profiler;
+
+	/**
+	 * for the command-line driver: when the last file was written, so that the
+	 * time until the next AST arrives can be counted as parsing
+	 */
+	private long[] parseStart;
+
+	/**
+	 * from j2s.shake.directory, or null
+	 */
+	private String shakeFolder;
+
+	private String shakeRoots;
+
+	/**
+	 * null unless j2s.compact.names is set
+	 */
+	private Java2ScriptCompactNames compactNames;
+
+	/**
+	 * null unless j2s.bundle.packages is set
+	 */
+	private Java2ScriptBundles bundles;
+
+	private boolean isGzip;
+
+	/**
+	 * Each worker thread gets its own parser, as ASTParser is not thread-safe.
+	 */
+	private ThreadLocal<ASTParser> workerParser = new ThreadLocal<ASTParser>() {
+
+		@Override
+		protected ASTParser initialValue() {
+			return ASTParser.newParser(jslLevel);
+		}
+
+	};
+
 	private IJavaProject project;
 
+	/**
+	 * the .j2s settings passed to every visitor of this build
+	 */
+	private Java2ScriptConfiguration config;
+
 	private boolean isDebugging;
 
 	
@@ -192,6 +357,10 @@ class Java2ScriptCompiler {
 	 * 
 	 */
 	private boolean exactLong;
+
+	private boolean longRanges;
+
+	private boolean inlineMethods;
 	
 	private boolean breakOnError;
 
@@ -240,19 +409,37 @@ class Java2ScriptCompiler {
 	 * @return true if this is a j2s project and is enabled
 	 * 
 	 */
-	@SuppressWarnings({ "unused", "deprecation" })
 	boolean initializeProject(IJavaProject project, boolean isCompilationParticipant) {
-
-		nResources = nSources = nJS = nHTML = 0;
 		this.project = project;
-		this.isCompilationParticipant = isCompilationParticipant;
 		if (!isActive(project)) {
 			// the file .j2s does not exist in the project directory -- skip this project
 			return false;
 		}
-		projectPath = "/" + project.getProject().getName() + "/";
-		projectFolder = project.getProject().getLocation().toOSString();
-		File j2sFile = new File(projectFolder, J2S_OPTIONS_FILE_NAME);
+		String projectFolder = project.getProject().getLocation().toOSString();
+		return initializeProject(projectFolder, project.getProject().getName(),
+				new File(projectFolder, J2S_OPTIONS_FILE_NAME), isCompilationParticipant);
+	}
+
+	/**
+	 * get all necessary .j2s params for a build; also used by
+	 * Java2ScriptCommandLine, where there is no IJavaProject
+	 * 
+	 * @param projectFolder            the directory that the site directory and
+	 *                                 HTML template are relative to
+	 * @param projectName              the first element of workspace paths, as
+	 *                                 used by j2s.excluded.paths
+	 * @param j2sFile                  the .j2s file
+	 * @param isCompilationParticipant
+	 * @return true if the .j2s file enables the transpiler
+	 */
+	@SuppressWarnings({ "unused", "deprecation" })
+	boolean initializeProject(String projectFolder, String projectName, File j2sFile,
+			boolean isCompilationParticipant) {
+
+		nResources = nSources = nJS = nHTML = nCached = nUnchanged = 0;
+		this.isCompilationParticipant = isCompilationParticipant;
+		projectPath = "/" + projectName + "/";
+		this.projectFolder = projectFolder;
 		initializeUsing(j2sFile, 0);
 		if (props == null)
 			props = new Properties();
@@ -268,7 +455,7 @@ class Java2ScriptCompiler {
 				}
 			}
 
-			int jslLevel = AST.JLS8;
+			jslLevel = AST.JLS8;
 			try {
 				String ver = getProperty(J2S_COMPILER_JAVA_VERSION, J2S_COMPILER_JAVA_VERSION_DEFAULT);
 				jslLevel = Integer.parseInt(ver);
@@ -283,13 +470,18 @@ class Java2ScriptCompiler {
 				System.out.println("J2S compiler version set to " + jslLevel);
 			} catch (Exception e) {
 				System.out.println("J2S compiler version " + jslLevel + " could not be set; using 8");
-				astParser = ASTParser.newParser(AST.JLS8);
+				astParser = ASTParser.newParser(jslLevel = AST.JLS8);
 			}
 
 			breakOnError = !"false".equalsIgnoreCase(getProperty(J2S_BREAK_ON_ERROR, J2S_BREAK_ON_ERROR_DEFAULT));
 
 			exactLong = "true".equalsIgnoreCase(getProperty(J2S_EXACT_LONG, J2S_EXACT_LONG_DEFAULT));
 
+			longRanges = exactLong
+					&& "true".equalsIgnoreCase(getProperty(J2S_EXACT_LONG_RANGES, J2S_EXACT_LONG_RANGES_DEFAULT));
+
+			inlineMethods = "true".equalsIgnoreCase(getProperty(J2S_INLINE_METHODS, J2S_INLINE_METHODS_DEFAULT));
+
 			allowAsyncThread = "true".equalsIgnoreCase(getProperty(J2S_ALLOW_ASYNC_THREAD, J2S_ALLOW_ASYNC_THREAD_DEFAULT));
 
 
@@ -350,6 +542,39 @@ class Java2ScriptCompiler {
 
 			testing = "true".equalsIgnoreCase(getProperty(J2S_TESTING, J2S_TESTING_DEFAULT));
 
+			String threads = getProperty(J2S_COMPILER_THREADS, J2S_COMPILER_THREADS_DEFAULT);
+			nThreads = 1;
+			try {
+				nThreads = (J2S_COMPILER_THREADS_AUTO.equalsIgnoreCase(threads)
+						? Runtime.getRuntime().availableProcessors()
+						: Math.max(1, Integer.parseInt(threads)));
+			} catch (Exception e) {
+				System.out.println("J2S bad value for " + J2S_COMPILER_THREADS + ": " + threads);
+			}
+
+			isBatch = "true".equalsIgnoreCase(getProperty(J2S_COMPILER_BATCH, J2S_COMPILER_BATCH_DEFAULT));
+
+			boolean useCache = "true".equalsIgnoreCase(getProperty(J2S_COMPILER_CACHE, J2S_COMPILER_CACHE_DEFAULT));
+
+			shakeFolder = getProperty(J2S_SHAKE_DIRECTORY, J2S_SHAKE_DIRECTORY_DEFAULT);
+			if (shakeFolder != null)
+				shakeFolder = projectFolder + "/" + shakeFolder;
+			shakeRoots = getProperty(J2S_SHAKE_ROOTS, J2S_SHAKE_ROOTS_DEFAULT);
+
+			profiler = null;
+			parseStart = null;
+			if ("true".equalsIgnoreCase(getProperty(J2S_PROFILE, J2S_PROFILE_DEFAULT))) {
+				String slowest = getProperty(J2S_PROFILE_SLOWEST, J2S_PROFILE_SLOWEST_DEFAULT);
+				int nSlowest = 20;
+				try {
+					nSlowest = Math.max(0, Integer.parseInt(slowest));
+				} catch (Exception e) {
+					System.out.println("J2S bad value for " + J2S_PROFILE_SLOWEST + ": " + slowest);
+				}
+				profiler = new Java2ScriptProfiler(nSlowest);
+				parseStart = Java2ScriptProfiler.now();
+			}
+
 			String prop = getProperty(J2S_COMPILER_NONQUALIFIED_PACKAGES, J2S_COMPILER_NONQUALIFIED_PACKAGES_DEFAULT);
 			// older version of the name
 			String nonqualifiedPackages = getProperty(J2S_COMPILER_NONQUALIFIED_CLASSES,
@@ -361,6 +586,14 @@ class Java2ScriptCompiler {
 
 			String classReplacements = getProperty(J2S_CLASS_REPLACEMENTS, J2S_CLASS_REPLACEMENTS_DEFAULT);
 
+			String compactPackages = getProperty(J2S_COMPACT_NAMES, J2S_COMPACT_NAMES_DEFAULT);
+			compactNames = (compactPackages == null ? null : new Java2ScriptCompactNames(j2sPath));
+
+			String bundlePackages = getProperty(J2S_BUNDLE_PACKAGES, J2S_BUNDLE_PACKAGES_DEFAULT);
+			bundles = (bundlePackages == null ? null : new Java2ScriptBundles(j2sPath, bundlePackages));
+
+			isGzip = "true".equalsIgnoreCase(getProperty(J2S_GZIP, J2S_GZIP_DEFAULT));
+
 			String htmlTemplateFile = getProperty(J2S_TEMPLATE_HTML, J2S_TEMPLATE_HTML_DEFAULT);
 			if (htmlTemplate == null) {
 				file = new File(projectFolder, htmlTemplateFile);
@@ -373,17 +606,21 @@ class Java2ScriptCompiler {
 				System.out.println("J2S using HTML template " + file);
 			}
 
-			Java2ScriptVisitor.setAnnotating(ignoredAnnotations);
-			Java2ScriptVisitor.setDebugging(isDebugging);
-			Java2ScriptVisitor.setExactLong(exactLong);
-			Java2ScriptVisitor.setAllowAsyncThread(allowAsyncThread);
-			Java2ScriptVisitor.setLogging(lstMethodsDeclared, htMethodsCalled, logAllCalls);
+			if (lstMethodsDeclared != null)
+				lstMethodsDeclared.clear();
+			if (logAllCalls && htMethodsCalled != null)
+				htMethodsCalled.clear();
 
-			Java2ScriptVisitor.NameMapper.setNonQualifiedNamePackages(nonqualifiedPackages);
-			Java2ScriptVisitor.NameMapper.setClassReplacements(classReplacements);
+			config = new Java2ScriptConfiguration(isDebugging, exactLong, longRanges, inlineMethods, allowAsyncThread,
+					testing, lstMethodsDeclared != null, htMethodsCalled != null, logAllCalls, ignoredAnnotations,
+					nonqualifiedPackages, classReplacements, compactPackages, compactNames);
 
-			if (isCleanBuild)
-				Java2ScriptVisitor.startCleanBuild();
+			// method logging needs every file visited; a new table of compact names
+			// means that no file written before can be kept
+			cache = (useCache && lstMethodsDeclared == null && htMethodsCalled == null
+					? new Java2ScriptBuildCache(siteFolder, j2sPath, new TreeMap<Object, Object>(props).toString(),
+							isCleanBuild || compactNames != null && compactNames.isNew())
+					: null);
 
 		} catch (Exception e) {
 			System.out.println("error " + e + "  " + e.getStackTrace());
@@ -427,7 +664,15 @@ class Java2ScriptCompiler {
 	}
 
 	boolean excludeFile(IFile javaSource) {
-		String filePath = javaSource.getFullPath().toString();
+		return excludeFile(javaSource.getFullPath().toString());
+	}
+
+	/**
+	 * 
+	 * @param filePath workspace path, starting with /projectName/
+	 * @return true if this file is in one of the j2s.excluded.paths
+	 */
+	boolean excludeFile(String filePath) {
 		if (lstExcludedPaths != null) {
 			for (int i = lstExcludedPaths.size(); --i >= 0;)
 				if (filePath.startsWith(lstExcludedPaths.get(i))) {
@@ -447,39 +692,402 @@ class Java2ScriptCompiler {
 	 */
 	boolean compileToJavaScript(IFile javaSource) {
 		nSources++;
-		String sourceLocation = javaSource.getLocation().toString();
-		org.eclipse.jdt.core.ICompilationUnit createdUnit = JavaCore.createCompilationUnitFrom(javaSource);
+		return writeJavaScript(transpile(javaSource, astParser));
+	}
+
+	/**
+	 * from Java2ScriptCommandLine
+	 * 
+	 * process a source file already parsed, with bindings, by a standalone
+	 * ASTParser
+	 * 
+	 * @param sourceLocation
+	 * @param root
+	 */
+	boolean compileToJavaScript(String sourceLocation, CompilationUnit root) {
+		nSources++;
+		boolean ok = writeJavaScript(visit(sourceLocation.replace(File.separatorChar, '/'), root, parseStart));
+		if (profiler != null)
+			parseStart = Java2ScriptProfiler.now();
+		return ok;
+	}
+
+	/**
+	 * 
+	 * @return the j2s.compiler.java.version in effect, as for AST.JLS8
+	 */
+	int getJSLLevel() {
+		return jslLevel;
+	}
+
+	/**
+	 * from Java2ScriptCompilationParticipant.java
+	 * 
+	 * wait for a file started by startTranspiling and write it out
+	 * 
+	 * @param pending
+	 */
+	boolean compileToJavaScript(Future<TranspiledUnit> pending) throws InterruptedException {
+		nSources++;
+		TranspiledUnit unit;
+		try {
+			unit = pending.get();
+		} catch (ExecutionException e) {
+			// same as for a serial build -- parser exceptions go to the participant
+			Throwable t = e.getCause();
+			if (t instanceof RuntimeException)
+				throw (RuntimeException) t;
+			if (t instanceof Error)
+				throw (Error) t;
+			throw new RuntimeException(t);
+		}
+		return writeJavaScript(unit);
+	}
+
+	/**
+	 * Start parsing and visiting the files of one build context on worker
+	 * threads, one file at a time or in batches.
+	 * 
+	 * @param files
+	 * @return a list holding a Future for each file, or null for an excluded
+	 *         file; or null if this build is neither multithreaded nor batched
+	 */
+	List<Future<TranspiledUnit>> startTranspiling(BuildContext[] files) {
+		if (nThreads <= 1 && !isBatch)
+			return null;
+		if (transpilers == null) {
+			System.out.println("J2S transpiling with " + nThreads + " thread"
+					+ Java2ScriptCompilationParticipant.plural(nThreads) + (isBatch ? " in batches" : ""));
+			transpilers = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+
+				private int n;
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "J2S transpiler " + (++n));
+					t.setDaemon(true);
+					return t;
+				}
+
+			});
+		}
+		if (isBatch)
+			return startBatches(files);
+		List<Future<TranspiledUnit>> list = new ArrayList<>();
+		for (int i = 0; i < files.length; i++) {
+			final IFile f = files[i].getFile();
+			list.add(excludeFile(f) ? null : transpilers.submit(new Callable<TranspiledUnit>() {
+
+				@Override
+				public TranspiledUnit call() {
+					Java2ScriptVisitor.holdLog(true);
+					TranspiledUnit unit = null;
+					try {
+						return unit = transpile(f, workerParser.get());
+					} finally {
+						StringBuffer[] log = Java2ScriptVisitor.holdLog(false);
+						if (unit != null)
+							unit.log = log;
+					}
+				}
+
+			}));
+		}
+		return list;
+	}
+
+	/**
+	 * Deal the files out round-robin to nThreads batches, so that the first files
+	 * in build order are ready first, and start each batch on a worker thread.
+	 * 
+	 * @param files
+	 * @return a list holding a Future for each file, or null for an excluded file
+	 */
+	private List<Future<TranspiledUnit>> startBatches(BuildContext[] files) {
+		List<Future<TranspiledUnit>> list = new ArrayList<>();
+		List<List<IFile>> batchFiles = new ArrayList<>();
+		List<List<CompletableFuture<TranspiledUnit>>> batchResults = new ArrayList<>();
+		for (int i = 0; i < nThreads; i++) {
+			batchFiles.add(new ArrayList<IFile>());
+			batchResults.add(new ArrayList<CompletableFuture<TranspiledUnit>>());
+		}
+		for (int i = 0, n = 0; i < files.length; i++) {
+			IFile f = files[i].getFile();
+			if (excludeFile(f)) {
+				list.add(null);
+				continue;
+			}
+			CompletableFuture<TranspiledUnit> result = new CompletableFuture<>();
+			batchFiles.get(n).add(f);
+			batchResults.get(n).add(result);
+			list.add(result);
+			n = (n + 1) % nThreads;
+		}
+		for (int i = 0; i < nThreads; i++) {
+			final List<IFile> batch = batchFiles.get(i);
+			final List<CompletableFuture<TranspiledUnit>> results = batchResults.get(i);
+			if (batch.size() > 0)
+				transpilers.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						transpileBatch(batch, results);
+					}
+
+				});
+		}
+		return list;
+	}
+
+	/**
+	 * Parse a batch of files with one call to ASTParser.createASTs, visiting each
+	 * CompilationUnit as JDT delivers it. Each file's result is completed as soon
+	 * as it has been visited.
+	 * 
+	 * @param files
+	 * @param results
+	 */
+	private void transpileBatch(final List<IFile> files, final List<CompletableFuture<TranspiledUnit>> results) {
+		final Map<String, Integer> htUnitIndex = new Hashtable<>();
+		ICompilationUnit[] units = new ICompilationUnit[files.size()];
+		for (int i = 0; i < units.length; i++) {
+			units[i] = JavaCore.createCompilationUnitFrom(files.get(i));
+			htUnitIndex.put(units[i].getHandleIdentifier(), Integer.valueOf(i));
+		}
+		ASTParser astParser = workerParser.get();
+		try {
+			// note: these must be set before each createASTs call
+			astParser.setProject(project);
+			astParser.setResolveBindings(true);
+			// JDT calls acceptAST on this thread
+			final long[] t0 = (profiler == null ? null : Java2ScriptProfiler.now());
+			astParser.createASTs(units, new String[0], new ASTRequestor() {
+
+				@Override
+				public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+					Integer i = htUnitIndex.get(source.getHandleIdentifier());
+					if (i == null || results.get(i).isDone()) {
+						// cancelled
+						return;
+					}
+					Java2ScriptVisitor.holdLog(true);
+					TranspiledUnit unit = null;
+					try {
+						unit = visit(files.get(i).getLocation().toString(), ast, t0);
+					} finally {
+						StringBuffer[] log = Java2ScriptVisitor.holdLog(false);
+						if (unit != null)
+							unit.log = log;
+					}
+					results.get(i).complete(unit);
+				}
+
+			}, null);
+		} catch (Throwable e) {
+			for (int i = 0; i < results.size(); i++)
+				results.get(i).completeExceptionally(e);
+		}
+		for (int i = 0; i < results.size(); i++)
+			results.get(i).completeExceptionally(
+					new RuntimeException("J2S no AST created for " + files.get(i).getLocation()));
+	}
+
+	/**
+	 * Cancel any files not yet transpiled, as for j2s.break.on.error.
+	 * 
+	 * @param pending
+	 */
+	void stopTranspiling(List<Future<TranspiledUnit>> pending) {
+		if (pending != null)
+			for (int i = pending.size(); --i >= 0;)
+				if (pending.get(i) != null)
+					pending.get(i).cancel(true);
+	}
+
+	/**
+	 * A source file that has been parsed and visited, but not yet written to the
+	 * site directory.
+	 * 
+	 */
+	class TranspiledUnit {
+
+		String sourceLocation;
+		Java2ScriptVisitor visitor;
+		Throwable error;
+
+		/**
+		 * from Java2ScriptBuildCache; when cached is not null, visitor is null and
+		 * the .js files are already in place
+		 */
+		String hash;
+		Java2ScriptBuildCache.Entry cached;
+
+		/**
+		 * [sysout, syserr] held from a worker thread
+		 */
+		StringBuffer[] log;
+
+		/**
+		 * null unless j2s.profile=true
+		 */
+		Java2ScriptProfiler.Times times;
+
+	}
+
+	/**
+	 * Parse and visit a source file. Nothing is written here, so this may be run on
+	 * any thread that has its own parser.
+	 * 
+	 * @param javaSource
+	 * @param astParser
+	 * @return the unit, with any exception thrown by the visitor
+	 */
+	private TranspiledUnit transpile(IFile javaSource, ASTParser astParser) {
+		ICompilationUnit createdUnit = JavaCore.createCompilationUnitFrom(javaSource);
 		astParser.setSource(createdUnit);
 		// note: next call must come before each createAST call
 		astParser.setResolveBindings(true);
-		CompilationUnit root = (CompilationUnit) astParser.createAST(null);
+		long[] t0 = (profiler == null ? null : Java2ScriptProfiler.now());
+		return visit(javaSource.getLocation().toString(), (CompilationUnit) astParser.createAST(null), t0);
+	}
+
+	/**
+	 * Visit a parsed source file.
+	 * 
+	 * @param sourceLocation file path, using '/'
+	 * @param root
+	 * @param t0             when parsing started, from Java2ScriptProfiler.now(),
+	 *                       or null if not profiling
+	 * @return the unit, with any exception thrown by the visitor
+	 */
+	private TranspiledUnit visit(String sourceLocation, CompilationUnit root, long[] t0) {
+		TranspiledUnit unit = new TranspiledUnit();
+		unit.sourceLocation = sourceLocation;
+		if (t0 != null) {
+			unit.times = new Java2ScriptProfiler.Times();
+			unit.times.sourceLocation = sourceLocation;
+			Java2ScriptProfiler.add(unit.times, Java2ScriptProfiler.PARSE, t0);
+		}
+		if (cache != null) {
+			try {
+				unit.hash = cache.getHash(sourceLocation, root);
+			} catch (Throwable e) {
+				// leave it to the visitor to report
+			}
+			unit.cached = cache.get(sourceLocation, unit.hash);
+			profile(unit, Java2ScriptProfiler.CACHE, t0);
+			if (unit.cached != null)
+				return unit;
+		}
 		// If the Java2ScriptVisitor is ever extended, it is important to set the
 		// project.
 		// Java2ScriptVisitor#addClassOrInterface uses
 		// getClass().newInstance().setproject(project).
-		Java2ScriptVisitor visitor = new Java2ScriptVisitor().setProject(project, testing);
+		unit.visitor = new Java2ScriptVisitor().setProject(project, config);
 		try {
 
 			// transpile the code
 
-			root.accept(visitor);
+			root.accept(unit.visitor);
+
+		} catch (Throwable e) {
+			unit.error = e;
+		}
+		profile(unit, Java2ScriptProfiler.VISIT, t0);
+		return unit;
+	}
+
+	/**
+	 * Add the time since t0 to a phase of this unit, if profiling.
+	 * 
+	 * @param unit
+	 * @param phase
+	 * @param t0    reset to now
+	 */
+	private static void profile(TranspiledUnit unit, int phase, long[] t0) {
+		if (t0 != null)
+			Java2ScriptProfiler.add(unit.times, phase, t0);
+	}
+
+	/**
+	 * Write the .js and .html files for a transpiled unit and copy its package's
+	 * resources. Always run on the build thread, in build order.
+	 * 
+	 * @param unit
+	 * @return false if there was an error
+	 */
+	private boolean writeJavaScript(TranspiledUnit unit) {
+		if (unit.log != null) {
+			System.out.print(unit.log[0]);
+			System.err.print(unit.log[1]);
+		}
+		if (unit.times == null)
+			return writeJavaScript(unit, null);
+		boolean ok = writeJavaScript(unit, Java2ScriptProfiler.now());
+		unit.times.isError = !ok;
+		profiler.addUnit(unit.times);
+		return ok;
+	}
+
+	/**
+	 * 
+	 * @param unit
+	 * @param t0   from Java2ScriptProfiler.now(), or null if not profiling
+	 * @return false if there was an error
+	 */
+	private boolean writeJavaScript(TranspiledUnit unit, long[] t0) {
+		String sourceLocation = unit.sourceLocation;
+		Java2ScriptVisitor visitor = unit.visitor;
+		if (unit.cached != null) {
+			if (isDebugging)
+				System.out.println("J2S unchanged " + sourceLocation);
+			nCached++;
+			if (bundles != null)
+				bundles.add(unit.cached.packageName);
+			addHTML(unit.cached.applets, siteFolder, htmlTemplate, true);
+			addHTML(unit.cached.apps, siteFolder, htmlTemplate, false);
+			profile(unit, Java2ScriptProfiler.HTML, t0);
+			copyResources(unit.cached.packageName, sourceLocation);
+			profile(unit, Java2ScriptProfiler.RESOURCES, t0);
+			return true;
+		}
+		if (lstMethodsDeclared != null)
+			lstMethodsDeclared.addAll(visitor.getMethodsDeclared());
+		if (htMethodsCalled != null)
+			htMethodsCalled.putAll(visitor.getMethodsCalled());
+		if (bundles != null)
+			bundles.add(visitor.getMyPackageName());
+		try {
+			if (unit.error != null)
+				throw unit.error;
 
 			// generate the .js file(s) in the site directory
 
-			outputJavaScript(visitor, j2sPath);
+			ArrayList<File> jsFiles = outputJavaScript(visitor, j2sPath);
+			profile(unit, Java2ScriptProfiler.OUTPUT, t0);
 
 			logMethods(logCalled, logDeclared, logAllCalls);
+			profile(unit, Java2ScriptProfiler.LOG, t0);
 
 			// add the HTML files in the site directory
 
 			addHTML(visitor.getAppList(true), siteFolder, htmlTemplate, true);
 			addHTML(visitor.getAppList(false), siteFolder, htmlTemplate, false);
+			profile(unit, Java2ScriptProfiler.HTML, t0);
+
+			if (cache != null) {
+				cache.put(sourceLocation, unit.hash, visitor.getMyPackageName(), jsFiles, visitor.getAppList(false),
+						visitor.getAppList(true));
+				profile(unit, Java2ScriptProfiler.CACHE, t0);
+			}
 		} catch (Throwable e) {
+			if (cache != null)
+				cache.remove(sourceLocation);
 			e.printStackTrace();
 			e.printStackTrace(System.out);
 			// find the file and delete it.
 			String outPath = j2sPath;
-			String rootName = root.getJavaElement().getElementName();
+			String rootName = sourceLocation.substring(sourceLocation.lastIndexOf('/') + 1);
 			rootName = rootName.substring(0, rootName.lastIndexOf('.'));
 			String packageName = visitor.getMyPackageName();
 			if (packageName != null) {
@@ -493,7 +1101,19 @@ class Java2ScriptCompiler {
 			}
 			return false;
 		}
-		String packageName = visitor.getMyPackageName();
+		copyResources(visitor.getMyPackageName(), sourceLocation);
+		profile(unit, Java2ScriptProfiler.RESOURCES, t0);
+		return true;
+	}
+
+	/**
+	 * Copy the non-Java files of a top-level package to the site directory, the
+	 * first time a file in that package is written.
+	 * 
+	 * @param packageName
+	 * @param sourceLocation
+	 */
+	private void copyResources(String packageName, String sourceLocation) {
 		if (packageName != null) {
 			int pt = packageName.indexOf(".");
 			if (pt >= 0)
@@ -514,7 +1134,6 @@ class Java2ScriptCompiler {
 				}
 			}
 		}
-		return true;
 	}
 
 	//// private methods ////
@@ -563,36 +1182,48 @@ class Java2ScriptCompiler {
 		return val;
 	}
 
-	private void outputJavaScript(Java2ScriptVisitor visitor, String j2sPath) {
+	/**
+	 * 
+	 * @param visitor
+	 * @param j2sPath
+	 * @return the .js files, in element order
+	 */
+	private ArrayList<File> outputJavaScript(Java2ScriptVisitor visitor, String j2sPath) {
 
 		// fragments[0] is package]
 		List<String> elements = visitor.getElementList();
 
 		// BH all compression is deprecated --- use Google Closure Compiler
 
+		ArrayList<File> files = new ArrayList<File>();
 		String packageName = visitor.getMyPackageName();
 		for (int i = 0; i < elements.size();) {
 			String elementName = elements.get(i++);
 			String element = elements.get(i++);
-			createJSFile(j2sPath, packageName, elementName, element);
+			files.add(createJSFile(j2sPath, packageName, elementName, element));
 		}
+		return files;
 	}
 
-	private void createJSFile(String j2sPath, String packageName, String elementName, String js) {
-		if (packageName != null) {
-			File folder = new File(j2sPath, packageName.replace('.', File.separatorChar));
-			j2sPath = folder.getAbsolutePath();
-			if (!folder.exists() || !folder.isDirectory()) {
-				if (!folder.mkdirs()) {
-					throw new RuntimeException("J2S failed to create folder " + j2sPath); //$NON-NLS-1$
-				}
+	private File createJSFile(String j2sPath, String packageName, String elementName, String js) {
+		File folder = new File(j2sPath);
+		if (packageName != null)
+			folder = new File(j2sPath, packageName.replace('.', File.separatorChar));
+		File f = new File(folder, elementName + ".js");
+		try {
+			writer.ensureDirectory(folder);
+			if (!writer.write(f, js, true)) {
+				// leave the file and its timestamp alone
+				nUnchanged++;
+				return f;
 			}
+		} catch (IOException e) {
+			throw new RuntimeException("J2S failed to write " + f, e); //$NON-NLS-1$
 		}
-		File f = new File(j2sPath, elementName + ".js");
 		if (isDebugging)
 			System.out.println("J2S Compiler creating " + f);
 		nJS++;
-		writeToFile(f, js);
+		return f;
 	}
 
 	private String getFileContents(File file) {
@@ -612,15 +1243,20 @@ class Java2ScriptCompiler {
 		return null;
 	}
 
-	private void writeToFile(File file, String data) {
+	/**
+	 * 
+	 * @param file
+	 * @param data
+	 * @return true if written; false if unchanged or not written
+	 */
+	private boolean writeToFile(File file, String data) {
 		if (data == null)
-			return;
+			return false;
 		try {
-			FileOutputStream os = new FileOutputStream(file);
-			os.write(data.getBytes("UTF-8"));
-			os.close();
+			return writer.write(file, data, false);
 		} catch (IOException e) {
 			e.printStackTrace();
+			return false;
 		}
 	}
 
@@ -662,6 +1298,52 @@ class Java2ScriptCompiler {
 				+ "#j2s.compiler.nonqualified.packages=org.jmol.api.js;jspecview.api.js\n" + "\n"
 				+ "# uncomment to add debugging output. Start eclipse with the -consoleLog option to see output.\n"
 				+ "#j2s.compiler.mode=debug\n\n"
+				+ "# the number of threads used to transpile files; \"auto\" uses one per processor (default 1)\n"
+				+ "# .js files are still written in build order.\n"
+				+ "#j2s.compiler.threads=auto\n\n"
+				+ "# parse each build's files together in one batch (per thread), sharing binding resolution\n"
+				+ "# (default false). Much faster for large clean builds, at the cost of more memory.\n"
+				+ "#j2s.compiler.batch=true\n\n"
+				+ "# skip transpiling files whose source, .j2s settings, and referenced classes are unchanged\n"
+				+ "# since the last build, as recorded in <site>/.j2scache (default false)\n"
+				+ "#j2s.compiler.cache=true\n\n"
+				+ "# time parsing, visiting, and writing each file, listing the slowest files (default 20) at the\n"
+				+ "# end of the build and writing j2s-profile.csv and j2s-profile.json next to the site directory\n"
+				+ "# (default false)\n"
+				+ "#j2s.profile=true\n"
+				+ "#j2s.profile.slowest=20\n\n"
+				+ "# with j2s.exact.long (default true), write operations on long local variables that\n"
+				+ "# provably stay within +/-2^53, such as loop counters, as JavaScript operators rather\n"
+				+ "# than Long.$add, Long.$lt, etc. (default true)\n"
+				+ "#j2s.exact.long.ranges=false\n\n"
+				+ "# write calls to short methods of the same .java file that cannot be overridden -- private,\n"
+				+ "# static, or final getters and setters of a field, and static methods that just return an\n"
+				+ "# expression of their parameters -- as the field or expression itself. The methods are still\n"
+				+ "# written, for reflection and for other classes. (default false)\n"
+				+ "#j2s.inline.methods=true\n\n"
+				+ "# after each build, write a copy of the site directory without the classes that nothing\n"
+				+ "# refers to by name, listing those dropped in swingjs/j2s-shaken.txt (default <none>)\n"
+				+ "#j2s.shake.directory=site-shaken\n\n"
+				+ "# a semicolon-separated list of classes or package.* to keep in that copy regardless,\n"
+				+ "# such as classes only loaded by a name put together at run time (default <none>)\n"
+				+ "#j2s.shake.roots=swingjs.plaf.*;com.example.Plugin\n\n"
+				+ "# a semicolon-separated list of packages whose private and package-private methods are\n"
+				+ "# written with short names, such as _$1c for getValueAt$I$I. Public and protected methods\n"
+				+ "# keep their j2s names for other projects and hand-written JavaScript. The names are kept\n"
+				+ "# in swingjs/j2s/_names.txt, where reflection finds them. @j2sNative code that calls one of\n"
+				+ "# these methods by its j2s name is a transpiler error. (default <none>)\n"
+				+ "#j2s.compact.names=com.example.*\n\n"
+				+ "# a semicolon-separated list of packages, or *, whose class files are also written as one\n"
+				+ "# bundle per package in swingjs/j2s/_bundles, listed in swingjs/j2s/_bundles.txt. With\n"
+				+ "# bundles: true in the page's Info, the first class needed from a package loads its whole\n"
+				+ "# bundle, so the rest of the package needs no more requests. (default <none>)\n"
+				+ "#j2s.bundle.packages=com.example.*\n\n"
+				+ "# after each build, write a gzipped .js.gz next to each .js file in site/swingjs, for servers\n"
+				+ "# that send precompressed files, and swingjs/j2s-manifest.txt listing each .js file's size,\n"
+				+ "# gzipped size, and SHA-256, for integrity attributes and ETags. With classCache: true in the\n"
+				+ "# page's Info, class files are then also kept in the browser, keyed by their SHA-256, so that\n"
+				+ "# later visits do not request them again until they change. (default false)\n"
+				+ "#j2s.gzip=true\n\n"
 				+ "# a semicolon-separated list of from->to listings of package (foo.) or class (foo.bar) \n"
 				+ "# replacements to be made. This option allows for having one class or package used in Java\n"
 				+ "# and another used in JavaScript. Take care with this. All methods in both packages must\n"
@@ -722,8 +1404,9 @@ class Java2ScriptCompiler {
 			String _MAIN_ = (isApplet ? "null" : cl);
 			String _CODE_ = (isApplet ? cl : "null");
 			template = template.replace("_NAME_", _NAME_).replace("_CODE_", _CODE_).replace("_MAIN_", _MAIN_);
+			if (!writeToFile(new File(siteFolder, fname), template))
+				continue;
 			System.out.println("J2S creating " + siteFolder + "/" + fname);
-			writeToFile(new File(siteFolder, fname), template);
 			nHTML++;
 		}
 	}
@@ -749,8 +1432,7 @@ class Java2ScriptCompiler {
 		File f = null;
 		if (files != null)
 			try {
-				if (!target.exists())
-					Files.createDirectories(target.toPath());
+				writer.ensureDirectory(target);
 				for (int i = 0; i < files.length; i++) {
 					f = files[i];
 					if (f == null) {
@@ -759,12 +1441,14 @@ class Java2ScriptCompiler {
 						copyNonclassFiles(f, new File(target, f.getName()));
 					} else {
 						String path = f.toPath().toString();
+						File dest = new File(target, f.getName());
 						if (!copyResources.contains(path)) {
 							//
 							copyResources.add(path);
+							if (dest.length() == f.length() && dest.lastModified() >= f.lastModified())
+								continue;
 							nResources++;
-							Files.copy(f.toPath(), new File(target, f.getName()).toPath(),
-									StandardCopyOption.REPLACE_EXISTING);
+							Files.copy(f.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
 							if (isDebugging)
 								System.out.println("J2S copied to site: " + path);
 						}
@@ -777,11 +1461,42 @@ class Java2ScriptCompiler {
 	}
 
 	public void finalizeProject() {
+		if (transpilers != null) {
+			transpilers.shutdownNow();
+			transpilers = null;
+		}
+		if (cache != null)
+			cache.save();
+		if (compactNames != null)
+			compactNames.save();
+		int nBundles = (bundles == null ? 0 : bundles.write(writer));
 		System.out.println(
 				"J2S processed " + nSources + " .java file" + Java2ScriptCompilationParticipant.plural(nSources)
 						+ ", created " + nJS + " .js file" + Java2ScriptCompilationParticipant.plural(nJS) + " and "
 						+ nHTML + " .html file" + Java2ScriptCompilationParticipant.plural(nHTML) + ", copied "
-						+ nResources + " resource" + Java2ScriptCompilationParticipant.plural(nResources));
+						+ nResources + " resource" + Java2ScriptCompilationParticipant.plural(nResources)
+						+ (nUnchanged + nCached == 0 ? ""
+								: "; " + nUnchanged + " .js file" + Java2ScriptCompilationParticipant.plural(nUnchanged)
+										+ " unchanged, " + nCached + " .java file"
+										+ Java2ScriptCompilationParticipant.plural(nCached) + " cached")
+						+ (nBundles == 0 ? ""
+								: "; wrote " + nBundles + " bundle" + Java2ScriptCompilationParticipant.plural(nBundles)));
+		if (isGzip) {
+			int nGzip = new Java2ScriptManifest(new File(siteFolder)).write();
+			System.out.println("J2S compressed " + nGzip + " .js file" + Java2ScriptCompilationParticipant.plural(nGzip)
+					+ "; see " + siteFolder + "/swingjs/" + Java2ScriptManifest.FILE_NAME);
+		}
+		if (shakeFolder != null) {
+			try {
+				new Java2ScriptTreeShaker(new File(siteFolder), new File(shakeFolder), shakeRoots, isDebugging).shake();
+			} catch (IOException e) {
+				System.out.println("J2S tree-shaking failed: " + e);
+			}
+		}
+		if (profiler != null) {
+			profiler.report(new File(siteFolder).getAbsoluteFile().getParentFile());
+			profiler = null;
+		}
 	}
 
 }
@@ -0,0 +1,300 @@
+package net.sf.j2s.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The .j2s settings for one build, as read by Java2ScriptCompiler.
+ *
+ * These used to be static fields of Java2ScriptVisitor and its NameMapper.
+ * Nothing here changes after construction, so a single instance can be shared
+ * by all the visitors of a build on any number of threads, and two projects can
+ * be built at the same time without seeing each other's settings.
+ *
+ */
+public class Java2ScriptConfiguration {
+
+	/**
+	 * classes and packages that do not accept $ in their method names
+	 *
+	 */
+	private final static String defaultNonQualified
+	// Math and Date both are minor extensions
+	// of JavaScript, so they are not qualified
+			= // "java.lang.Math;" +
+				// MAYBE NOT! + "java.util.Date;"
+				// swingjs.api.js and javajs.api.js contain
+				// interfaces to JavaScript methods and so
+				// are not parameterized.
+
+			"*.api.js;"
+	// netscape.JSObject interface includes 8 methods
+	// that do not need to be parameterized.
+	// + "netscape.*;"
+	;
+
+	private final static String defaultIgnoredAnnotations = "CallerSensitive;" + "ConstructorProperties;"
+			+ "Deprecated;" + "Override;" + "SaveVarargs;" + "SuppressWarnings;";
+
+	/**
+	 * includes @j2sDebug blocks; from j2s.compiler.mode=debug in .j2s
+	 *
+	 */
+	final boolean isDebugging;
+
+	/**
+	 * j2s.exact.long
+	 */
+	final boolean exactLong;
+
+	/**
+	 * j2s.exact.long.ranges; see Java2ScriptLongRanges
+	 */
+	final boolean longRanges;
+
+	/**
+	 * j2s.inline.methods
+	 */
+	final boolean inlineMethods;
+
+	/**
+	 * j2s.async.thread
+	 */
+	final boolean allowAsyncThread;
+
+	/**
+	 * multipurpose flag for testing development ideas; j2s.testing
+	 *
+	 */
+	final boolean testing;
+
+	/**
+	 * Each visitor collects its own methods-declared and methods-called lists when
+	 * these are set; the compiler merges them in build order.
+	 */
+	final boolean logMethodsDeclared, logMethodsCalled, logAllCalls;
+
+	/**
+	 * list of annotations to ignore or null to ignore ALL
+	 *
+	 */
+	private final String ignoredAnnotations;
+
+	private final Map<String, String> htClassReplacements;
+	private final List<String> lstPackageReplacements;
+
+	private final String[] nonQualifiedPackages;
+
+	/**
+	 * j2s.compact.names, as package names, or null
+	 */
+	private final String[] compactPackages;
+
+	/**
+	 * the symbol table for j2s.compact.names, or null; shared by all visitors
+	 */
+	final Java2ScriptCompactNames compactNames;
+
+	/**
+	 * string literals needing octal escapes replaced; a memo only, so it does not
+	 * matter which visitor fills it first
+	 */
+	final Map<String, String> htStringLiteralCache = new ConcurrentHashMap<>();
+
+	/**
+	 * the default configuration, as for an empty .j2s file
+	 */
+	Java2ScriptConfiguration() {
+		this(false, true, true, false, true, false, false, false, false, defaultIgnoredAnnotations, null, null, null,
+				null);
+	}
+
+	/**
+	 *
+	 * @param isDebugging
+	 * @param exactLong
+	 * @param longRanges
+	 * @param inlineMethods
+	 * @param allowAsyncThread
+	 * @param testing
+	 * @param logMethodsDeclared
+	 * @param logMethodsCalled
+	 * @param logAllCalls
+	 * @param ignoredAnnotations    semicolon-separated list, or null to ignore all
+	 *                              annotations
+	 * @param nonQualifiedPackages  .j2s option j2s.compiler.nonqualified.packages;
+	 *                              semicolon-separated list. For example,
+	 *                              org.jmol.api.js;jspecview.api.js
+	 * @param classReplacements     .j2s option j2s.class.replacements
+	 * @param compactPackages       .j2s option j2s.compact.names; semicolon-separated
+	 *                              list of packages, with or without .*
+	 * @param compactNames          the symbol table, when compactPackages is not
+	 *                              null
+	 */
+	Java2ScriptConfiguration(boolean isDebugging, boolean exactLong, boolean longRanges, boolean inlineMethods,
+			boolean allowAsyncThread, boolean testing, boolean logMethodsDeclared, boolean logMethodsCalled, boolean logAllCalls,
+			String ignoredAnnotations, String nonQualifiedPackages, String classReplacements, String compactPackages,
+			Java2ScriptCompactNames compactNames) {
+		this.isDebugging = isDebugging;
+		this.exactLong = exactLong;
+		this.longRanges = longRanges;
+		this.inlineMethods = inlineMethods;
+		this.allowAsyncThread = allowAsyncThread;
+		this.testing = testing;
+		this.logMethodsDeclared = logMethodsDeclared;
+		this.logMethodsCalled = logMethodsCalled;
+		this.logAllCalls = logAllCalls;
+		this.ignoredAnnotations = (ignoredAnnotations == null ? null : ";" + ignoredAnnotations + ";");
+		this.nonQualifiedPackages = getNonQualifiedNamePackages(nonQualifiedPackages);
+		this.compactPackages = (compactNames == null ? null : getCompactPackages(compactPackages));
+		this.compactNames = (this.compactPackages == null ? null : compactNames);
+		if (classReplacements == null) {
+			htClassReplacements = null;
+			lstPackageReplacements = null;
+		} else {
+			Map<String, String> map = new HashMap<String, String>();
+			List<String> list = new ArrayList<String>();
+			setClassReplacements(classReplacements, map, list);
+			htClassReplacements = Collections.unmodifiableMap(map);
+			lstPackageReplacements = Collections.unmodifiableList(list);
+		}
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return true if annotations of this name are not to be recorded
+	 */
+	boolean isAnnotationIgnored(String name) {
+		return (ignoredAnnotations == null || ignoredAnnotations.indexOf(";" + name + ";") >= 0);
+	}
+
+	private static void setClassReplacements(String keyValues, Map<String, String> htClassReplacements,
+			List<String> lstPackageReplacements) {
+		// j2s.class.replacements=org.apache.log4j.*:jalview.jslogger.;
+		String[] pairs = keyValues.split(";");
+		for (int i = pairs.length; --i >= 0;) {
+			pairs[i] = pairs[i].trim();
+			if (pairs[i].length() == 0)
+				continue;
+			String[] kv = pairs[i].split("->");
+			htClassReplacements.put(kv[0], kv[1]);
+			if (kv[0].endsWith("."))
+				lstPackageReplacements.add(kv[0]);
+			Java2ScriptVisitor.log("class replacement " + kv[0] + " --> " + kv[1]);
+		}
+	}
+
+	String checkClassReplacement(String className) {
+		if (htClassReplacements != null) {
+			String rep = htClassReplacements.get(className);
+			if (rep == null && lstPackageReplacements != null) {
+				for (int i = lstPackageReplacements.size(); --i >= 0;) {
+					rep = lstPackageReplacements.get(i);
+					if (className.startsWith(rep)) {
+						rep = htClassReplacements.get(rep) + className.substring(rep.length());
+						break;
+					}
+					if (i == 0)
+						rep = null;
+				}
+
+			}
+			if (rep != null) {
+				Java2ScriptVisitor.log(className + " -> " + rep);
+				return rep;
+			}
+		}
+		return className;
+	}
+
+	private static String[] getNonQualifiedNamePackages(String names) {
+		names = defaultNonQualified + (names == null ? "" : names);
+		String[] nonQualifiedPackages = names.replace(";;", ";").trim().split(";");
+		for (int i = nonQualifiedPackages.length; --i >= 0;) {
+			String s = nonQualifiedPackages[i];
+			if (s.length() == 0)
+				continue;
+			if (s.startsWith("*."))
+				s = s.substring(1);
+			if (s.endsWith("."))
+				s = s.substring(0, s.length() - 1);
+			nonQualifiedPackages[i] = (s.endsWith("*") ? s.substring(0, s.length() - 1) : s + ".").trim();
+		}
+		return nonQualifiedPackages;
+	}
+
+	private static String[] getCompactPackages(String names) {
+		List<String> list = new ArrayList<String>();
+		String[] packages = (names == null ? "" : names).split(";");
+		for (int i = 0; i < packages.length; i++) {
+			String s = packages[i].trim();
+			if (s.endsWith("*"))
+				s = s.substring(0, s.length() - 1);
+			if (s.endsWith("."))
+				s = s.substring(0, s.length() - 1);
+			if (s.length() > 0)
+				list.add(s);
+		}
+		return (list.size() == 0 ? null : list.toArray(new String[list.size()]));
+	}
+
+	/**
+	 * Check to see if the methods of classes in this package may be given short
+	 * names; j2s.compact.names lists packages, which include their subpackages.
+	 *
+	 * @param packageName
+	 * @return
+	 */
+	boolean isPackageCompacted(String packageName) {
+		if (compactPackages == null)
+			return false;
+		for (int i = compactPackages.length; --i >= 0;) {
+			String s = compactPackages[i];
+			if (packageName.equals(s) || packageName.startsWith(s) && packageName.charAt(s.length()) == '.')
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check to see if this class is in a package for which we exclude parameter
+	 * qualification
+	 *
+	 * @param className
+	 * @return
+	 */
+	boolean isPackageOrClassNonqualified(String className) {
+		if (className.indexOf("$") >= 0)
+			return false; // inner class
+		className += ".";
+		for (int i = nonQualifiedPackages.length; --i >= 0;) {
+			String s = nonQualifiedPackages[i];
+			if (s.length() > 0 && s.startsWith(".") ? className.contains(s) : className.startsWith(s)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	boolean isMethodNonqualified(String className, String methodName, String key) {
+		if (className.equals("java.lang.Math")) {
+			switch (methodName) {
+			case "ulp":
+			case "nextDown":
+			case "nextUp":
+			case "nextAfter":
+			case "getExponent":
+				return false;
+			default:
+				return (key.indexOf("J") < 0);
+			}
+		}
+		return (isPackageOrClassNonqualified(className));
+	}
+
+}
@@ -0,0 +1,598 @@
+package net.sf.j2s.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ConditionalExpression;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.LambdaExpression;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.WhileStatement;
+
+/**
+ * Value ranges of long local variables, for j2s.exact.long.ranges in .j2s.
+ *
+ * With j2s.exact.long, every long operation is a call to Long.$add, Long.$lt,
+ * and so on, in j2sClazz.js, because a long that leaves the +/-2^53 range of a
+ * JavaScript number is held as an array. A long local variable whose every
+ * assignment provably stays within that range is always a plain number, and
+ * operations on it can be written as JavaScript operators.
+ *
+ * The analysis is conservative. Only local variables declared with an
+ * initializer or assigned later are considered, not fields or parameters. A
+ * value is known to be in range if it is
+ * <ul>
+ * <li>an int, short, or byte expression (but not char, which is a string)</li>
+ * <li>a long constant</li>
+ * <li>a local variable already known to be in range</li>
+ * <li>System.currentTimeMillis(), taken to be from 0 to 2^52, which is the
+ * year 144683</li>
+ * <li>+, -, or * of values in range, or a conditional or cast of them, where
+ * the result is in range, too</li>
+ * </ul>
+ * Increments -- ++, --, += and -= -- are allowed only where the innermost
+ * loop's condition bounds them, as in {@code for (long i = 0; i < n; i++)},
+ * the increment is the variable's only assignment in that loop, and it is not
+ * in a nested loop. A variable with any other assignment is left to
+ * Long.$xxx, as are division, remainder, shifts, and bitwise operations, which
+ * are not simple JavaScript operators for longs.
+ */
+class Java2ScriptLongRanges extends ASTVisitor {
+
+	/**
+	 * Number.MAX_SAFE_INTEGER
+	 */
+	private final static long MAX = (1L << 53) - 1;
+
+	private final static long[] BYTE = { Byte.MIN_VALUE, Byte.MAX_VALUE };
+	private final static long[] SHORT = { Short.MIN_VALUE, Short.MAX_VALUE };
+	private final static long[] INT = { Integer.MIN_VALUE, Integer.MAX_VALUE };
+	private final static long[] TIME = { 0, 1L << 52 };
+
+	/**
+	 * a variable with no known value yet
+	 */
+	private final static long[] EMPTY = new long[0];
+
+	private final static int MAX_PASSES = 20;
+
+	/**
+	 * long local variables, in source order, and the nodes that assign them
+	 */
+	private final Map<IVariableBinding, List<ASTNode>> defs = new LinkedHashMap<>();
+
+	private final Set<IVariableBinding> unsafe = new HashSet<>();
+
+	private final Map<IVariableBinding, long[]> ranges = new LinkedHashMap<>();
+
+	Java2ScriptLongRanges(CompilationUnit root) {
+		root.accept(this);
+		solve();
+	}
+
+	/**
+	 * Can this node's own long operation be written with JavaScript operators,
+	 * because every long it works on is a number in range?
+	 *
+	 * @param node
+	 * @return true for an in-range long +, -, *, unary -, comparison, string
+	 *         concatenation, cast, ++, --, or assignment to an in-range local
+	 */
+	boolean isNative(ASTNode node) {
+		switch (node.getNodeType()) {
+		case ASTNode.INFIX_EXPRESSION:
+			InfixExpression infix = (InfixExpression) node;
+			switch (getTypeName(infix)) {
+			case "long":
+				// not a constant such as 1L << 40, which the visitor writes as its value
+				switch (infix.getOperator().toString()) {
+				case "+":
+				case "-":
+				case "*":
+					return getRange(infix) != null;
+				}
+				return false;
+			case "boolean":
+				switch (infix.getOperator().toString()) {
+				case "<":
+				case ">":
+				case "<=":
+				case ">=":
+				case "==":
+				case "!=":
+					return hasLong(infix) && getRange(infix.getLeftOperand()) != null
+							&& getRange(infix.getRightOperand()) != null;
+				}
+				return false;
+			case "String":
+				if (!isInRangeIfLong(infix.getLeftOperand()) || !isInRangeIfLong(infix.getRightOperand()))
+					return false;
+				List<?> operands = infix.extendedOperands();
+				for (int i = operands.size(); --i >= 0;)
+					if (!isInRangeIfLong((Expression) operands.get(i)))
+						return false;
+				return hasLong(infix);
+			}
+			return false;
+		case ASTNode.PREFIX_EXPRESSION:
+			if (((PrefixExpression) node).getOperator().toString().equals("~"))
+				return false;
+			//$FALL-THROUGH$
+		case ASTNode.POSTFIX_EXPRESSION:
+			return getTypeName((Expression) node).equals("long") && getRange((Expression) node) != null;
+		case ASTNode.CAST_EXPRESSION:
+			// (float) needs Long.$fval to round to 32 bits
+			CastExpression cast = (CastExpression) node;
+			return !getTypeName(cast).equals("float") && getTypeName(cast.getExpression()).equals("long")
+					&& getRange(cast.getExpression()) != null;
+		case ASTNode.ASSIGNMENT:
+			Assignment a = (Assignment) node;
+			switch (getTypeName(a.getLeftHandSide())) {
+			case "long":
+				return getRange(a.getLeftHandSide()) != null;
+			case "double":
+				return getTypeName(a.getRightHandSide()).equals("long") && getRange(a.getRightHandSide()) != null;
+			}
+			return false;
+		case ASTNode.SIMPLE_NAME:
+		case ASTNode.PARENTHESIZED_EXPRESSION:
+		case ASTNode.CONDITIONAL_EXPRESSION:
+		case ASTNode.METHOD_INVOCATION:
+			// as an operand to be converted
+			return getTypeName((Expression) node).equals("long") && getRange((Expression) node) != null;
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param e
+	 * @return true if e is not a long or is a long in range
+	 */
+	private boolean isInRangeIfLong(Expression e) {
+		return !getTypeName(e).equals("long") || getRange(e) != null;
+	}
+
+	private boolean hasLong(InfixExpression infix) {
+		if (getTypeName(infix.getLeftOperand()).equals("long") || getTypeName(infix.getRightOperand()).equals("long"))
+			return true;
+		List<?> operands = infix.extendedOperands();
+		for (int i = operands.size(); --i >= 0;)
+			if (getTypeName((Expression) operands.get(i)).equals("long"))
+				return true;
+		return false;
+	}
+
+	private static String getTypeName(Expression e) {
+		ITypeBinding type = e.resolveTypeBinding();
+		return (type == null ? "" : type.getName());
+	}
+
+	/**
+	 * The range of values of an integer expression, given what is known so far.
+	 *
+	 * @param e
+	 * @return {min, max}, EMPTY for a variable with no value yet, or null if the
+	 *         value may not be a number in range
+	 */
+	long[] getRange(Expression e) {
+		ITypeBinding type = e.resolveTypeBinding();
+		if (type == null || !type.isPrimitive())
+			return null;
+		if (unwrap(e) instanceof CastExpression && type.getName().equals("long")) {
+			// not (long) 1.5 or (long) 'c', even as constants
+			return getRange(((CastExpression) unwrap(e)).getExpression());
+		}
+		Object value = e.resolveConstantExpressionValue();
+		switch (type.getName()) {
+		case "byte":
+			return BYTE;
+		case "short":
+			return SHORT;
+		case "int":
+			return (value instanceof Integer ? range((Integer) value, (Integer) value) : INT);
+		case "long":
+			if (value instanceof Long)
+				return range((Long) value, (Long) value);
+			break;
+		default:
+			return null;
+		}
+		switch (e.getNodeType()) {
+		case ASTNode.PARENTHESIZED_EXPRESSION:
+			return getRange(((ParenthesizedExpression) e).getExpression());
+		case ASTNode.SIMPLE_NAME:
+			IBinding b = ((SimpleName) e).resolveBinding();
+			if (!defs.containsKey(b) || unsafe.contains(b))
+				return null;
+			long[] r = ranges.get(b);
+			return (r == null ? EMPTY : r);
+		case ASTNode.ASSIGNMENT:
+			return getRange(((Assignment) e).getLeftHandSide());
+		case ASTNode.POSTFIX_EXPRESSION:
+			return getRange(((PostfixExpression) e).getOperand());
+		case ASTNode.PREFIX_EXPRESSION:
+			PrefixExpression prefix = (PrefixExpression) e;
+			r = getRange(prefix.getOperand());
+			switch (prefix.getOperator().toString()) {
+			case "-":
+				return (r == null || r == EMPTY ? r : new long[] { -r[1], -r[0] });
+			case "+":
+			case "++":
+			case "--":
+				return r;
+			}
+			return null;
+		case ASTNode.CONDITIONAL_EXPRESSION:
+			ConditionalExpression c = (ConditionalExpression) e;
+			return join(getRange(c.getThenExpression()), getRange(c.getElseExpression()));
+		case ASTNode.METHOD_INVOCATION:
+			IMethodBinding m = ((MethodInvocation) e).resolveMethodBinding();
+			return (m != null && m.getName().equals("currentTimeMillis")
+					&& m.getDeclaringClass().getQualifiedName().equals("java.lang.System") ? TIME : null);
+		case ASTNode.INFIX_EXPRESSION:
+			InfixExpression infix = (InfixExpression) e;
+			String op = infix.getOperator().toString();
+			r = getRange(infix.getLeftOperand());
+			r = operate(r, op, getRange(infix.getRightOperand()));
+			List<?> operands = infix.extendedOperands();
+			for (int i = 0, n = operands.size(); i < n; i++)
+				r = operate(r, op, getRange((Expression) operands.get(i)));
+			return r;
+		}
+		return null;
+	}
+
+	private static long[] operate(long[] a, String op, long[] b) {
+		if (a == null || b == null)
+			return null;
+		if (a == EMPTY || b == EMPTY)
+			return EMPTY;
+		switch (op) {
+		case "+":
+			return range(a[0] + b[0], a[1] + b[1]);
+		case "-":
+			return range(a[0] - b[1], a[1] - b[0]);
+		case "*":
+			// all in range, so no product is more than 2^106
+			double p0 = (double) a[0] * b[0], p1 = (double) a[0] * b[1];
+			double p2 = (double) a[1] * b[0], p3 = (double) a[1] * b[1];
+			double min = Math.min(Math.min(p0, p1), Math.min(p2, p3));
+			double max = Math.max(Math.max(p0, p1), Math.max(p2, p3));
+			return (min < -MAX || max > MAX ? null : range((long) min, (long) max));
+		}
+		return null;
+	}
+
+	private static long[] join(long[] a, long[] b) {
+		if (a == null || b == null)
+			return null;
+		if (a == EMPTY)
+			return b;
+		if (b == EMPTY)
+			return a;
+		return new long[] { Math.min(a[0], b[0]), Math.max(a[1], b[1]) };
+	}
+
+	private static long[] range(long min, long max) {
+		return (min < -MAX || max > MAX ? null : new long[] { min, max });
+	}
+
+	/// collection of long locals and their assignments
+
+	@Override
+	public boolean visit(VariableDeclarationFragment node) {
+		IVariableBinding v = node.resolveBinding();
+		if (v != null && !v.isField() && !v.isParameter() && v.getType().getName().equals("long")) {
+			List<ASTNode> list = getDefs(v);
+			if (node.getInitializer() != null)
+				list.add(node);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean visit(Assignment node) {
+		addDef(node.getLeftHandSide(), node);
+		return true;
+	}
+
+	@Override
+	public boolean visit(PrefixExpression node) {
+		String op = node.getOperator().toString();
+		if (op.equals("++") || op.equals("--"))
+			addDef(node.getOperand(), node);
+		return true;
+	}
+
+	@Override
+	public boolean visit(PostfixExpression node) {
+		addDef(node.getOperand(), node);
+		return true;
+	}
+
+	private List<ASTNode> getDefs(IVariableBinding v) {
+		List<ASTNode> list = defs.get(v);
+		if (list == null)
+			defs.put(v, list = new ArrayList<>());
+		return list;
+	}
+
+	private void addDef(Expression left, ASTNode node) {
+		left = unwrap(left);
+		if (left instanceof SimpleName) {
+			IBinding b = ((SimpleName) left).resolveBinding();
+			if (b instanceof IVariableBinding && defs.containsKey(b))
+				defs.get(b).add(node);
+		}
+	}
+
+	private static Expression unwrap(Expression e) {
+		while (e instanceof ParenthesizedExpression)
+			e = ((ParenthesizedExpression) e).getExpression();
+		return e;
+	}
+
+	/// the ranges
+
+	/**
+	 * Widen the ranges until they settle. A variable whose range is still growing
+	 * after MAX_PASSES is dropped, and the ranges are recalculated without it.
+	 */
+	private void solve() {
+		while (true) {
+			ranges.clear();
+			Set<IVariableBinding> changed = new HashSet<>();
+			for (int pass = 0; pass < MAX_PASSES; pass++) {
+				changed.clear();
+				for (Map.Entry<IVariableBinding, List<ASTNode>> e : defs.entrySet()) {
+					IVariableBinding v = e.getKey();
+					if (unsafe.contains(v))
+						continue;
+					long[] r = EMPTY;
+					List<ASTNode> list = e.getValue();
+					for (int i = 0, n = list.size(); i < n && r != null; i++)
+						r = join(r, getDefRange(v, list.get(i)));
+					if (r == null) {
+						unsafe.add(v);
+						changed.add(v);
+					} else if (r != EMPTY) {
+						long[] old = ranges.get(v);
+						if (old == null || old[0] != r[0] || old[1] != r[1]) {
+							ranges.put(v, r);
+							changed.add(v);
+						}
+					}
+				}
+				if (changed.isEmpty())
+					break;
+			}
+			if (changed.isEmpty())
+				break;
+			unsafe.addAll(changed);
+		}
+		for (IVariableBinding v : defs.keySet())
+			if (!ranges.containsKey(v))
+				unsafe.add(v);
+	}
+
+	/**
+	 * The range a variable may have after one of its assignments.
+	 *
+	 * @param v
+	 * @param node
+	 * @return {min, max}, EMPTY, or null
+	 */
+	private long[] getDefRange(IVariableBinding v, ASTNode node) {
+		long[] step;
+		switch (node.getNodeType()) {
+		case ASTNode.VARIABLE_DECLARATION_FRAGMENT:
+			return getRange(((VariableDeclarationFragment) node).getInitializer());
+		case ASTNode.ASSIGNMENT:
+			Assignment a = (Assignment) node;
+			step = getRange(a.getRightHandSide());
+			switch (a.getOperator().toString()) {
+			case "=":
+				return step;
+			case "+=":
+				break;
+			case "-=":
+				step = operate(new long[] { 0, 0 }, "-", step);
+				break;
+			default:
+				return null;
+			}
+			break;
+		case ASTNode.PREFIX_EXPRESSION:
+			step = (((PrefixExpression) node).getOperator().toString().equals("++") ? new long[] { 1, 1 }
+					: new long[] { -1, -1 });
+			break;
+		case ASTNode.POSTFIX_EXPRESSION:
+			step = (((PostfixExpression) node).getOperator().toString().equals("++") ? new long[] { 1, 1 }
+					: new long[] { -1, -1 });
+			break;
+		default:
+			return null;
+		}
+		return getIncrementRange(v, node, step);
+	}
+
+	/**
+	 * v += step, which must be bounded by the condition of the innermost loop
+	 * holding it.
+	 *
+	 * @param v
+	 * @param node
+	 * @param step
+	 * @return {min, max}, EMPTY, or null
+	 */
+	private long[] getIncrementRange(IVariableBinding v, ASTNode node, long[] step) {
+		if (step == null || step == EMPTY)
+			return step;
+		boolean up = (step[0] >= 0);
+		if (!up && step[1] > 0)
+			return null;
+		ASTNode loop = getLoop(node);
+		if (loop == null || !isOnlyDefInLoop(v, node, loop))
+			return null;
+		Expression cond = (loop instanceof ForStatement ? ((ForStatement) loop).getExpression()
+				: ((WhileStatement) loop).getExpression());
+		// for (... ; i < n; i++) : i <= max(n) - 1 + step
+		Object[] bound = (cond == null ? null : findBound(v, cond, up));
+		if (bound == null)
+			return null;
+		long[] rb = getRange((Expression) bound[0]);
+		long[] r = ranges.get(v);
+		if (rb == null || rb == EMPTY || r == null)
+			return (rb == null ? null : EMPTY);
+		boolean isStrict = (bound[1] == Boolean.TRUE);
+		return (up ? range(r[0], Math.max(r[0], rb[1] - (isStrict ? 1 : 0) + step[1]))
+				: range(Math.min(r[1], rb[0] + (isStrict ? 1 : 0) + step[0]), r[1]));
+	}
+
+	/**
+	 * The loop that runs an increment once per iteration: the innermost for or
+	 * while loop holding it, with the increment in its body or, for a for loop,
+	 * in its updaters.
+	 *
+	 * @param node
+	 * @return the ForStatement or WhileStatement, or null
+	 */
+	private static ASTNode getLoop(ASTNode node) {
+		for (ASTNode child = node, parent = node.getParent(); parent != null; child = parent, parent = parent
+				.getParent()) {
+			switch (parent.getNodeType()) {
+			case ASTNode.FOR_STATEMENT:
+				ForStatement f = (ForStatement) parent;
+				if (f.initializers().contains(child))
+					continue;
+				return (child == f.getExpression() ? null : parent);
+			case ASTNode.WHILE_STATEMENT:
+				return (child == ((WhileStatement) parent).getExpression() ? null : parent);
+			case ASTNode.DO_STATEMENT:
+			case ASTNode.ENHANCED_FOR_STATEMENT:
+				return null;
+			}
+			if (parent instanceof BodyDeclaration || parent instanceof LambdaExpression
+					|| parent instanceof AnonymousClassDeclaration || parent instanceof AbstractTypeDeclaration)
+				return null;
+		}
+		return null;
+	}
+
+	/**
+	 * Check that no other assignment of v is within the loop, apart from a for
+	 * loop's initializers.
+	 *
+	 * @param v
+	 * @param node
+	 * @param loop
+	 * @return true if node is the only one
+	 */
+	private boolean isOnlyDefInLoop(IVariableBinding v, ASTNode node, ASTNode loop) {
+		List<ASTNode> list = defs.get(v);
+		for (int i = list.size(); --i >= 0;) {
+			ASTNode def = list.get(i);
+			if (def == node)
+				continue;
+			for (ASTNode p = def; p != null; p = p.getParent()) {
+				if (p.getParent() == loop) {
+					if (loop instanceof ForStatement && ((ForStatement) loop).initializers().contains(p))
+						break;
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Find v < bound, v <= bound, bound > v, or bound >= v (or the reverse when
+	 * counting down) in a loop condition or in one of its && terms.
+	 *
+	 * @param v
+	 * @param cond
+	 * @param up
+	 * @return {bound, Boolean isStrict} or null
+	 */
+	private static Object[] findBound(IVariableBinding v, Expression cond, boolean up) {
+		cond = unwrap(cond);
+		if (!(cond instanceof InfixExpression))
+			return null;
+		InfixExpression infix = (InfixExpression) cond;
+		String op = infix.getOperator().toString();
+		if (op.equals("&&")) {
+			Object[] bound = findBound(v, infix.getLeftOperand(), up);
+			if (bound == null)
+				bound = findBound(v, infix.getRightOperand(), up);
+			List<?> operands = infix.extendedOperands();
+			for (int i = operands.size(); --i >= 0 && bound == null;)
+				bound = findBound(v, (Expression) operands.get(i), up);
+			return bound;
+		}
+		Expression left = infix.getLeftOperand();
+		Expression right = infix.getRightOperand();
+		if (isVariable(v, right)) {
+			// n > i is i < n
+			Expression e = left;
+			left = right;
+			right = e;
+			switch (op) {
+			case "<":
+				op = ">";
+				break;
+			case ">":
+				op = "<";
+				break;
+			case "<=":
+				op = ">=";
+				break;
+			case ">=":
+				op = "<=";
+				break;
+			}
+		}
+		if (!isVariable(v, left))
+			return null;
+		switch (op) {
+		case "<":
+			return (up ? new Object[] { right, Boolean.TRUE } : null);
+		case "<=":
+			return (up ? new Object[] { right, Boolean.FALSE } : null);
+		case ">":
+			return (up ? null : new Object[] { right, Boolean.TRUE });
+		case ">=":
+			return (up ? null : new Object[] { right, Boolean.FALSE });
+		}
+		return null;
+	}
+
+	private static boolean isVariable(IVariableBinding v, Expression e) {
+		e = unwrap(e);
+		return e instanceof SimpleName && v.equals(((SimpleName) e).resolveBinding());
+	}
+
+}
@@ -0,0 +1,159 @@
+package net.sf.j2s.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Precompressed files and an integrity manifest for j2s.gzip in .j2s.
+ *
+ * After each build, every .js file under site/swingjs -- class files, bundles,
+ * core files, and the runtime -- gets a .js.gz next to it, compressed at the
+ * highest level, for servers that can send precompressed files (nginx
+ * gzip_static, for example). A .js.gz is made again whenever the digest or
+ * size of its .js file is not the one the manifest recorded for it; file times
+ * cannot show that a .js file written in the same clock tick as its .js.gz has
+ * changed. A .js.gz left without a .js file is deleted.
+ *
+ * site/swingjs/j2s-manifest.txt then lists each .js file by its path in the
+ * site, with its size, the size of its .js.gz, and its SHA-256 digest in the
+ * form sha256-&lt;base64&gt;, which can be used as is for a script integrity
+ * attribute or as a strong ETag. Every .js file is read and digested again
+ * for each manifest.
+ *
+ * (There is no Brotli encoder in the JDK, so only gzip is written.)
+ */
+class Java2ScriptManifest {
+
+	static final String FILE_NAME = "j2s-manifest.txt";
+
+	private static final String HEADER = "# j2s.gzip";
+
+	private final File siteFolder;
+
+	private final File swingjsFolder;
+
+	private final File manifestFile;
+
+	/**
+	 * path to [bytes, gzip bytes, digest], from the last manifest
+	 */
+	private final Map<String, String[]> oldEntries = new HashMap<>();
+
+	/**
+	 * path to [bytes, gzip bytes, digest], in path order
+	 */
+	private final Map<String, String[]> entries = new TreeMap<>();
+
+	private MessageDigest digest;
+
+	private int nCompressed;
+
+	/**
+	 *
+	 * @param siteFolder the site directory, as j2s.site.directory
+	 */
+	Java2ScriptManifest(File siteFolder) {
+		this.siteFolder = siteFolder;
+		swingjsFolder = new File(siteFolder, "swingjs");
+		manifestFile = new File(swingjsFolder, FILE_NAME);
+	}
+
+	/**
+	 * Compress what has changed and write the manifest; from finalizeProject.
+	 *
+	 * @return the number of .js.gz files written
+	 */
+	int write() {
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			System.out.println("J2S cannot write " + manifestFile + " " + e.getMessage());
+			return 0;
+		}
+		readManifest();
+		try {
+			update(swingjsFolder);
+		} catch (IOException e) {
+			System.out.println("J2S cannot compress files in " + swingjsFolder + " " + e.getMessage());
+			return nCompressed;
+		}
+		StringBuffer sb = new StringBuffer(HEADER).append(": path, bytes, gzip bytes, sha-256\n");
+		for (Map.Entry<String, String[]> e : entries.entrySet()) {
+			String[] v = e.getValue();
+			sb.append(e.getKey()).append('\t').append(v[0]).append('\t').append(v[1]).append('\t').append(v[2])
+					.append('\n');
+		}
+		try {
+			Files.write(manifestFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			System.out.println("J2S cannot write " + manifestFile + " " + e.getMessage());
+		}
+		return nCompressed;
+	}
+
+	private void readManifest() {
+		if (!manifestFile.exists())
+			return;
+		try {
+			List<String> lines = Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8);
+			for (int i = 0; i < lines.size(); i++) {
+				String[] fields = lines.get(i).split("\t");
+				if (fields.length == 4 && !fields[0].startsWith("#"))
+					oldEntries.put(fields[0], new String[] { fields[1], fields[2], fields[3] });
+			}
+		} catch (IOException e) {
+			System.out.println("J2S cannot read " + manifestFile + " " + e.getMessage());
+		}
+	}
+
+	private void update(File dir) throws IOException {
+		File[] list = dir.listFiles();
+		if (list == null)
+			return;
+		for (int i = 0; i < list.length; i++) {
+			File f = list[i];
+			String name = f.getName();
+			if (f.isDirectory()) {
+				update(f);
+			} else if (name.endsWith(".js")) {
+				addFile(f);
+			} else if (name.endsWith(".js.gz") && !new File(dir, name.substring(0, name.length() - 3)).exists()) {
+				f.delete();
+			}
+		}
+	}
+
+	private void addFile(File f) throws IOException {
+		String path = siteFolder.toPath().relativize(f.toPath()).toString().replace(File.separatorChar, '/');
+		File gz = new File(f.getPath() + ".gz");
+		String[] entry = oldEntries.get(path);
+		byte[] bytes = Files.readAllBytes(f.toPath());
+		String sha = "sha256-" + Base64.getEncoder().encodeToString(digest.digest(bytes));
+		if (entry == null || !gz.exists() || !entry[0].equals("" + bytes.length) || !entry[1].equals("" + gz.length())
+				|| !entry[2].equals(sha)) {
+			try (OutputStream os = new GZIPOutputStream(new FileOutputStream(gz)) {
+				{
+					def.setLevel(Deflater.BEST_COMPRESSION);
+				}
+			}) {
+				os.write(bytes);
+			}
+			nCompressed++;
+		}
+		entries.put(path, new String[] { "" + bytes.length, "" + gz.length(), sha });
+	}
+
+}
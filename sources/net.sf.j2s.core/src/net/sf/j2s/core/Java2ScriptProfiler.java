@@ -0,0 +1,218 @@
+package net.sf.j2s.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Timing for j2s.profile=true in .j2s.
+ *
+ * Each transpiled file gets wall-clock and CPU time for each phase, measured
+ * on whichever thread ran that phase. At the end of the build, the totals and
+ * the slowest files are written to the console, and every file's times to
+ * j2s-profile.csv and j2s-profile.json in the directory holding the site
+ * directory.
+ *
+ * Binding resolution is part of ASTParser.createAST(s) and cannot be timed
+ * apart from parsing, so "parse" includes it. With j2s.compiler.batch or the
+ * command-line driver, a file's parse time is the time JDT took to deliver its
+ * AST after the previous one.
+ */
+class Java2ScriptProfiler {
+
+	static final int PARSE = 0;
+	static final int CACHE = 1;
+	static final int VISIT = 2;
+	static final int OUTPUT = 3;
+	static final int HTML = 4;
+	static final int RESOURCES = 5;
+	static final int LOG = 6;
+
+	private static final String[] phaseNames = { "parse", "cache", "visit", "output", "html", "resources",
+			"log" };
+
+	private static final int NPHASES = phaseNames.length;
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private static final boolean haveCPU = threads.isCurrentThreadCpuTimeSupported();
+
+	/**
+	 * One file's times: [wall, cpu] for each phase, in nanoseconds.
+	 */
+	static class Times {
+
+		final long[] t = new long[NPHASES * 2];
+
+		String sourceLocation;
+
+		boolean isError;
+
+		long getWall() {
+			long n = 0;
+			for (int i = 0; i < NPHASES; i++)
+				n += t[i * 2];
+			return n;
+		}
+
+		long getCPU() {
+			long n = 0;
+			for (int i = 0; i < NPHASES; i++)
+				n += t[i * 2 + 1];
+			return n;
+		}
+
+	}
+
+	private final List<Times> units = new ArrayList<>();
+
+	private final int nSlowest;
+
+	private final long buildStart = System.nanoTime();
+
+	/**
+	 *
+	 * @param nSlowest number of slowest files to list on the console
+	 */
+	Java2ScriptProfiler(int nSlowest) {
+		this.nSlowest = nSlowest;
+	}
+
+	/**
+	 *
+	 * @return {wall, cpu} now for this thread, to pass to add()
+	 */
+	static long[] now() {
+		return new long[] { System.nanoTime(), haveCPU ? threads.getCurrentThreadCpuTime() : 0 };
+	}
+
+	/**
+	 * Add the time since t0 to a phase and reset t0 to now, so that consecutive
+	 * phases can share one start array.
+	 *
+	 * @param times
+	 * @param phase
+	 * @param t0    from now()
+	 */
+	static void add(Times times, int phase, long[] t0) {
+		long wall = System.nanoTime();
+		long cpu = (haveCPU ? threads.getCurrentThreadCpuTime() : 0);
+		times.t[phase * 2] += wall - t0[0];
+		times.t[phase * 2 + 1] += cpu - t0[1];
+		t0[0] = wall;
+		t0[1] = cpu;
+	}
+
+	/**
+	 * Record a finished file; from the build thread only.
+	 *
+	 * @param times
+	 */
+	void addUnit(Times times) {
+		units.add(times);
+	}
+
+	/**
+	 * Report to the console and write the CSV and JSON files.
+	 *
+	 * @param dir the directory holding the site directory
+	 */
+	void report(File dir) {
+		long buildWall = System.nanoTime() - buildStart;
+		long[] totals = new long[NPHASES * 2];
+		for (int i = units.size(); --i >= 0;) {
+			long[] t = units.get(i).t;
+			for (int j = 0; j < totals.length; j++)
+				totals[j] += t[j];
+		}
+		System.out.println("J2S profile: " + units.size() + " file"
+				+ Java2ScriptCompilationParticipant.plural(units.size()) + " in " + ms(buildWall) + " ms"
+				+ (haveCPU ? "" : " (no thread CPU time available)"));
+		for (int i = 0; i < NPHASES; i++)
+			System.out.println("J2S profile: " + phaseNames[i] + " wall " + ms(totals[i * 2]) + " ms, cpu "
+					+ ms(totals[i * 2 + 1]) + " ms");
+		List<Times> sorted = new ArrayList<>(units);
+		Collections.sort(sorted, new Comparator<Times>() {
+
+			@Override
+			public int compare(Times a, Times b) {
+				return Long.compare(b.getWall(), a.getWall());
+			}
+
+		});
+		for (int i = 0, n = Math.min(nSlowest, sorted.size()); i < n; i++) {
+			Times t = sorted.get(i);
+			System.out.println("J2S profile: slowest " + (i + 1) + " " + ms(t.getWall()) + " ms (parse "
+					+ ms(t.t[PARSE * 2]) + ", visit " + ms(t.t[VISIT * 2]) + ", output " + ms(t.t[OUTPUT * 2])
+					+ ") " + t.sourceLocation);
+		}
+		writeCSV(new File(dir, "j2s-profile.csv"));
+		writeJSON(new File(dir, "j2s-profile.json"), buildWall, totals, sorted);
+	}
+
+	private static String ms(long ns) {
+		return String.valueOf(Math.round(ns / 1e4) / 100.0);
+	}
+
+	private void writeCSV(File file) {
+		StringBuffer sb = new StringBuffer("file,error,wall_ms,cpu_ms");
+		for (int i = 0; i < NPHASES; i++)
+			sb.append(',').append(phaseNames[i]).append("_wall_ms,").append(phaseNames[i]).append("_cpu_ms");
+		sb.append('\n');
+		for (int i = 0; i < units.size(); i++) {
+			Times t = units.get(i);
+			sb.append('"').append(t.sourceLocation.replace("\"", "\"\"")).append('"').append(',').append(t.isError)
+					.append(',').append(ms(t.getWall())).append(',').append(ms(t.getCPU()));
+			for (int j = 0; j < t.t.length; j++)
+				sb.append(',').append(ms(t.t[j]));
+			sb.append('\n');
+		}
+		write(file, sb.toString());
+	}
+
+	private void writeJSON(File file, long buildWall, long[] totals, List<Times> sorted) {
+		StringBuffer sb = new StringBuffer("{\n\"created\":").append(quote(new Date().toString()))
+				.append(",\n\"version\":").append(quote(Java2ScriptVisitor.VERSION)).append(",\n\"build_wall_ms\":")
+				.append(ms(buildWall)).append(",\n\"phases\":{");
+		for (int i = 0; i < NPHASES; i++)
+			sb.append(i == 0 ? "\n " : ",\n ").append(quote(phaseNames[i])).append(":{\"wall_ms\":")
+					.append(ms(totals[i * 2])).append(",\"cpu_ms\":").append(ms(totals[i * 2 + 1])).append('}');
+		sb.append("\n},\n\"files\":[");
+		for (int i = 0; i < sorted.size(); i++) {
+			Times t = sorted.get(i);
+			sb.append(i == 0 ? "\n " : ",\n ").append("{\"file\":").append(quote(t.sourceLocation))
+					.append(",\"error\":").append(t.isError).append(",\"wall_ms\":").append(ms(t.getWall()))
+					.append(",\"cpu_ms\":").append(ms(t.getCPU()));
+			for (int j = 0; j < NPHASES; j++)
+				sb.append(",\"").append(phaseNames[j]).append("\":[").append(ms(t.t[j * 2])).append(',')
+						.append(ms(t.t[j * 2 + 1])).append(']');
+			sb.append('}');
+		}
+		sb.append("\n]\n}\n");
+		write(file, sb.toString());
+	}
+
+	private static String quote(String s) {
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	private static void write(File file, String data) {
+		try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			w.write(data);
+			System.out.println("J2S profile written to " + file);
+		} catch (IOException e) {
+			System.out.println("J2S cannot write " + file + " " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,347 @@
+package net.sf.j2s.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes a copy of the site directory without the class files that can never
+ * be loaded, for j2s.shake.directory in .j2s.
+ *
+ * The class files are the .js files in site/swingjs/j2s, outside of
+ * site/swingjs/j2s/core. Everything else in the site -- the .html files, the
+ * JavaScript runtime, the core bundles, and resources -- is copied and is
+ * taken as a root, along with the j2s.shake.roots classes. From there, every
+ * quoted string in a reachable file that names a class makes that class
+ * reachable too. This covers the I$ class lists, superclasses and interfaces
+ * of Clazz.newClass, and literal Class.forName and Clazz.load names. Inner
+ * classes are in their outer class's file, and a name without a package is
+ * taken to be in java.lang, as the visitor writes them. A string that is a
+ * package name followed by the start of a class name, such as
+ * "swingjs.plaf.JS" or "sun.nio.cs.", keeps every class in that package
+ * starting that way, since such strings are how the runtime builds class
+ * names.
+ *
+ * Only whole class files are dropped. The j2s.log.methods.* listings do not
+ * record calls within a class or through this, so they cannot show that a
+ * method is unused, and methods are looked up by name at run time.
+ *
+ * A class that is only loaded by a name built some other way must be listed in
+ * j2s.shake.roots.
+ *
+ * The j2s.bundle.packages bundles are not scanned or copied but are made again
+ * in the reduced site from the class files kept there, and the j2s.gzip
+ * manifest is written again for the reduced site.
+ */
+class Java2ScriptTreeShaker {
+
+	private final static Pattern quoted = Pattern
+			.compile("(['\"])([A-Za-z_$][\\w$]*(?:\\.[A-Za-z_$][\\w$]*)*\\.?)\\1");
+
+	private final File siteFolder;
+	private final File targetFolder;
+	private final File j2sFolder;
+	private final File coreFolder;
+	private final File bundleFolder;
+	private final String roots;
+	private final boolean isDebugging;
+
+	/**
+	 * class name to class file, for all class files in the site
+	 */
+	private final Map<String, File> classFiles = new HashMap<>();
+
+	/**
+	 * package name to the classes in it
+	 */
+	private final Map<String, List<String>> packages = new HashMap<>();
+
+	private final Set<String> reached = new HashSet<>();
+	private final List<String> toScan = new ArrayList<>();
+
+	private int nCopied;
+
+	/**
+	 *
+	 * @param siteFolder   the site directory, as j2s.site.directory
+	 * @param targetFolder where to write the reduced site
+	 * @param roots        semicolon-separated list of class names and package.*
+	 *                     names to keep, or null
+	 * @param isDebugging  list each class dropped
+	 */
+	Java2ScriptTreeShaker(File siteFolder, File targetFolder, String roots, boolean isDebugging) {
+		this.siteFolder = siteFolder;
+		this.targetFolder = targetFolder;
+		this.roots = roots;
+		this.isDebugging = isDebugging;
+		j2sFolder = new File(siteFolder, "swingjs/j2s");
+		coreFolder = new File(j2sFolder, "core");
+		bundleFolder = new File(j2sFolder, Java2ScriptBundles.DIRECTORY);
+	}
+
+	/**
+	 * Find the reachable classes and write the reduced site.
+	 *
+	 * @throws IOException
+	 */
+	void shake() throws IOException {
+		if (targetFolder.getCanonicalPath().startsWith(siteFolder.getCanonicalPath() + File.separator))
+			throw new IOException("J2S cannot write a reduced site inside " + siteFolder);
+		findClasses(j2sFolder, "");
+		List<File> rootFiles = new ArrayList<>();
+		findRootFiles(siteFolder, rootFiles);
+		for (int i = 0; i < rootFiles.size(); i++)
+			scan(rootFiles.get(i));
+		addRoots();
+		while (toScan.size() > 0)
+			scan(classFiles.get(toScan.remove(toScan.size() - 1)));
+		Set<String> dropped = new TreeSet<>(classFiles.keySet());
+		dropped.removeAll(reached);
+		long nBytes = 0, nBytesDropped = 0;
+		for (Map.Entry<String, File> e : classFiles.entrySet()) {
+			long len = e.getValue().length();
+			nBytes += len;
+			if (dropped.contains(e.getKey()))
+				nBytesDropped += len;
+		}
+		copy(siteFolder, targetFolder, dropped);
+		writeDropped(dropped);
+		if (new File(j2sFolder, Java2ScriptBundles.INDEX).exists()) {
+			Java2ScriptBundles bundles = new Java2ScriptBundles(new File(targetFolder, "swingjs/j2s").getPath(), "*");
+			bundles.addAll();
+			bundles.write(new Java2ScriptWriter());
+		}
+		if (new File(siteFolder, "swingjs/" + Java2ScriptManifest.FILE_NAME).exists())
+			new Java2ScriptManifest(targetFolder).write();
+		System.out.println("J2S tree-shaking kept " + reached.size() + " of " + classFiles.size() + " class"
+				+ (classFiles.size() == 1 ? "" : "es") + " (" + (nBytes - nBytesDropped) / 1024 + " of "
+				+ nBytes / 1024 + " KB), copied " + nCopied + " file"
+				+ Java2ScriptCompilationParticipant.plural(nCopied) + " to " + targetFolder);
+	}
+
+	/**
+	 * Index the class files under a directory.
+	 *
+	 * @param dir
+	 * @param packageName "" or "a.b."
+	 */
+	private void findClasses(File dir, String packageName) {
+		File[] list = dir.listFiles();
+		if (list == null)
+			return;
+		for (int i = 0; i < list.length; i++) {
+			File f = list[i];
+			String name = f.getName();
+			if (f.isDirectory()) {
+				if (!f.equals(coreFolder) && !f.equals(bundleFolder))
+					findClasses(f, packageName + name + ".");
+			} else if (name.endsWith(".js") && packageName.length() > 0) {
+				String className = packageName + name.substring(0, name.length() - 3);
+				classFiles.put(className, f);
+				String pkg = packageName.substring(0, packageName.length() - 1);
+				List<String> classes = packages.get(pkg);
+				if (classes == null)
+					packages.put(pkg, classes = new ArrayList<>());
+				classes.add(className);
+			}
+		}
+	}
+
+	/**
+	 * The text files of the site that are not class files: html, runtime, and core
+	 * bundles.
+	 *
+	 * @param dir
+	 * @param files
+	 */
+	private void findRootFiles(File dir, List<File> files) {
+		File[] list = dir.listFiles();
+		if (list == null)
+			return;
+		for (int i = 0; i < list.length; i++) {
+			File f = list[i];
+			String name = f.getName();
+			if (f.isDirectory()) {
+				if (!f.equals(bundleFolder))
+					findRootFiles(f, files);
+			} else if ((name.endsWith(".js") || name.endsWith(".html") || name.endsWith(".htm"))
+					&& getClassName(f) == null) {
+				files.add(f);
+			}
+		}
+	}
+
+	private void addRoots() {
+		if (roots == null)
+			return;
+		String[] list = roots.split(";");
+		for (int i = 0; i < list.length; i++) {
+			String root = list[i].trim();
+			if (root.length() == 0)
+				continue;
+			if (root.endsWith(".*")) {
+				List<String> classes = packages.get(root.substring(0, root.length() - 2));
+				if (classes != null)
+					for (int j = classes.size(); --j >= 0;)
+						reach(classes.get(j));
+			} else if (!resolve(root)) {
+				System.out.println("J2S j2s.shake.roots class not found: " + root);
+			}
+		}
+	}
+
+	/**
+	 * Mark every class named in a file as reachable.
+	 *
+	 * @param f
+	 * @throws IOException
+	 */
+	private void scan(File f) throws IOException {
+		// class names are ASCII
+		String js = new String(Files.readAllBytes(f.toPath()), StandardCharsets.ISO_8859_1);
+		Matcher m = quoted.matcher(js);
+		while (m.find()) {
+			String s = m.group(2);
+			if (!resolve(s))
+				resolvePrefix(s);
+		}
+	}
+
+	/**
+	 * Find the class file for a name: a.b.C, a.b.C.Inner, a.b.C$Inner, or a
+	 * java.lang class without its package.
+	 *
+	 * @param name
+	 * @return true if found
+	 */
+	private boolean resolve(String name) {
+		int pt = name.indexOf('$');
+		if (pt > 0)
+			name = name.substring(0, pt);
+		if (name.indexOf('.') < 0)
+			return reach("java.lang." + name);
+		while (!reach(name)) {
+			if ((pt = name.lastIndexOf('.')) < 0)
+				return false;
+			name = name.substring(0, pt);
+		}
+		return true;
+	}
+
+	/**
+	 * "a.b.Pre" or "a.b." keeps all classes in package a.b whose names start with
+	 * "Pre".
+	 *
+	 * @param s
+	 */
+	private void resolvePrefix(String s) {
+		int pt = s.lastIndexOf('.');
+		if (pt <= 0)
+			return;
+		List<String> classes = packages.get(s.substring(0, pt));
+		if (classes == null)
+			return;
+		for (int i = classes.size(); --i >= 0;)
+			if (classes.get(i).startsWith(s))
+				reach(classes.get(i));
+	}
+
+	/**
+	 *
+	 * @param className
+	 * @return true if this is a class in the site
+	 */
+	private boolean reach(String className) {
+		if (!classFiles.containsKey(className))
+			return false;
+		if (reached.add(className))
+			toScan.add(className);
+		return true;
+	}
+
+	/**
+	 * Copy a directory, leaving out dropped class files and removing any left
+	 * from a previous run.
+	 *
+	 * @param from
+	 * @param to
+	 * @param dropped
+	 * @throws IOException
+	 */
+	private void copy(File from, File to, Set<String> dropped) throws IOException {
+		File[] list = from.listFiles();
+		if (list == null)
+			return;
+		Files.createDirectories(to.toPath());
+		for (int i = 0; i < list.length; i++) {
+			File f = list[i];
+			File dest = new File(to, f.getName());
+			if (f.isDirectory()) {
+				if (!f.equals(bundleFolder))
+					copy(f, dest, dropped);
+				continue;
+			}
+			String className = getClassName(
+					f.getName().endsWith(".js.gz") ? new File(f.getPath().substring(0, f.getPath().length() - 3)) : f);
+			if (className != null && dropped.contains(className)) {
+				if (isDebugging)
+					System.out.println("J2S tree-shaking dropped " + className);
+				if (dest.exists())
+					dest.delete();
+				continue;
+			}
+			if (dest.length() == f.length() && dest.lastModified() >= f.lastModified())
+				continue;
+			Files.copy(f.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.COPY_ATTRIBUTES);
+			nCopied++;
+		}
+	}
+
+	/**
+	 *
+	 * @param f
+	 * @return the class in this file, or null if it is not a class file
+	 */
+	private String getClassName(File f) {
+		String path = f.getPath();
+		String base = j2sFolder.getPath() + File.separator;
+		if (!path.startsWith(base) || !path.endsWith(".js"))
+			return null;
+		String name = path.substring(base.length(), path.length() - 3).replace(File.separatorChar, '.');
+		return (classFiles.get(name) == null ? null : name);
+	}
+
+	/**
+	 * List the dropped classes in swingjs/j2s-shaken.txt, for when one turns out
+	 * to be needed after all.
+	 *
+	 * @param dropped
+	 */
+	private void writeDropped(Set<String> dropped) {
+		File f = new File(targetFolder, "swingjs/j2s-shaken.txt");
+		f.getParentFile().mkdirs();
+		try (Writer w = new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8)) {
+			w.write("# classes dropped by j2s.shake.directory; add any that are needed to j2s.shake.roots\n");
+			for (String name : dropped)
+				w.write(name + "\n");
+		} catch (IOException e) {
+			System.out.println("J2S cannot write " + f + " " + e.getMessage());
+		}
+	}
+
+}
@@ -12,11 +12,14 @@ package net.sf.j2s.core;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -24,6 +27,7 @@ import java.util.regex.Pattern;
 
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
@@ -353,62 +357,29 @@ public class Java2ScriptVisitor extends ASTVisitor {
 
 	static final int NOT_JAXB = 0x10;
 
-	static Map<String, String> htClassReplacements;
-	static List<String> lstPackageReplacements;
-
-	private static List<String> global_lstMethodsDeclared;
-	private static Map<String, String> global_htMethodsCalled;
-	private static boolean global_logAllCalls;
-
 // no longer needed :)
 //	private static Map<String, Map<String, List<String[]>>> syntheticClassMethodNameMap = new HashMap<String, Map<String, List<String[]>>>();
 //	private static Map<String, Map<String, Object>> genericClassTypes = new HashMap<String, Map<String, Object>>();
 
-	private static Map<String, String> htStringLiteralCache = new Hashtable<>();
-
 	/**
-	 * includes @j2sDebug blocks; from j2s.compiler.mode=debug in .j2s
+	 * .j2s settings for this build; shared by all visitors, never changed
 	 * 
 	 */
-	static boolean global_j2sFlag_isDebugging = false;
+	private Java2ScriptConfiguration global_config = new Java2ScriptConfiguration();
 
 	/**
-	 * list of annotations to ignore or null to ignore ALL
-	 * 
+	 * methods declared and called in this compilation unit, when logging; the
+	 * compiler collects these after the visit
 	 */
-	private static String global_ignoredAnnotations = ";" + "CallerSensitive;" + "ConstructorProperties;"
-			+ "Deprecated;" + "Override;" + "SaveVarargs;" + "SuppressWarnings;";
-
-	public static void setDebugging(boolean isDebugging) {
-		global_j2sFlag_isDebugging = isDebugging;
-	}
-
-	static boolean global_j2sFlag_exact_long = true;
+	private List<String> package_lstMethodsDeclared;
+	private Map<String, String> package_htMethodsCalled;
 
 	public boolean isLongExact() {
-		return !class_noLongExact && global_j2sFlag_exact_long;
+		return !class_noLongExact && global_config.exactLong && !temp_nativeLong;
 	}
 
-	public static void setExactLong(boolean doHandle) {
-		global_j2sFlag_exact_long = doHandle;
-	}
-
-	static boolean global_j2sFlag_allow_async_thread = true;
-
 	public boolean allowAsyncThread() {
-		return global_j2sFlag_allow_async_thread;
-	}
-
-	public static void setAllowAsyncThread(boolean tf) {
-		global_j2sFlag_allow_async_thread = tf;
-	}
-
-	public static void setAnnotating(String ignoredAnnotations) {
-		global_ignoredAnnotations = (ignoredAnnotations == null ? null : ";" + ignoredAnnotations + ";");
-	}
-
-	static void startCleanBuild() {
-		htStringLiteralCache = new Hashtable<>();
+		return global_config.allowAsyncThread;
 	}
 
 	/**
@@ -420,11 +391,6 @@ public class Java2ScriptVisitor extends ASTVisitor {
 
 	private IJavaProject global_project;
 
-	/**
-	 * multipurpose flag for testing development ideas.
-	 * 
-	 */
-	private boolean global_testing;
 	// make private fields properties of p1$ ?
 	// the problem only shows up with a2s subclasses of Swing components
 	// because they could declare the same private variable and not get
@@ -440,7 +406,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	/**
 	 * track the names for I$$[...]
 	 */
-	private StringBuffer package_includes = new StringBuffer();
+	private Java2ScriptBuffer package_includes = new Java2ScriptBuffer();
 
 	/**
 	 * map class names to I$$[] index
@@ -460,7 +426,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	 */
 	private Map<IVariableBinding, String> package_htFinalVarToJ2sName = new Hashtable<>();
 	private Map<String, Set<IVariableBinding>> package_htClassKeyToVisitedFinalVars = new Hashtable<>();
-	private Set<IVariableBinding> class_visitedFinalVars = new HashSet<IVariableBinding>();
+	private Set<IVariableBinding> class_visitedFinalVars = new LinkedHashSet<IVariableBinding>();
 
 	/**
 	 * a flag to indicate that the expression being evaluated is an ArrayAccess type
@@ -468,6 +434,49 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	 */
 	private boolean temp_processingArrayIndex;
 
+	/**
+	 * value ranges of long local variables, with j2s.exact.long.ranges
+	 */
+	private Java2ScriptLongRanges package_longRanges;
+
+	/**
+	 * whether a method, by key, gets a short name with j2s.compact.names
+	 */
+	private Map<String, Boolean> package_htCompactMethods = new Hashtable<>();
+
+	/**
+	 * with j2s.compact.names, the j2s method names this file writes short, with
+	 * their short names, and the j2s names it also writes as they are; checked
+	 * against its @j2sNative code at the end of the file
+	 */
+	private Map<String, String> package_compactedNames;
+	private Set<String> package_keptNames;
+
+	/**
+	 * with j2s.compact.names, the @j2sNative code of this file
+	 */
+	private List<String> package_nativeCode;
+
+	/**
+	 * a flag to indicate that the long operation of the node being visited works
+	 * only on numbers within +/-2^53 and so can use JavaScript operators rather
+	 * than Long.$xxx
+	 */
+	private boolean temp_nativeLong;
+	private List<Boolean> temp_nativeLongStack = new ArrayList<>();
+
+	/**
+	 * the arguments written in place of the parameters of a static method
+	 * being inlined with j2s.inline.methods
+	 */
+	private Map<IVariableBinding, Expression> temp_inlinedArgs;
+
+	/**
+	 * the case numbers of the String switch being written, if it is written
+	 * with a Map
+	 */
+	private Map<String, Integer> temp_switchCases;
+
 //	/**
 //	 * functionalInterface methods add the name$ qualifier even if they are
 //	 * parameterized
@@ -510,6 +519,15 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		package_includes = parent.package_includes;
 		package_haveStaticArgsReversal = parent.package_haveStaticArgsReversal;
 		package_mapBlockJavadoc = parent.package_mapBlockJavadoc;
+		package_lstMethodsDeclared = parent.package_lstMethodsDeclared;
+		package_htMethodsCalled = parent.package_htMethodsCalled;
+
+		// p$1, p$2, ... private method holders
+
+		package_classToPrivateVar = parent.package_classToPrivateVar;
+		package_privateVarString = parent.package_privateVarString;
+		package_privateCounts = parent.package_privateCounts;
+		package_switchMapCount = parent.package_switchMapCount;
 
 		// final and effectively final references
 
@@ -523,6 +541,11 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		class_localType = parent.class_localType;
 
 		class_noLongExact = parent.class_noLongExact;
+		package_longRanges = parent.package_longRanges;
+		package_htCompactMethods = parent.package_htCompactMethods;
+		package_compactedNames = parent.package_compactedNames;
+		package_keptNames = parent.package_keptNames;
+		package_nativeCode = parent.package_nativeCode;
 
 		// xml annotations are handled a little differently -- one per top level
 
@@ -551,9 +574,13 @@ public class Java2ScriptVisitor extends ASTVisitor {
 //		}
 	}
 
-	public Java2ScriptVisitor setProject(IJavaProject project, boolean testing) {
-		this.global_testing = testing;
+	public Java2ScriptVisitor setProject(IJavaProject project, Java2ScriptConfiguration config) {
+		this.global_config = config;
 		this.global_project = project;
+		if (config.logMethodsDeclared)
+			package_lstMethodsDeclared = new ArrayList<String>();
+		if (config.logMethodsCalled)
+			package_htMethodsCalled = new LinkedHashMap<String, String>();
 		return this;
 	}
 
@@ -564,7 +591,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	/**
 	 * Buffer that keeps all compiled *.js.
 	 */
-	StringBuffer buffer = new StringBuffer();
+	Java2ScriptBuffer buffer = new Java2ScriptBuffer();
 
 	private char getLastCharInBuffer() {
 		return (buffer.length() == 0 ? '\0' : buffer.charAt(buffer.length() - 1));
@@ -598,7 +625,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		}
 
 		void add$fields$() {
-			StringBuffer buf = buffer;
+			Java2ScriptBuffer buf = buffer;
 			buf.append("\nC$.$fields$=[");
 			for (int i = 0; i < 2; i++) {
 				List<String>[] fieldData = fields[i];
@@ -730,9 +757,21 @@ public class Java2ScriptVisitor extends ASTVisitor {
 
 	public boolean visit(CompilationUnit node) {
 		resetPrivateVars();
+		package_longRanges = (global_config.exactLong && global_config.longRanges ? new Java2ScriptLongRanges(node)
+				: null);
+		if (global_config.compactNames != null) {
+			package_compactedNames = new HashMap<>();
+			package_keptNames = new HashSet<>();
+			package_nativeCode = new ArrayList<>();
+		}
 		return true;
 	}
 
+	public void endVisit(CompilationUnit node) {
+		if (package_nativeCode != null)
+			checkNativeCompactNames();
+	}
+
 	public boolean visit(PackageDeclaration node) {
 		setMapJavaDoc(node);
 		List<?> annotations = node.annotations();
@@ -767,7 +806,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			packageName = NULL_PACKAGE;
 		}
 		package_name = packageName;
-		package_includes = new StringBuffer();
+		package_includes = new Java2ScriptBuffer();
 		buffer.append("var P$=");
 		if (NameMapper.isJ2sClazzPackage(package_name)) {
 			buffer.append(packageName);
@@ -807,7 +846,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			if (javadoc != null) {
 				List<Javadoc> list = new ArrayList<Javadoc>();
 				list.add(javadoc);
-				return !NativeDoc.addJ2sJavadocs(buffer, list, false);
+				return !NativeDoc.addJ2sJavadocs(buffer, list, false, global_config.isDebugging, package_nativeCode);
 			}
 		}
 		return true;
@@ -1184,7 +1223,8 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		class_isAnonymousOrLocal = true;
 				
 		Set<IVariableBinding> lastVisitedVars = class_visitedFinalVars;
-		Set<IVariableBinding> myVisitedVars = class_visitedFinalVars = new HashSet<>();
+		// in the order visited, so that the output does not depend on hash codes
+		Set<IVariableBinding> myVisitedVars = class_visitedFinalVars = new LinkedHashSet<>();
 		this.package_currentFinalKey = key;
 		package_htClassKeyToVisitedFinalVars.put(key, myVisitedVars);
 		if (lambdaType != NOT_LAMBDA) {
@@ -1236,7 +1276,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	private String listFinalVariables(Set<IVariableBinding> visitedVars, String key) {
 		if (visitedVars == null || visitedVars.size() == 0)
 			return null;
-		StringBuffer buf = new StringBuffer();
+		Java2ScriptBuffer buf = new Java2ScriptBuffer();
 		int n = 0;
 		buf.append("{");
 		for (Iterator<IVariableBinding> iter = visitedVars.iterator(); iter.hasNext();) {
@@ -1313,8 +1353,23 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		Expression exp = node.getExpression();
 		ITypeBinding eType = exp.resolveTypeBinding();
 		ITypeBinding arrayType = eType.getComponentType();
-
-		if (arrayType == null) {
+		String sizeField = (arrayType == null ? getIndexedListSizeField(eType) : null);
+		if (sizeField != null) {
+			// ArrayList, Vector, and their subclasses, including javajs.util.Lst:
+			// unless the list has its own iterator(), index its backing array as
+			// that iterator does, checking modCount for each element, so that
+			// there is no Iterator and concurrent modification still fails fast.
+			// Clazz.forList returns modCount for this, or else list.iterator$().
+			appendReplaceV("0, $$V = ", "V", varName, null, null);
+			exp.accept(this);
+			appendReplaceV(", $i$V = Clazz.forList($$V, " + sizeField.equals("elementCount")
+					+ "); typeof $i$V == \"number\" ? $V != $$V." + sizeField
+					+ " && ($$V.modCount == $i$V || Clazz.forList()) && ((V=", "V", varName, null, null);
+			appendReplaceV("($$V.elementData[$V++])", "V", varName, vtype, eType);
+			appendReplaceV("),1) : $i$V.hasNext$()&&((V=", "V", varName, null, null);
+			appendReplaceV("($i$V.next$())", "V", varName, vtype, eType);
+			appendReplaceV("),1);", "V", varName, null, null);
+		} else if (arrayType == null) {
 			exp.accept(this);
 			appendReplaceV(".iterator$(); $V.hasNext$()&&((V=", "V", varName, null, null);
 			appendReplaceV("($V.next$())", "V", varName, vtype, eType);
@@ -1332,6 +1387,26 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		return false;
 	}
 
+	/**
+	 * For an enhanced for loop over a list that can be indexed in place of
+	 * calling its iterator.
+	 * 
+	 * @param type
+	 * @return the name of the list's size field, if the type is ArrayList or
+	 *         Vector or a subclass of one of them; otherwise null
+	 */
+	private static String getIndexedListSizeField(ITypeBinding type) {
+		for (type = type.getErasure(); type != null; type = type.getSuperclass()) {
+			switch (type.getErasure().getQualifiedName()) {
+			case "java.util.ArrayList":
+				return "size";
+			case "java.util.Vector":
+				return "elementCount";
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * For enhanced FOR only.
 	 * 
@@ -1636,12 +1711,15 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		boolean isPrivate = isPrivate(mBinding);
 		boolean isPrivateAndNotStatic = isPrivate && !isStatic;
 		String privateVar = (isPrivateAndNotStatic ? getPrivateVar(declaringClass, false) : null);
-		boolean doLogMethodCalled = (!isPrivate && global_htMethodsCalled != null);
+		boolean doLogMethodCalled = (!isPrivate && package_htMethodsCalled != null);
 		boolean needBname = (!isStatic && lambdaArity < 0 && (expression == null
 				? !areEqual(declaringClass, class_typeBinding)
 						&& !class_typeBinding.isAssignmentCompatible(declaringClass)
 				: expression instanceof ThisExpression && ((ThisExpression) expression).getQualifier() != null));
 		String bname = (needBname ? getThisRefOrSyntheticReference(javaQualifier, declaringClass, null) : null);
+		if (lambdaArity < 0 && global_config.inlineMethods && package_htMethodsCalled == null
+				&& addInlinedMethod(javaQualifier, arguments, mBinding, expression, bname))
+			return true;
 		// add the qualifier
 		int pt = buffer.length();
 		String declaringClassJavaClassName = getUnreplacedJavaClassNameQualified(declaringClass);
@@ -1776,6 +1854,291 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		return (name + "<").startsWith(class_fullNameBra);
 	}
 
+	/**
+	 * the largest expression, in AST nodes, that j2s.inline.methods writes in
+	 * place of a call to a static method
+	 */
+	private static final int INLINE_MAX_NODES = 24;
+
+	/**
+	 * j2s.inline.methods: write a call to a method of this compilation unit that
+	 * cannot be overridden as the method body itself, when that body is a single
+	 * read or write of a field of the method's class, or, for a static method of
+	 * the class being written, the return of a short expression of its
+	 * parameters, each of which is passed a variable or a literal. The method is
+	 * still written, so reflection, method references, and other classes still
+	 * find it.
+	 * 
+	 * x.getX() becomes x.x, x.setX(3) becomes x.x=3, and sq(a) becomes (a*a).
+	 * 
+	 * @param javaQualifier
+	 * @param arguments
+	 * @param mBinding
+	 * @param expression
+	 * @param bname
+	 * @return true if the call has been written
+	 */
+	private boolean addInlinedMethod(SimpleName javaQualifier, List<?> arguments, IMethodBinding mBinding,
+			Expression expression, String bname) {
+		MethodDeclaration method = getInlinableMethod(javaQualifier, mBinding);
+		if (method == null)
+			return false;
+		IMethodBinding mDecl = method.resolveBinding();
+		boolean isStatic = isStatic(mDecl);
+		if (isStatic && expression != null && !(expression instanceof Name))
+			return false;
+		List<?> params = method.parameters();
+		Statement statement = (Statement) method.getBody().statements().get(0);
+		boolean isStatement = (javaQualifier.getParent().getParent() instanceof ExpressionStatement);
+		Expression exp;
+		IVariableBinding field;
+		if (statement instanceof ReturnStatement) {
+			if (isStatement)
+				return false;
+			exp = ((ReturnStatement) statement).getExpression();
+			field = getInlinableField(exp, mDecl);
+			if (field == null)
+				// only for this class, which is already initialized
+				return isStatic && areEqual(mDecl.getDeclaringClass(), class_typeBinding)
+						&& addInlinedExpression(exp, params, arguments, mDecl.getReturnType());
+			if (params.size() != 0 || !field.getType().isEqualTo(mDecl.getReturnType()))
+				return false;
+		} else {
+			// a setter, only as a statement of its own
+			if (!isStatement || !(statement instanceof ExpressionStatement) || params.size() != 1
+					|| !((exp = ((ExpressionStatement) statement).getExpression()) instanceof Assignment))
+				return false;
+			Assignment assignment = (Assignment) exp;
+			Expression right = assignment.getRightHandSide();
+			field = getInlinableField(assignment.getLeftHandSide(), mDecl);
+			if (field == null || assignment.getOperator() != Assignment.Operator.ASSIGN
+					|| !(right instanceof SimpleName) || ((SimpleName) right)
+							.resolveBinding() != ((SingleVariableDeclaration) params.get(0)).resolveBinding()
+					|| !field.getType().isEqualTo(mDecl.getParameterTypes()[0]))
+				return false;
+		}
+		if (isStatic) {
+			addQualifiedNameForBinding(field, true);
+		} else {
+			appendFinalMethodQualifier(expression, mBinding.getDeclaringClass(), bname, FINAL_CACHE);
+		}
+		buffer.append('.').append(getFinalFieldName(field));
+		if (exp instanceof Assignment) {
+			buffer.append(" = ");
+			addExpressionAsTargetType((Expression) arguments.get(0), field.getType(), "=", null);
+		}
+		return true;
+	}
+
+	/**
+	 * Find the declaration of a method that j2s.inline.methods might inline: not
+	 * a constructor, not native, abstract, or varargs, not overridable, with a
+	 * body of one statement, no j2s tags, and declared in this compilation unit.
+	 * 
+	 * @param javaQualifier
+	 * @param mBinding
+	 * @return the declaration, or null
+	 */
+	private MethodDeclaration getInlinableMethod(SimpleName javaQualifier, IMethodBinding mBinding) {
+		IMethodBinding mDecl = mBinding.getMethodDeclaration();
+		ITypeBinding declaringClass = mDecl.getDeclaringClass();
+		int mods = mDecl.getModifiers();
+		if (mDecl.isConstructor() || mDecl.isVarargs() || Modifier.isNative(mods) || Modifier.isAbstract(mods)
+				|| declaringClass.isInterface() || declaringClass.isAnonymous()
+				|| !Modifier.isPrivate(mods) && !Modifier.isStatic(mods) && !Modifier.isFinal(mods)
+						&& !Modifier.isFinal(declaringClass.getModifiers()))
+			return null;
+		ASTNode root = javaQualifier.getRoot();
+		ASTNode node = (root instanceof CompilationUnit ? ((CompilationUnit) root).findDeclaringNode(mDecl.getKey())
+				: null);
+		if (!(node instanceof MethodDeclaration))
+			return null;
+		MethodDeclaration method = (MethodDeclaration) node;
+		Block body = method.getBody();
+		if (body == null || body.statements().size() != 1
+				|| getJ2sJavadoc((Statement) body.statements().get(0), DOC_CHECK_ONLY) != null)
+			return null;
+		Javadoc javadoc = method.getJavadoc();
+		if (javadoc != null) {
+			for (Object tag : javadoc.tags()) {
+				String name = ((TagElement) tag).getTagName();
+				if (name != null && name.startsWith("@j2s"))
+					return null;
+			}
+		}
+		return method;
+	}
+
+	/**
+	 * 
+	 * @param exp
+	 * @param mDecl
+	 * @return the field that exp, f or this.f, refers to, if it is a field of
+	 *         the method's own class, static only if the method is static, and
+	 *         not a constant
+	 */
+	private static IVariableBinding getInlinableField(Expression exp, IMethodBinding mDecl) {
+		IBinding binding;
+		if (exp instanceof SimpleName) {
+			binding = ((SimpleName) exp).resolveBinding();
+		} else if (exp instanceof FieldAccess && ((FieldAccess) exp).getExpression() instanceof ThisExpression
+				&& ((ThisExpression) ((FieldAccess) exp).getExpression()).getQualifier() == null) {
+			binding = ((FieldAccess) exp).resolveFieldBinding();
+		} else {
+			return null;
+		}
+		if (!(binding instanceof IVariableBinding))
+			return null;
+		IVariableBinding field = (IVariableBinding) binding;
+		return (field.isField() && isStatic(field) == isStatic(mDecl) && field.getConstantValue() == null
+				&& field.getDeclaringClass() != null
+				&& field.getDeclaringClass().getErasure().isEqualTo(mDecl.getDeclaringClass().getErasure())
+						? field
+						: null);
+	}
+
+	/**
+	 * Write a call to a static method that returns an expression of its
+	 * parameters as that expression, in parentheses, with each parameter written
+	 * as its argument. Each argument must be a variable or a literal of exactly
+	 * the parameter's type, so that it can be read any number of times, or not
+	 * at all, in any order. long and char are left to the method.
+	 * 
+	 * @param exp
+	 * @param params
+	 * @param arguments
+	 * @param returnType
+	 * @return true if written
+	 */
+	private boolean addInlinedExpression(Expression exp, List<?> params, List<?> arguments,
+			ITypeBinding returnType) {
+		if (params.size() != arguments.size() || !isInlinableType(returnType))
+			return false;
+		Map<IVariableBinding, Expression> args = new HashMap<>();
+		for (int i = params.size(); --i >= 0;) {
+			IVariableBinding param = ((SingleVariableDeclaration) params.get(i)).resolveBinding();
+			Expression arg = (Expression) arguments.get(i);
+			if (!param.getType().isEqualTo(arg.resolveTypeBinding()) || !isInlinableType(param.getType())
+					|| !isInlinableArgument(arg))
+				return false;
+			args.put(param, arg);
+		}
+		int n = getInlinableSize(exp, args);
+		if (n < 0 || n > INLINE_MAX_NODES)
+			return false;
+		buffer.append('(');
+		temp_inlinedArgs = args;
+		addExpressionAsTargetType(exp, returnType, "r", null);
+		temp_inlinedArgs = null;
+		buffer.append(')');
+		return true;
+	}
+
+	private static boolean isInlinableType(ITypeBinding type) {
+		if (type == null)
+			return false;
+		switch (type.getQualifiedName()) {
+		case "int":
+		case "short":
+		case "byte":
+		case "double":
+		case "float":
+		case "boolean":
+		case "java.lang.String":
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * 
+	 * @param arg
+	 * @return true for a literal, a local variable, or a field of this or of a
+	 *         variable, which can be read more than once without side effects
+	 */
+	private static boolean isInlinableArgument(Expression arg) {
+		switch (arg.getNodeType()) {
+		case ASTNode.NUMBER_LITERAL:
+		case ASTNode.BOOLEAN_LITERAL:
+		case ASTNode.STRING_LITERAL:
+			return true;
+		case ASTNode.SIMPLE_NAME:
+		case ASTNode.QUALIFIED_NAME:
+			return ((Name) arg).resolveBinding() instanceof IVariableBinding;
+		case ASTNode.FIELD_ACCESS:
+			return ((FieldAccess) arg).getExpression() instanceof ThisExpression;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Check that an expression uses only the method's parameters, literals,
+	 * operators, casts, and java.lang.Math methods, all of types
+	 * isInlinableType accepts.
+	 * 
+	 * @param exp
+	 * @param args
+	 * @return the number of nodes, or -1 if the expression cannot be inlined
+	 */
+	private static int getInlinableSize(Expression exp, Map<IVariableBinding, Expression> args) {
+		if (!isInlinableType(exp.resolveTypeBinding()))
+			return -1;
+		int n = 1;
+		List<Object> operands = new ArrayList<>();
+		switch (exp.getNodeType()) {
+		case ASTNode.NUMBER_LITERAL:
+		case ASTNode.BOOLEAN_LITERAL:
+		case ASTNode.STRING_LITERAL:
+			return 1;
+		case ASTNode.SIMPLE_NAME:
+			return (args.containsKey(((SimpleName) exp).resolveBinding()) ? 1 : -1);
+		case ASTNode.PARENTHESIZED_EXPRESSION:
+			return getInlinableSize(((ParenthesizedExpression) exp).getExpression(), args);
+		case ASTNode.CAST_EXPRESSION:
+			n = getInlinableSize(((CastExpression) exp).getExpression(), args);
+			return (n < 0 ? -1 : n + 1);
+		case ASTNode.PREFIX_EXPRESSION:
+			PrefixExpression.Operator op = ((PrefixExpression) exp).getOperator();
+			if (op == PrefixExpression.Operator.INCREMENT || op == PrefixExpression.Operator.DECREMENT)
+				return -1;
+			n = getInlinableSize(((PrefixExpression) exp).getOperand(), args);
+			return (n < 0 ? -1 : n + 1);
+		case ASTNode.CONDITIONAL_EXPRESSION:
+			ConditionalExpression ce = (ConditionalExpression) exp;
+			operands.add(ce.getExpression());
+			operands.add(ce.getThenExpression());
+			operands.add(ce.getElseExpression());
+			break;
+		case ASTNode.INFIX_EXPRESSION:
+			InfixExpression ie = (InfixExpression) exp;
+			operands.add(ie.getLeftOperand());
+			operands.add(ie.getRightOperand());
+			for (Object o : ie.extendedOperands())
+				operands.add(o);
+			break;
+		case ASTNode.METHOD_INVOCATION:
+			MethodInvocation mi = (MethodInvocation) exp;
+			IMethodBinding mb = mi.resolveMethodBinding();
+			if (mb == null || !isStatic(mb) || !(mi.getExpression() instanceof Name)
+					|| !mb.getDeclaringClass().getQualifiedName().equals("java.lang.Math"))
+				return -1;
+			for (Object o : mi.arguments())
+				operands.add(o);
+			break;
+		default:
+			return -1;
+		}
+		for (int i = operands.size(); --i >= 0;) {
+			int m = getInlinableSize((Expression) operands.get(i), args);
+			if (m < 0)
+				return -1;
+			n += m;
+		}
+		return n;
+	}
+
 	/**
 	 * Write the method expression to the buffer. If the qualifier is a variable,
 	 * such as System.out, or an expression, such as (useF? f : g), then we can
@@ -1882,25 +2245,115 @@ public class Java2ScriptVisitor extends ASTVisitor {
 
 	@SuppressWarnings("unchecked")
 	public boolean visit(SwitchStatement node) {
+		Map<String, Integer> switchCases = temp_switchCases;
+		temp_switchCases = getStringSwitchCases(node);
 		buffer.append("switch (");
-		addNonCharacter(node.getExpression());
+		if (temp_switchCases == null) {
+			addNonCharacter(node.getExpression());
+		} else {
+			addStringSwitchMap(node.getExpression());
+		}
 		buffer.append(") {\n");
 		visitList(node.statements(), "");
 		buffer.append("}\n");
+		temp_switchCases = switchCases;
 		return false;
 	}
 
 	public boolean visit(SwitchCase node) {
 		if (node.isDefault()) {
-			buffer.append("default");
+			buffer.append("default:\n");
+		} else if (temp_switchCases != null) {
+			// all the labels of one case have its number
+			Expression label = (Expression) getCaseExpressions(node).get(0);
+			buffer.append("case ").append(temp_switchCases.get(label.resolveConstantExpressionValue())).append(":\n");
 		} else {
-			buffer.append("case ");
-			addNonCharacter(node.getExpression());
+			List<?> labels = getCaseExpressions(node);
+			for (int i = 0; i < labels.size(); i++) {
+				buffer.append("case ");
+				addNonCharacter((Expression) labels.get(i));
+				buffer.append(":\n");
+			}
 		}
-		buffer.append(":\n");
 		return false;
 	}
 
+	/**
+	 * The labels of a case: expressions() from JLS14 on, where a case can have
+	 * several, and getExpression() below that, where expressions() is not
+	 * supported.
+	 * 
+	 * @param node not a default case
+	 * @return the label expressions
+	 */
+	@SuppressWarnings("deprecation")
+	private static List<?> getCaseExpressions(SwitchCase node) {
+		return (node.getAST().apiLevel() >= AST.JLS14 ? node.expressions()
+				: Collections.singletonList(node.getExpression()));
+	}
+
+	/**
+	 * the fewest cases for which a String switch is written as a switch on the
+	 * case number from a Map rather than as a switch on the string; below this,
+	 * JavaScript's own comparisons are faster
+	 */
+	private static final int STRING_SWITCH_MAP_MIN = 10;
+
+	/**
+	 * Number the cases of a large switch on a String.
+	 * 
+	 * @param node
+	 * @return each case string and the number of its case, from 1, or null if
+	 *         this switch is not on a String or has fewer than
+	 *         STRING_SWITCH_MAP_MIN case strings
+	 */
+	private static Map<String, Integer> getStringSwitchCases(SwitchStatement node) {
+		ITypeBinding type = node.getExpression().resolveTypeBinding();
+		if (type == null || !"java.lang.String".equals(type.getQualifiedName()))
+			return null;
+		Map<String, Integer> cases = new LinkedHashMap<>();
+		int n = 0;
+		for (Object o : node.statements()) {
+			if (!(o instanceof SwitchCase) || ((SwitchCase) o).isDefault())
+				continue;
+			Integer caseNumber = Integer.valueOf(++n);
+			List<?> labels = getCaseExpressions((SwitchCase) o);
+			for (int i = 0; i < labels.size(); i++) {
+				Object value = ((Expression) labels.get(i)).resolveConstantExpressionValue();
+				if (!(value instanceof String))
+					return null;
+				cases.put((String) value, caseNumber);
+			}
+		}
+		return (cases.size() < STRING_SWITCH_MAP_MIN ? null : cases);
+	}
+
+	/**
+	 * Write the case number of a String from a Map made the first time the switch
+	 * is reached and kept in the file's $sw$ array:
+	 * 
+	 * ($sw$[0]||($sw$[0]=new Map([["a",1],["b",2],...]))).get(s)
+	 * 
+	 * A string that matches no case, or null, gets undefined and so the default.
+	 * 
+	 * @param exp
+	 */
+	private void addStringSwitchMap(Expression exp) {
+		if (package_switchMapCount[0] == 0)
+			package_privateVarString.append(",$sw$=[]");
+		String map = "$sw$[" + package_switchMapCount[0]++ + "]";
+		buffer.append("(").append(map).append("||(").append(map).append("=new Map([");
+		String sep = "";
+		for (Map.Entry<String, Integer> e : temp_switchCases.entrySet()) {
+			buffer.append(sep).append('[').append(getConstantLiteral(e.getKey())).append(',').append(e.getValue())
+					.append(']');
+			sep = ",";
+		}
+		buffer.append("]))).get(");
+		exp.accept(this);
+		buffer.append(")");
+	}
+
 	public boolean visit(SynchronizedStatement node) {
 		// we could wrap this with a simple if() statement,
 		// checking that it is not null, but that seems to me
@@ -2184,7 +2637,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 
 			Java2ScriptVisitor tempVisitor = null;
 			try {
-				tempVisitor = getClass().newInstance().setProject(global_project, global_testing).setInnerGlobals(this,
+				tempVisitor = getClass().newInstance().setProject(global_project, global_config).setInnerGlobals(this,
 						node);
 			} catch (@SuppressWarnings("unused") Exception e) {
 				// impossible
@@ -2211,7 +2664,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 
 			}
 			// append it to our TrailingBuffer
-			trailingBuffer.append(tempVisitor.buffer.toString());
+			trailingBuffer.buf.append(tempVisitor.buffer);
 
 			return false;
 		}
@@ -2624,7 +3077,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 
 		// add all the methods
 
-		StringBuffer defaults = new StringBuffer();
+		Java2ScriptBuffer defaults = new Java2ScriptBuffer();
 
 		boolean isStatic = true;
 		if (isLambda) {
@@ -2691,6 +3144,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			}
 		} else {
 			addSyntheticBridges(binding, abstractMethodList, buffer, false);
+			addCompactBridges(binding);
 		}
 
 //		if (class_annotations != null) {
@@ -2708,13 +3162,13 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			xml_annotationType = ANNOTATION_TYPE_UNKNOWN;
 			// class_hasTypeAnnotations = false;
 		}
-		buffer.append(trailingBuffer.getString()); // also writes the assert string
+		trailingBuffer.appendTo(buffer); // also writes the assert string
 		if (isAnonymous) {
 			// if anonymous, restore old static def buffer
 			trailingBuffer = oldTrailingBuffer;
 		} else {
 			// otherwise, dump the oldStatic buffer and start a new one
-			buffer.append(oldTrailingBuffer.getString());
+			oldTrailingBuffer.appendTo(buffer);
 			trailingBuffer = new TrailingBuffer();
 			if (!isInterface)
 				addDefaultConstructor();
@@ -3077,13 +3531,39 @@ public class Java2ScriptVisitor extends ASTVisitor {
 //		return innerClassName.substring(innerClassName.lastIndexOf('.') + 1);
 //	}
 
+	/**
+	 * [sysout, syserr] for a file being transpiled on a worker thread; held until
+	 * Java2ScriptCompiler writes that file so that the console reads the same as
+	 * for a serial build
+	 */
+	private static final ThreadLocal<StringBuffer[]> heldLog = new ThreadLocal<>();
+
+	/**
+	 * Start or stop holding log messages for the current thread.
+	 * 
+	 * @param hold
+	 * @return the messages held since the last call, or null if none were held
+	 */
+	static StringBuffer[] holdLog(boolean hold) {
+		StringBuffer[] held = heldLog.get();
+		if (hold)
+			heldLog.set(new StringBuffer[] { new StringBuffer(), new StringBuffer() });
+		else
+			heldLog.remove();
+		return held;
+	}
+
 	/**
 	 * log to sysout - ones we want to keep, not just for debugging
 	 * 
 	 * @param msg
 	 */
 	static void log(String msg) {
-		System.out.println(msg);
+		StringBuffer[] held = heldLog.get();
+		if (held == null)
+			System.out.println(msg);
+		else
+			held[0].append(msg).append('\n');
 	}
 
 	/**
@@ -3092,7 +3572,11 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	 * @param msg
 	 */
 	static void logErr(String msg) {
-		System.err.println(msg);
+		StringBuffer[] held = heldLog.get();
+		if (held == null)
+			System.err.println(msg);
+		else
+			held[1].append(msg).append('\n');
 	}
 
 	private static boolean isObjectOrNull(ITypeBinding type) {
@@ -3165,7 +3649,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	 */
 	class TrailingBuffer {
 
-		StringBuffer buf;
+		Java2ScriptBuffer buf;
 		private String added = "";
 
 		String staticBlock;
@@ -3173,7 +3657,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		boolean hasAssert;
 
 		TrailingBuffer() {
-			buf = new StringBuffer();
+			buf = new Java2ScriptBuffer();
 		}
 
 		TrailingBuffer append(String s) {
@@ -3190,8 +3674,8 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			return (staticBlock == null ? "" : "\nC$.$static$=function(){C$.$static$=0;\n" + staticBlock + "};\n");
 		}
 
-		public String getString() {
-			return getStatics() + added + buf;
+		void appendTo(Java2ScriptBuffer buffer) {
+			buffer.append(getStatics()).append(added).append(buf);
 		}
 
 		void addType(String name) {
@@ -3249,6 +3733,17 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		boolean isLambda_C = (dim == null);
 		@SuppressWarnings("null")
 		int n = (isLambda_C ? 1 : dim.size());
+		String newA = getPrimitiveArrayConstructor(binding, dim);
+		if (newA != null) {
+			// new int[n][m] becomes Clazz.newIntA(n, m)
+			buffer.append(newA).append("(");
+			if (isLambda_C)
+				buffer.append("t.intValue()");
+			else
+				visitList(dim, ", ");
+			buffer.append(")");
+			return;
+		}
 		buffer.append(clazzArray(binding, ARRAY_DIM_ONLY));
 		buffer.append(", [");
 		if (isLambda_C)
@@ -3260,6 +3755,37 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		buffer.append("])");
 	}
 
+	/**
+	 * Clazz.newIntA, Clazz.newDoubleA, etc., for a primitive array with all of its
+	 * dimensions given as int, short, or byte values, which j2sClazz.js can create
+	 * directly.
+	 * 
+	 * @param binding
+	 * @param dim     dimensions, or null for int[]::new
+	 * @return the function name, or null to use Clazz.array
+	 */
+	private static String getPrimitiveArrayConstructor(ITypeBinding binding, List<ASTNode> dim) {
+		ITypeBinding eType = binding.getElementType();
+		if (eType == null || !eType.isPrimitive()
+				|| binding.getDimensions() != (dim == null ? 1 : dim.size()))
+			return null;
+		for (int i = (dim == null ? 0 : dim.size()); --i >= 0;) {
+			ITypeBinding type = ((Expression) dim.get(i)).resolveTypeBinding();
+			if (type == null)
+				return null;
+			switch (type.getName()) {
+			case "int":
+			case "short":
+			case "byte":
+				continue;
+			default:
+				return null;
+			}
+		}
+		String name = eType.getName();
+		return "Clazz.new" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + "A";
+	}
+
 	public boolean visit(ArrayInitializer node) {
 		// as in: public String[] d = {"1", "2"};
 		buffer.append(clazzArray(node.resolveTypeBinding(), ARRAY_INITIALIZED));
@@ -3661,11 +4187,20 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		// -Other expressions ending in an identifier, such as "foo().bar" can
 		// only be represented as field access expressions (FieldAccess).
 
+		if (getConstantValue(node, true))
+			return false;
 		IVariableBinding varBinding = node.resolveFieldBinding();
 		Expression expression = node.getExpression();
 		if (isStaticBinding(varBinding)) {
 			// e.g. i += 3 + y + ++(new >>Test_Static<<().y);
 			buffer.append('(');
+			Java2ScriptBuffer constant = getConstantLiteral(getStaticConstant(varBinding));
+			if (constant != null) {
+				// foo().X, where X is a static constant: foo() only for its side effects
+				expression.accept(this);
+				buffer.append(", ").append(constant).append(')');
+				return false;
+			}
 		} else {
 			varBinding = null;
 		}
@@ -3740,6 +4275,9 @@ public class Java2ScriptVisitor extends ASTVisitor {
 
 		String op = node.getOperator().toString();
 
+		if (isToString && "+".equals(op) && addFoldedConcatenation(node))
+			return false;
+
 		boolean isEqualType = (op.equals("==") || op.equals("!="));
 		boolean isBitwise = isBitwiseBinaryOperator(node);
 		boolean isComparison = (!isBitwise && "!==<=>=".indexOf(op) >= 0);
@@ -3898,6 +4436,62 @@ public class Java2ScriptVisitor extends ASTVisitor {
 				&& (((MethodInvocation) e).resolveMethodBinding().getName().equals("intern"));
 	}
 
+	/**
+	 * Write a String concatenation with each run of two or more constant
+	 * operands folded into one string literal, so that s + "," + 1 + 'c'
+	 * becomes s + ",1c". A run is folded only where the value to its left, or
+	 * its own first operand, is already a String, so that Java's left-to-right
+	 * evaluation gives the same string: in n + 1 + "c", n + 1 is still an int.
+	 * 
+	 * @param node
+	 * @return false if there is nothing to fold, leaving the expression to
+	 *         visit(InfixExpression)
+	 */
+	private boolean addFoldedConcatenation(InfixExpression node) {
+		List<Expression> operands = new ArrayList<>();
+		operands.add(node.getLeftOperand());
+		operands.add(node.getRightOperand());
+		for (Object o : node.extendedOperands())
+			operands.add((Expression) o);
+		int n = operands.size();
+		Object[] values = new Object[n];
+		for (int i = 0; i < n; i++) {
+			Expression exp = operands.get(i);
+			if (getJ2sJavadoc(exp, DOC_CHECK_ONLY) != null)
+				return false;
+			values[i] = exp.resolveConstantExpressionValue();
+		}
+		List<Object> items = new ArrayList<>();
+		boolean isString = false;
+		boolean isFolded = false;
+		for (int i = 0; i < n; i++) {
+			Expression exp = operands.get(i);
+			ITypeBinding type = exp.resolveTypeBinding();
+			isString |= (type != null && "java.lang.String".equals(type.getQualifiedName()));
+			if (isString && values[i] != null && i + 1 < n && values[i + 1] != null) {
+				String s = values[i].toString();
+				while (i + 1 < n && values[i + 1] != null)
+					s += values[++i];
+				items.add(s);
+				isFolded = true;
+			} else {
+				items.add(exp);
+			}
+		}
+		if (!isFolded)
+			return false;
+		for (int i = 0; i < items.size(); i++) {
+			if (i > 0)
+				buffer.append(" + ");
+			Object item = items.get(i);
+			if (item instanceof String)
+				buffer.append(getConstantLiteral(item));
+			else
+				addOperandWithJ2SDoc((Expression) item, true);
+		}
+		return true;
+	}
+
 	private void addOperandWithJ2SDoc(Expression exp, boolean toString) {
 		if (exp instanceof ParenthesizedExpression) {
 			buffer.append("(");
@@ -4081,6 +4675,15 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	public boolean visit(SimpleName node) {
 		// var x = ...
 		// this.pages ....
+		Expression arg = (temp_inlinedArgs == null ? null : temp_inlinedArgs.get(node.resolveBinding()));
+		if (arg != null) {
+			// a parameter of a static method being inlined
+			Map<IVariableBinding, Expression> args = temp_inlinedArgs;
+			temp_inlinedArgs = null;
+			arg.accept(this);
+			temp_inlinedArgs = args;
+			return false;
+		}
 		if (!getConstantValue(node, true))
 			buffer.append(getFinalNameSimpleQualified(node));
 		return false;
@@ -4130,9 +4733,9 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			buffer.append(s);
 		} else {
 			// \1 doesn't work for JavaScript strict mode
-			String v = htStringLiteralCache.get(s);
+			String v = global_config.htStringLiteralCache.get(s);
 			if (v == null) {
-				htStringLiteralCache.put(s, v = !po0.matcher(s).find() ? s : replaceOctal(s));
+				global_config.htStringLiteralCache.put(s, v = !po0.matcher(s).find() ? s : replaceOctal(s));
 			}
 			buffer.append(v);
 		}
@@ -4548,6 +5151,9 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		}
 		String paramName = (exp.resolveTypeBinding().isArray() ? ";"
 				: targetType instanceof ITypeBinding ? ((ITypeBinding) targetType).getName() : targetType.toString());
+		// (float) still needs Long.$fval
+		boolean wasNativeLong = temp_nativeLong;
+		temp_nativeLong = !paramName.equals("float") && isNativeLong(exp);
 		boolean isNumeric = isIntegerType(paramName);
 		if ((isNumeric || isLongExact() && rightName.equals("long")
 				&& (paramName.equals("double") || paramName.equals("float")) || paramName.equals("char"))
@@ -4562,6 +5168,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			// int f() { return Character }
 			appendBoxingNode(exp, isNumeric, null, false, false);
 		}
+		temp_nativeLong = wasNativeLong;
 	}
 
 	private void addExtendedOperands(List<?> extendedOperands, String op, char pre, char post, boolean isToString,
@@ -4647,8 +5254,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 				// or it is not compatible
 				) {
 					String close;
-					if (NameMapper
-							.isPackageOrClassNonqualified(methodDeclaration.getDeclaringClass().getQualifiedName())) {
+					if (global_config.isPackageOrClassNonqualified(methodDeclaration.getDeclaringClass().getQualifiedName())) {
 						// calls to DOMNode.setAttrs(DOMNode node, Object... attr) need not be wrapped
 						// by a Java array type
 						close = "";
@@ -4872,7 +5478,8 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			// boxed
 			break;
 		case "long":
-			if (!isAssignment && (!fromLong && !isExactLong || isExactLong && fromFloat)) {
+			if (!isAssignment && (!fromLong && !isExactLong && !(temp_nativeLong && fromIntType)
+					|| isExactLong && fromFloat)) {
 				less = "Clazz.toLong(";
 				more = ")";
 				addParens = true;
@@ -5732,7 +6339,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		String[] parts = name.split("\\.");
 		String s = packageName + "." + parts[0];
 		int len = parts.length;
-		String ret = "'" + stripJavaLang(NameMapper.checkClassReplacement(s)) + "'";
+		String ret = "'" + stripJavaLang(global_config.checkClassReplacement(s)) + "'";
 		// add inner classes
 		for (int i = 1; i < len; i++)
 			ret += ",'." + parts[i] + "'";
@@ -5800,7 +6407,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 				return "C$." + name.substring(myJavaClassName.length() + 1);
 			}
 		}
-		name = stripJavaLang(NameMapper.checkClassReplacement(name));
+		name = stripJavaLang(global_config.checkClassReplacement(name));
 		return ((flags & FINAL_P) == 0 ? name : checkPackageP$Name(name));
 	}
 
@@ -5882,7 +6489,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	 * @param buf
 	 * @param isInterface
 	 */
-	private void addSyntheticBridges(ITypeBinding type, List<IMethodBinding> abstractMethodList, StringBuffer buf,
+	private void addSyntheticBridges(ITypeBinding type, List<IMethodBinding> abstractMethodList, Java2ScriptBuffer buf,
 			boolean isInterface) {
 		if (abstractMethodList == null || abstractMethodList.size() == 0)
 			return;
@@ -5945,7 +6552,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 //		
 //		// abstract class test.Test_GenericExt_T<T extends Map<T,K>, K>
 //		erasure = erasure.substring(erasure.indexOf("<") + 1);
-//		StringBuffer sb = new StringBuffer(erasure.substring(0, erasure.indexOf(">\n")));
+//		Java2ScriptBuffer sb = new Java2ScriptBuffer(erasure.substring(0, erasure.indexOf(">\n")));
 //		for (int n = 0, i = sb.length(); --i >= 0;) {
 //			switch (sb.charAt(i)) {
 //			case '>':
@@ -6021,12 +6628,15 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		}
 		if (alias != null)
 			names.add(alias);
+		int nNames = names.size();
 		if ((mode & METHOD_ADD_GENERIC) != 0) {
 			// interesting case of this in Test_ClassBase, where different interfaces and
 			// the superclass
 			// all require synthetic references
 			getOverriddenMethods(methodClass, mBinding, names, true);
 		}
+		if (global_config.compactNames != null && !isConstructor && mtype == METHOD_NOTSPECIAL)
+			addCompactOverriddenNames(mBinding, names, nNames);
 		if ((mode & METHOD_FULLY_QUALIFIED) == 0)
 			names.add(ensureMethod$Name(methodName, mBinding, getUnreplacedJavaClassNameQualified(methodClass)));
 		if ((mode & METHOD_$_QUALIFIED) != 0 && !methodName.equals(qname)
@@ -6095,6 +6705,192 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		}
 	}
 
+	/**
+	 * With j2s.compact.names, replace the j2s method name at the end of a name or
+	 * qualified name with its short name, if the method can have one.
+	 * 
+	 * @param name     a name such as getValueAt$I$I or C$.getValueAt$I$I
+	 * @param mBinding
+	 * @return the name, possibly as C$._$1c
+	 */
+	private String getCompactName(String name, IMethodBinding mBinding) {
+		if (global_config.compactNames == null)
+			return name;
+		int pt = name.lastIndexOf('.') + 1;
+		String j2sName = name.substring(pt);
+		if (!isCompactMethod(mBinding)) {
+			package_keptNames.add(j2sName);
+			return name;
+		}
+		String shortName = global_config.compactNames.get(j2sName);
+		package_compactedNames.put(j2sName, shortName);
+		return name.substring(0, pt) + shortName;
+	}
+
+	/**
+	 * A method can be given a short name if it is in a j2s.compact.names package
+	 * and only its own package can call it: it is private or package-private, and,
+	 * if an instance method, it overrides only methods that can be given short
+	 * names themselves. Public and protected methods -- which a separately built
+	 * project or hand-written JavaScript may call by name -- constructors, and
+	 * interface methods keep their j2s names.
+	 * 
+	 * @param mBinding
+	 * @return true to use a short name
+	 */
+	private boolean isCompactMethod(IMethodBinding mBinding) {
+		mBinding = mBinding.getMethodDeclaration();
+		String key = mBinding.getKey();
+		Boolean isCompact = package_htCompactMethods.get(key);
+		if (isCompact == null) {
+			ITypeBinding c = mBinding.getDeclaringClass();
+			int modifiers = mBinding.getModifiers();
+			isCompact = Boolean.valueOf(!mBinding.isConstructor() && c != null && !c.isInterface()
+					&& !Modifier.isPublic(modifiers) && !Modifier.isProtected(modifiers) && c.getPackage() != null
+					&& global_config.isPackageCompacted(c.getPackage().getName())
+					&& (isStatic(mBinding) || isPrivate(mBinding) || !overridesNoncompactMethod(c, mBinding)));
+			package_htCompactMethods.put(key, isCompact);
+		}
+		return isCompact.booleanValue();
+	}
+
+	private boolean overridesNoncompactMethod(ITypeBinding type, IMethodBinding mBinding) {
+		ITypeBinding superclass = type.getSuperclass();
+		if (superclass != null) {
+			IMethodBinding m = getOverriddenMethod(superclass, mBinding);
+			// the superclass method has already checked its own superclasses and
+			// interfaces
+			if (m != null ? !isCompactMethod(m) : overridesNoncompactMethod(superclass, mBinding))
+				return true;
+		}
+		ITypeBinding[] interfaces = type.getInterfaces();
+		for (int i = interfaces.length; --i >= 0;) {
+			if (getOverriddenMethod(interfaces[i], mBinding) != null
+					|| overridesNoncompactMethod(interfaces[i], mBinding))
+				return true;
+		}
+		return false;
+	}
+
+	private static IMethodBinding getOverriddenMethod(ITypeBinding type, IMethodBinding mBinding) {
+		IMethodBinding[] methods = type.getDeclaredMethods();
+		for (int i = methods.length; --i >= 0;) {
+			if (mBinding.overrides(methods[i]))
+				return methods[i];
+		}
+		return null;
+	}
+
+	/**
+	 * With j2s.compact.names, a method that overrides a method with a short name
+	 * must be declared under that name as well, either because it has its own
+	 * short name for a different generic signature, or because it overrides an
+	 * interface method, too, and so keeps its j2s name.
+	 * 
+	 * @param mBinding
+	 * @param names    the names for Clazz.newMeth
+	 * @param n        where the names from getOverriddenMethods start
+	 */
+	private void addCompactOverriddenNames(IMethodBinding mBinding, List<String> names, int n) {
+		if (isCompactMethod(mBinding)) {
+			for (int i = names.size(); --i >= n;)
+				names.set(i, global_config.compactNames.get(names.get(i)));
+			return;
+		}
+		if (isStatic(mBinding) || isPrivate(mBinding))
+			return;
+		for (ITypeBinding c = mBinding.getDeclaringClass().getSuperclass(); c != null; c = c.getSuperclass()) {
+			IMethodBinding m = getOverriddenMethod(c, mBinding);
+			if (m != null && isCompactMethod(m)) {
+				String name = getFinalMethodNameWith$Params(null, m, null, false, METHOD_NOTSPECIAL);
+				if (!names.contains(name))
+					names.add(name);
+			}
+		}
+	}
+
+	/**
+	 * With j2s.compact.names, @j2sNative code that calls a method of this file by
+	 * the j2s name the method no longer has would fail only at run time, with "is
+	 * not a function"; make it a transpiler error instead.
+	 */
+	private void checkNativeCompactNames() {
+		for (String code : package_nativeCode) {
+			for (Map.Entry<String, String> e : package_compactedNames.entrySet()) {
+				String name = e.getKey();
+				if (package_keptNames.contains(name))
+					continue;
+				for (int pt = code.indexOf(name); pt >= 0; pt = code.indexOf(name, pt + 1)) {
+					int end = pt + name.length();
+					if ((pt == 0 || !Character.isJavaIdentifierPart(code.charAt(pt - 1)))
+							&& (end == code.length() || !Character.isJavaIdentifierPart(code.charAt(end))))
+						throw new IllegalStateException("J2S @j2sNative code in package " + package_name + " calls "
+								+ name + ", which j2s.compact.names writes as " + e.getValue()
+								+ "; make the method public or protected, or call it from Java");
+				}
+			}
+		}
+	}
+
+	/**
+	 * With j2s.compact.names, a method that this class inherits under a short
+	 * name may implement a method of an interface that this class adds, which is
+	 * called by its j2s name. Add that name, calling the inherited method.
+	 * 
+	 * @param type
+	 */
+	private void addCompactBridges(ITypeBinding type) {
+		if (global_config.compactNames == null || type.getSuperclass() == null)
+			return;
+		ITypeBinding[] interfaces = type.getInterfaces();
+		List<String> done = new ArrayList<>();
+		for (int i = 0; i < interfaces.length; i++)
+			addCompactBridges(type, interfaces[i], done);
+	}
+
+	private void addCompactBridges(ITypeBinding type, ITypeBinding iface, List<String> done) {
+		IMethodBinding[] methods = iface.getDeclaredMethods();
+		for (int i = 0; i < methods.length; i++) {
+			IMethodBinding m = methods[i];
+			if (isStatic(m) || isPrivate(m) || getOverridingMethod(type, m) != null)
+				continue;
+			IMethodBinding impl = null;
+			for (ITypeBinding c = type.getSuperclass(); c != null && impl == null; c = c.getSuperclass())
+				impl = getImplementingMethod(c, m);
+			if (impl == null || !isCompactMethod(impl))
+				continue;
+			String name = getFinalMethodNameWith$Params(null, m, null, false, METHOD_NOTSPECIAL);
+			if (done.contains(name))
+				continue;
+			done.add(name);
+			buffer.append("\nC$.prototype['" + name + "']=function(){return this['"
+					+ getFinalMethodNameWith$Params(null, impl, null, false, METHOD_NOTSPECIAL)
+					+ "'].apply(this, arguments)};\n");
+		}
+		ITypeBinding[] interfaces = iface.getInterfaces();
+		for (int i = 0; i < interfaces.length; i++)
+			addCompactBridges(type, interfaces[i], done);
+	}
+
+	private static IMethodBinding getOverridingMethod(ITypeBinding type, IMethodBinding m) {
+		IMethodBinding[] methods = type.getDeclaredMethods();
+		for (int i = methods.length; --i >= 0;) {
+			if (methods[i].overrides(m))
+				return methods[i];
+		}
+		return null;
+	}
+
+	private static IMethodBinding getImplementingMethod(ITypeBinding c, IMethodBinding m) {
+		IMethodBinding[] methods = c.getDeclaredMethods();
+		for (int i = methods.length; --i >= 0;) {
+			IMethodBinding impl = methods[i];
+			if (!isStatic(impl) && !isPrivate(impl) && impl.getName().equals(m.getName()) && impl.isSubsignature(m))
+				return impl;
+		}
+		return null;
+	}
+
 //	private void dumpErasure(ITypeBinding[] types, String msg) {
 //		System.out.print(msg + "\t");
 //		for (int i = 0; i < types.length; i++)
@@ -6146,10 +6942,10 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	 * @param className
 	 * @return
 	 */
-	private static String ensureMethod$Name(String j2sName, IMethodBinding mBinding, String className) {
+	private String ensureMethod$Name(String j2sName, IMethodBinding mBinding, String className) {
 		if (isPrivate(mBinding) && !isStatic(mBinding) || NameMapper.fieldNameCoversMethod(j2sName)
 				|| j2sName.indexOf("$", 2) >= 0 || j2sName.equals("c$") || className != null
-						&& NameMapper.isMethodNonqualified(className, mBinding.getName(), mBinding.getKey()))
+						&& global_config.isMethodNonqualified(className, mBinding.getName(), mBinding.getKey()))
 			return j2sName;
 		// c() must be changed to c$$, not c$, which is the constructor
 		return (j2sName.equals("c") ? "c$$" : j2sName + "$");
@@ -6193,7 +6989,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	 * @return
 	 */
 	private String getParamsAsString(int nParams, String[] genericTypes, ITypeBinding[] paramTypes, boolean toObject) {
-		StringBuffer sbParams = new StringBuffer();
+		Java2ScriptBuffer sbParams = new Java2ScriptBuffer();
 		// if this is a method invocation and has generics, then we alias that
 		boolean haveGeneric = false;
 		for (int i = 0; i < nParams; i++) {
@@ -6279,7 +7075,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		case "java.lang.String":
 			return "S";
 		default:
-			return stripJavaLang(NameMapper.checkClassReplacement(className)).replace('.', '_');
+			return stripJavaLang(global_config.checkClassReplacement(className)).replace('.', '_');
 		}
 	}
 
@@ -6299,7 +7095,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	private static String removeBrackets(String qName) {
 		if (qName.indexOf('<') < 0)
 			return qName;
-		StringBuffer buf = new StringBuffer();
+		Java2ScriptBuffer buf = new Java2ScriptBuffer();
 		int ltCount = 0;
 		char c;
 		for (int i = 0, len = qName.length(); i < len; i++) {
@@ -6358,7 +7154,34 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	}
 
 	private Object getConstant(Expression exp) {
-		return (noDocProblem(exp) ? exp.resolveConstantExpressionValue() : null);
+		if (!noDocProblem(exp))
+			return null;
+		Object value = exp.resolveConstantExpressionValue();
+		if (value != null)
+			return value;
+		// a.X or this.X, where X is a static constant of a's class: JDT only
+		// resolves C.X as a constant, but the qualifier here has no side effects
+		// and need not be evaluated, so neither need C be loaded
+		if (exp instanceof QualifiedName)
+			return getStaticConstant(((QualifiedName) exp).resolveBinding());
+		if (exp instanceof FieldAccess) {
+			Expression qualifier = ((FieldAccess) exp).getExpression();
+			if (qualifier instanceof Name || qualifier instanceof ThisExpression)
+				return getStaticConstant(((FieldAccess) exp).resolveFieldBinding());
+		}
+		return null;
+	}
+
+	/**
+	 * 
+	 * @param binding
+	 * @return the value of a static final field initialized to a compile-time
+	 *         constant, from any class, source or binary; or null
+	 */
+	private static Object getStaticConstant(IBinding binding) {
+		return (binding instanceof IVariableBinding && ((IVariableBinding) binding).isField() && isStatic(binding)
+				? ((IVariableBinding) binding).getConstantValue()
+				: null);
 	}
 
 	private boolean noDocProblem(Expression exp) {
@@ -6380,19 +7203,39 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		Object constValue = getConstant(node);
 		if (constValue == null)
 			return false;
-		StringBuffer sb = null;
+		if (!andWrite)
+			return (constValue instanceof Number || constValue instanceof Character || constValue instanceof Boolean
+					|| constValue instanceof String);
+		Java2ScriptBuffer sb = getConstantLiteral(constValue);
+		if (sb == null)
+			return false;
+		// this is just in case we have (/** @j2sNative 1?x:*/y);
+		boolean needParen = (node instanceof ParenthesizedExpression);
+		if (needParen)
+			buffer.append("(");
+		addJ2SDoc(node);
+		buffer.append(sb);
+		if (needParen)
+			buffer.append(")");
+		return true;
+	}
+
+	/**
+	 * 
+	 * @param constValue
+	 * @return the JavaScript for a constant, or null if it is not a number,
+	 *         character, boolean, or string
+	 */
+	private Java2ScriptBuffer getConstantLiteral(Object constValue) {
+		Java2ScriptBuffer sb = null;
 		if (constValue instanceof Number) {
-			if (!andWrite)
-				return true;
-			sb = new StringBuffer();
+			sb = new Java2ScriptBuffer();
 			String s = getLiteralSafely(constValue);
 			if (s.startsWith("-") && buffer.charAt(buffer.length() - 1) == '-')
 				sb.append(' ');
 			sb.append(s);
 		} else if (constValue instanceof Character || constValue instanceof Boolean) {
-			if (!andWrite)
-				return true;
-			sb = new StringBuffer();
+			sb = new Java2ScriptBuffer();
 			if (constValue instanceof Character) {
 				sb.append('"');
 				addChar(((Character) constValue).charValue(), sb);
@@ -6401,27 +7244,13 @@ public class Java2ScriptVisitor extends ASTVisitor {
 				sb.append(constValue);
 			}
 		} else if (constValue instanceof String) {
-			if (!andWrite)
-				return true;
-			sb = new StringBuffer();
+			sb = new Java2ScriptBuffer();
 			addString((String) constValue, sb);
 		}
-		if (sb == null)
-			return false;
-		if (andWrite) {
-			// this is just in case we have (/** @j2sNative 1?x:*/y);
-			boolean needParen = (node instanceof ParenthesizedExpression);
-			if (needParen)
-				buffer.append("(");
-			addJ2SDoc(node);
-			buffer.append(sb);
-			if (needParen)
-				buffer.append(")");
-		}
-		return true;
+		return sb;
 	}
 
-	private void addString(String str, StringBuffer sb) {
+	private void addString(String str, Java2ScriptBuffer sb) {
 		int length = str.length();
 		sb.append('"');
 		for (int i = 0; i < length; i++)
@@ -6429,7 +7258,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		sb.append('"');
 	}
 
-	private static void addChar(char c, StringBuffer buffer) {
+	private static void addChar(char c, Java2ScriptBuffer buffer) {
 		switch (c) {
 		case '\\':
 		case '\'':
@@ -6531,9 +7360,20 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	 * or @j2sIgnore
 	 */
 	public boolean preVisit2(ASTNode node) {
+		temp_nativeLongStack.add(Boolean.valueOf(temp_nativeLong));
+		temp_nativeLong = isNativeLong(node);
 		return (node instanceof ParenthesizedExpression || !addJ2SDoc(node) || !(node instanceof Block));
 	}
 
+	@Override
+	public void postVisit(ASTNode node) {
+		temp_nativeLong = temp_nativeLongStack.remove(temp_nativeLongStack.size() - 1).booleanValue();
+	}
+
+	private boolean isNativeLong(ASTNode node) {
+		return package_longRanges != null && package_longRanges.isNative(node);
+	}
+
 	private final static int DOC_CHECK_ONLY = 0;
 	@SuppressWarnings("unused")
 	private final static int DOC_ADD_PRE = 1;
@@ -6550,7 +7390,8 @@ public class Java2ScriptVisitor extends ASTVisitor {
 				|| (j2sJavadoc = getJ2sJavadoc(node, DOC_CHECK_ONLY)) == null || node instanceof InfixExpression
 						&& ((InfixExpression) node).getLeftOperand() instanceof ParenthesizedExpression)
 			return false;
-		boolean ret = NativeDoc.addJ2sJavadocs(buffer, j2sJavadoc, node instanceof Block);
+		boolean ret = NativeDoc.addJ2sJavadocs(buffer, j2sJavadoc, node instanceof Block,
+				global_config.isDebugging, package_nativeCode);
 		j2sJavadoc.clear();
 		return ret;
 	}
@@ -6586,7 +7427,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		if (mode == DOC_ADD_POST) {
 			docs = package_mapBlockJavadoc.remove(Integer.valueOf(-1 * node.getStartPosition()));
 			if (docs != null)
-				NativeDoc.addJ2sJavadocs(buffer, docs, false);
+				NativeDoc.addJ2sJavadocs(buffer, docs, false, global_config.isDebugging, package_nativeCode);
 		} else {
 			docs = package_mapBlockJavadoc.get(Integer.valueOf(node.getStartPosition()));
 		}
@@ -6631,7 +7472,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		if (idx >= 0) {
 			return (mode == CHECK_ANNOTATIONS_ONLY || !name.substring(idx).startsWith("J2SIgnore"));
 		}
-		if (global_ignoredAnnotations == null || global_ignoredAnnotations.indexOf(";" + name + ";") >= 0) {
+		if (global_config.isAnnotationIgnored(name)) {
 			return true;
 		}
 		String qname = name;
@@ -6675,15 +7516,22 @@ public class Java2ScriptVisitor extends ASTVisitor {
 
 	/////////////////////////////
 
-	public static void setLogging(List<String> lstMethodsDeclared, Map<String, String> htMethodsCalled,
-			boolean logAllCalls) {
-		global_lstMethodsDeclared = lstMethodsDeclared;
-		global_htMethodsCalled = htMethodsCalled;
-		global_logAllCalls = logAllCalls;
-		if (lstMethodsDeclared != null)
-			lstMethodsDeclared.clear();
-		if (logAllCalls)
-			htMethodsCalled.clear();
+	/**
+	 * 
+	 * @return methods declared in this compilation unit, in order, or null if not
+	 *         logging
+	 */
+	List<String> getMethodsDeclared() {
+		return package_lstMethodsDeclared;
+	}
+
+	/**
+	 * 
+	 * @return methods called from this compilation unit, in order of first call,
+	 *         or null if not logging
+	 */
+	Map<String, String> getMethodsCalled() {
+		return package_htMethodsCalled;
 	}
 
 	private void logMethodDeclared(String name) {
@@ -6696,21 +7544,21 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		if (name.startsWith("'"))
 			name = name.substring(1, name.length() - 1);
 		name = fixLogName(class_fullName) + "." + name;
-		if (global_lstMethodsDeclared != null)
-			global_lstMethodsDeclared.add(name);
+		if (package_lstMethodsDeclared != null)
+			package_lstMethodsDeclared.add(name);
 	}
 
 	private void logMethodCalled(String name) {
 		name = fixLogName(name);
 		String myName = fixLogName(class_fullName);
-		if (global_logAllCalls)
-			global_htMethodsCalled.put(name + "," + myName, "-");
+		if (global_config.logAllCalls)
+			package_htMethodsCalled.put(name + "," + myName, "-");
 		else
-			global_htMethodsCalled.put(name, myName);
+			package_htMethodsCalled.put(name, myName);
 	}
 
 	private String fixLogName(String name) {
-		name = NameMapper.checkClassReplacement(name);
+		name = global_config.checkClassReplacement(name);
 		int pt = name.indexOf("<");
 		return (pt > 0 ? name.substring(0, pt) : name);
 	}
@@ -6758,7 +7606,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		String[] parts = js.split(ELEMENT_KEY + eq);
 		String header = parts[0];
 		String header_noIncludes = header.replace(",I$=[[]]", "");
-		header = header.replace(",I$=[]", privateVarString
+		header = header.replace(",I$=[]", package_privateVarString.toString()
 				+ (package_includes.length() == 0 ? "" : package_includes.append("]]," + "I$0=I$[0],$I$=function"
 				// 3.2.9-v1e:
 						+ (package_haveStaticArgsReversal[0] ? "(i,n,m){return m?$I$(i)[n].apply(null,m):"
@@ -6774,7 +7622,8 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			elements.add(name);
 			js = js.substring(pt + 1);
 			String head = "(function(){"
-					+ (js.indexOf("$I$(") < 0 && js.indexOf("p$") < 0 && js.indexOf("I$0") < 0 ? header_noIncludes
+					+ (js.indexOf("$I$(") < 0 && js.indexOf("p$") < 0 && js.indexOf("I$0") < 0
+							&& js.indexOf("$sw$[") < 0 ? header_noIncludes
 							: header);
 			elements.add(head + js + "})();\n" + trailer);
 		}
@@ -6891,7 +7740,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	private static String getFinalFieldOrLocalVariableName(ITypeBinding classBinding, String fieldName) {
 		String js$ = NameMapper.getJavaScriptCollisionIdentifier(fieldName, false);
 		return (isJ2SInheritedFieldName(classBinding, fieldName) ? NameMapper.getJ2S$$InheritedFieldName(classBinding,
-				fieldName, NameMapper.newFieldNameBuf(fieldName, new StringBuffer(js$))).toString() : js$ + fieldName);
+				fieldName, NameMapper.newFieldNameBuf(fieldName, new Java2ScriptBuffer(js$))).toString() : js$ + fieldName);
 	}
 
 	/**
@@ -6977,7 +7826,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		String methodName = mBinding.getName();
 		if (j2sName == null)
 			j2sName = methodName;
-		if (NameMapper.isMethodNonqualified(getUnreplacedJavaClassNameQualified(mBinding.getDeclaringClass()),
+		if (global_config.isMethodNonqualified(getUnreplacedJavaClassNameQualified(mBinding.getDeclaringClass()),
 				methodName, mBinding.getKey())) {
 			return j2sName;
 		}
@@ -7003,7 +7852,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		// - already qualified with $
 		// skipping C$.
 		if (nParams == 0)
-			return ensureMethod$Name(j2sName, mBinding, null);
+			return getCompactName(ensureMethod$Name(j2sName, mBinding, null), mBinding);
 
 		// functional interface methods are qualified only by "$", not their parameters.
 		// This is not ideal.
@@ -7025,7 +7874,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 //			return s;
 //		}
 
-		return j2sName + getParamsAsString(nParams, genericTypes, paramTypes, false);
+		return getCompactName(j2sName + getParamsAsString(nParams, genericTypes, paramTypes, false), mBinding);
 
 //		if (specialType != METHOD_ALIAS && addCallingOption$O && s.indexOf("$T") >= 0 && isJava(javaClassName) && !isJava(class_fullName)) {
 //
@@ -7101,127 +7950,6 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			return knownClassHash.contains(qualifiedName);
 		}
 
-		public static void setClassReplacements(String keyValues) {
-			// j2s.class.replacements=org.apache.log4j.*:jalview.jslogger.;
-			htClassReplacements = null;
-			if (keyValues == null)
-				return;
-			htClassReplacements = new Hashtable<String, String>();
-			lstPackageReplacements = new ArrayList<String>();
-			String[] pairs = keyValues.split(";");
-			for (int i = pairs.length; --i >= 0;) {
-				pairs[i] = pairs[i].trim();
-				if (pairs[i].length() == 0)
-					continue;
-				String[] kv = pairs[i].split("->");
-				htClassReplacements.put(kv[0], kv[1]);
-				if (kv[0].endsWith("."))
-					lstPackageReplacements.add(kv[0]);
-				log("class replacement " + kv[0] + " --> " + kv[1]);
-			}
-		}
-
-		static String checkClassReplacement(String className) {
-			if (htClassReplacements != null) {
-				String rep = htClassReplacements.get(className);
-				if (rep == null && lstPackageReplacements != null) {
-					for (int i = lstPackageReplacements.size(); --i >= 0;) {
-						rep = lstPackageReplacements.get(i);
-						if (className.startsWith(rep)) {
-							rep = htClassReplacements.get(rep) + className.substring(rep.length());
-							break;
-						}
-						if (i == 0)
-							rep = null;
-					}
-
-				}
-				if (rep != null) {
-					log(className + " -> " + rep);
-					return rep;
-				}
-			}
-			return className;
-		}
-
-		/**
-		 * classes and packages that do not accept $ in their method names
-		 * 
-		 */
-		private final static String defaultNonQualified
-		// Math and Date both are minor extensions
-		// of JavaScript, so they are not qualified
-				= // "java.lang.Math;" +
-					// MAYBE NOT! + "java.util.Date;"
-					// swingjs.api.js and javajs.api.js contain
-					// interfaces to JavaScript methods and so
-					// are not parameterized.
-
-				"*.api.js;"
-		// netscape.JSObject interface includes 8 methods
-		// that do not need to be parameterized.
-		// + "netscape.*;"
-		;
-
-		private static String[] nonQualifiedPackages;
-
-		/**
-		 * .j2s option j2s.compiler.nonqualified.packages/classes
-		 * 
-		 * @param names semicolon-separated list. For example,
-		 *              org.jmol.api.js;jspecview.api.js
-		 */
-		public static void setNonQualifiedNamePackages(String names) {
-			names = defaultNonQualified + (names == null ? "" : names);
-			nonQualifiedPackages = names.replace(";;", ";").trim().split(";");
-			for (int i = nonQualifiedPackages.length; --i >= 0;) {
-				String s = nonQualifiedPackages[i];
-				if (s.length() == 0)
-					continue;
-				if (s.startsWith("*."))
-					s = s.substring(1);
-				if (s.endsWith("."))
-					s = s.substring(0, s.length() - 1);
-				nonQualifiedPackages[i] = (s.endsWith("*") ? s.substring(0, s.length() - 1) : s + ".").trim();
-			}
-		}
-
-		/**
-		 * Check to see if this class is in a package for which we exclude parameter
-		 * qualification
-		 * 
-		 * @param className
-		 * @return
-		 */
-		static boolean isPackageOrClassNonqualified(String className) {
-			if (className.indexOf("$") >= 0)
-				return false; // inner class
-			className += ".";
-			for (int i = nonQualifiedPackages.length; --i >= 0;) {
-				String s = nonQualifiedPackages[i];
-				if (s.length() > 0 && s.startsWith(".") ? className.contains(s) : className.startsWith(s)) {
-					return true;
-				}
-			}
-			return false;
-		}
-
-		static boolean isMethodNonqualified(String className, String methodName, String key) {
-			if (className.equals("java.lang.Math")) {
-				switch (methodName) {
-				case "ulp":
-				case "nextDown":
-				case "nextUp":
-				case "nextAfter":
-				case "getExponent":
-					return false;
-				default:
-					return (key.indexOf("J") < 0);
-				}
-			}
-			return (isPackageOrClassNonqualified(className));
-		}
-
 		/**
 		 * Check for special direct Clazz method calls, avoiding loading the entire
 		 * class.
@@ -7311,7 +8039,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		 * @param name
 		 * @return
 		 */
-		static StringBuffer getJ2S$$InheritedFieldName(ITypeBinding binding, String name, StringBuffer buf) {
+		static Java2ScriptBuffer getJ2S$$InheritedFieldName(ITypeBinding binding, String name, Java2ScriptBuffer buf) {
 			if (binding != null) {
 				ITypeBinding superclass = binding.getSuperclass();
 				if (superclass != null) {
@@ -7336,9 +8064,9 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		 * @param buf
 		 * @return
 		 */
-		static StringBuffer newFieldNameBuf(String fieldName, StringBuffer buf) {
+		static Java2ScriptBuffer newFieldNameBuf(String fieldName, Java2ScriptBuffer buf) {
 			if (buf == null)
-				buf = new StringBuffer();
+				buf = new Java2ScriptBuffer();
 			if (fieldNameCoversMethod(fieldName))
 				buf.append("$");
 			return buf;
@@ -7364,8 +8092,6 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		String qname;
 		protected Annotation annotation;
 
-		private static Java2ScriptVisitor visitor;
-
 		protected ClassAnnotation(String qname, Annotation annotation, ASTNode node) {
 			this.annotation = annotation;
 			this.qname = qname;
@@ -7376,8 +8102,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		public static void addClassAnnotations(Java2ScriptVisitor visitor, int accessType,
 				List<ClassAnnotation> class_annotations, List<EnumConstantDeclaration> enums,
 				List<FieldDeclaration> fields, List<IMethodBinding> methods, List<AbstractTypeDeclaration> innerClasses,
-				StringBuffer buf) {
-			ClassAnnotation.visitor = visitor;
+				Java2ScriptBuffer buf) {
 			boolean isPackage = (fields == null && enums == null);
 			int nn = 0, ptBuf = 0, ptBuf1 = 0;
 			ASTNode lastNode = null;
@@ -7389,7 +8114,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 				ClassAnnotation a = class_annotations.get(i);
 				String str = a.annotation.toString();
 				IAnnotationBinding b = a.annotation.resolveAnnotationBinding();
-				if (b != null && global_j2sFlag_isDebugging)
+				if (b != null && visitor.global_config.isDebugging)
 					log("annotation " + str);
 				// TODO -- make this clearer
 				boolean isXML = str.startsWith("@Xml");
@@ -7508,7 +8233,8 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			if (nn > 0) {
 				addTrailingFragments(fragments, buf, ptBuf);
 				if (!isPackage && accessType != NOT_JAXB)
-					addImplicitJAXBFieldsAndMethods(accessType, buf, enums, fields, methods, innerClasses, propOrder);
+					addImplicitJAXBFieldsAndMethods(visitor, accessType, buf, enums, fields, methods, innerClasses,
+							propOrder);
 				buf.append("]]]}\n");
 			}
 		}
@@ -7556,6 +8282,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		 * Add all implicit fields. Note that we still cannot marshal a class that has
 		 * NO JAXB annotations at all. We have to have some.
 		 * 
+		 * @param visitor
 		 * @param accessType
 		 * @param trailingBuffer
 		 * @param enums
@@ -7564,13 +8291,13 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		 * @param innerClasses
 		 * @param propOrder
 		 */
-		private static void addImplicitJAXBFieldsAndMethods(int accessType, StringBuffer buf,
-				List<EnumConstantDeclaration> enums, List<FieldDeclaration> fields, List<IMethodBinding> methods,
-				List<AbstractTypeDeclaration> innerClasses, String propOrder) {
+		private static void addImplicitJAXBFieldsAndMethods(Java2ScriptVisitor visitor, int accessType,
+				Java2ScriptBuffer buf, List<EnumConstantDeclaration> enums, List<FieldDeclaration> fields,
+				List<IMethodBinding> methods, List<AbstractTypeDeclaration> innerClasses, String propOrder) {
 			for (int i = 0; i < innerClasses.size(); i++) {
 				ITypeBinding type = innerClasses.get(i).resolveBinding();
 				if (isStatic(type)) {
-					addJAXBAnnotation(null, type, "!XmlInner", buf);
+					addJAXBAnnotation(visitor, null, type, "!XmlInner", buf);
 				}
 			}
 
@@ -7583,7 +8310,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 					IVariableBinding v = con.resolveVariable();
 					String varName = v.getName();
 					ITypeBinding type = v.getType();
-					addJAXBAnnotation(varName, type, "@XmlEnumValue", buf);
+					addJAXBAnnotation(visitor, varName, type, "@XmlEnumValue", buf);
 				}
 				return;
 			default:
@@ -7605,9 +8332,9 @@ public class Java2ScriptVisitor extends ASTVisitor {
 							if (propOrder != null && propOrder.indexOf("\"" + varName + "\"") < 0)
 								continue;
 							ITypeBinding type = v.getType();
-							addJAXBAnnotation(varName, type, "@XmlElement", buf);
+							addJAXBAnnotation(visitor, varName, type, "@XmlElement", buf);
 							if (isUnspecified)
-								addJAXBAnnotation(varName, type, "!XmlPublic(" + isPublic + ")", buf);
+								addJAXBAnnotation(visitor, varName, type, "!XmlPublic(" + isPublic + ")", buf);
 						}
 					}
 				}
@@ -7625,16 +8352,17 @@ public class Java2ScriptVisitor extends ASTVisitor {
 						if (varName.startsWith("set"))
 							varName = (m = m2).getName();
 						ITypeBinding type = m.getReturnType();
-						addJAXBAnnotation("M:" + varName, type, "@XmlElement", buf);
+						addJAXBAnnotation(visitor, "M:" + varName, type, "@XmlElement", buf);
 						if (isUnspecified)
-							addJAXBAnnotation("M:" + varName, type, "!XmlPublic(" + isPublic + ")", buf);
+							addJAXBAnnotation(visitor, "M:" + varName, type, "!XmlPublic(" + isPublic + ")", buf);
 					}
 				}
 				break;
 			}
 		}
 
-		private static void addJAXBAnnotation(String varName, ITypeBinding type, String str, StringBuffer buf) {
+		private static void addJAXBAnnotation(Java2ScriptVisitor visitor, String varName, ITypeBinding type, String str,
+				Java2ScriptBuffer buf) {
 			String className = visitor.getFinalJ2SClassName(type.getQualifiedName(), FINAL_BRACKETS);
 			buf.append("]],\n  [[");
 			buf.append("'" + varName + "'");
@@ -7650,7 +8378,7 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			return null;
 		}
 
-		private static void addTrailingFragments(List<?> fragments, StringBuffer buf, int ptBuf) {
+		private static void addTrailingFragments(List<?> fragments, Java2ScriptBuffer buf, int ptBuf) {
 			if (fragments == null || fragments.size() == 0)
 				return;
 			String line = buf.substring(ptBuf);
@@ -7722,9 +8450,11 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		 * 
 		 * @param javadoc
 		 * @param isBlock
+		 * @param nativeCode if not null, gets the code added
 		 * @return true if code was added
 		 */
-		static boolean addJ2sJavadocs(StringBuffer buffer, List<Javadoc> list, boolean isBlock) {
+		static boolean addJ2sJavadocs(Java2ScriptBuffer buffer, List<Javadoc> list, boolean isBlock,
+				boolean isDebugging, List<String> nativeCode) {
 			boolean didAdd = false;
 			int n = list.size();
 			for (int i = 0; i < n; i++) {
@@ -7732,12 +8462,12 @@ public class Java2ScriptVisitor extends ASTVisitor {
 				List<?> tags = javadoc.tags();
 				if (tags != null && tags.size() > 0
 						&& (isBlock && getTag(tags, "@j2sIgnore") != null
-								&& addJ2SSourceForTag(buffer, null, i == 0, i == n - 1, true)
-								|| isBlock && global_j2sFlag_isDebugging
+								&& addJ2SSourceForTag(buffer, null, i == 0, i == n - 1, true, null)
+								|| isBlock && isDebugging
 										&& addJ2SSourceForTag(buffer, getTag(tags, "@j2sDebug"), i == 0, i == n - 1,
-												false)
+												false, nativeCode)
 								|| addJ2SSourceForTag(buffer, getTag(tags, "@j2sNative"), isBlock && i == 0,
-										isBlock && i == n - 1, false))) {
+										isBlock && i == n - 1, false, nativeCode))) {
 					didAdd = true;
 				}
 			}
@@ -7766,17 +8496,18 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		 * @param addPrefix
 		 * @param addPostfix
 		 * @param isIgnore
+		 * @param nativeCode if not null, gets the code added
 		 * @return true to indicate we have written, so this block can be skipped
 		 */
-		private static boolean addJ2SSourceForTag(StringBuffer buffer, TagElement tag, boolean addPrefix,
-				boolean addPostfix, boolean isIgnore) {
+		private static boolean addJ2SSourceForTag(Java2ScriptBuffer buffer, TagElement tag, boolean addPrefix,
+				boolean addPostfix, boolean isIgnore, List<String> nativeCode) {
 			if (isIgnore) {
 				buffer.append("\n{}\n");
 				return true;
 			}
 			if (tag == null)
 				return false;
-			StringBuffer buf = new StringBuffer();
+			Java2ScriptBuffer buf = new Java2ScriptBuffer();
 			List<?> fragments = tag.fragments();
 			for (Iterator<?> iterator = fragments.iterator(); iterator.hasNext();) {
 				TextElement commentEl = (TextElement) iterator.next();
@@ -7819,6 +8550,8 @@ public class Java2ScriptVisitor extends ASTVisitor {
 			buffer.append(isInline ? "" : addPrefix ? "{\n" : "\n");
 			buffer.append(code);
 			buffer.append(isInline ? "" : addPostfix ? "\n}\n" : "\n");
+			if (nativeCode != null)
+				nativeCode.add(code);
 			return true;
 		}
 
@@ -8059,10 +8792,18 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	 * class being referred to.
 	 * 
 	 */
-	private static Map<String, String> classToPrivateVar = new Hashtable<String, String>();
-	private static String privateVarString = "";
-	private static int privateClassCount = 0;
-	private static int privateVarCount = 0;
+	private Map<String, String> package_classToPrivateVar = new Hashtable<String, String>();
+	private Java2ScriptBuffer package_privateVarString = new Java2ScriptBuffer();
+
+	/**
+	 * [privateClassCount, privateVarCount], shared with inner-class visitors
+	 */
+	private int[] package_privateCounts = new int[2];
+
+	/**
+	 * the number of String switch Maps in $sw$, shared with inner-class visitors
+	 */
+	private int[] package_switchMapCount = new int[1];
 
 	/**
 	 * p$1, p$2, etc.
@@ -8077,22 +8818,23 @@ public class Java2ScriptVisitor extends ASTVisitor {
 		String key = binding.getKey(), key0 = null, key1 = null;
 		if (isClassCompare)
 			key = "_" + key;
-		String p$ = classToPrivateVar.get(key);
+		String p$ = package_classToPrivateVar.get(key);
 		if (p$ == null) {
 			key0 = key;
-			p$ = classToPrivateVar.get(key = (isClassCompare ? "_" : "") + getNormalizedKey(binding));
+			p$ = package_classToPrivateVar.get(key = (isClassCompare ? "_" : "") + getNormalizedKey(binding));
 		}
 		if (p$ == null && !isClassCompare && key.indexOf("[") >= 0) {
 			key1 = key;
-			p$ = classToPrivateVar.get(key = key.substring(0, key.indexOf("[") + 1) + "]");
+			p$ = package_classToPrivateVar.get(key = key.substring(0, key.indexOf("[") + 1) + "]");
 		}
 		if (p$ == null) {
-			classToPrivateVar.put(key, p$ = "p$" + (isClassCompare ? ++privateClassCount : ++privateVarCount));
-			classToPrivateVar.put(key0, p$);
+			package_classToPrivateVar.put(key,
+					p$ = "p$" + (isClassCompare ? ++package_privateCounts[0] : ++package_privateCounts[1]));
+			package_classToPrivateVar.put(key0, p$);
 			if (!isClassCompare) {
 				if (key1 != null)
-					classToPrivateVar.put(key1, p$);
-				privateVarString += "," + p$ + "={}";
+					package_classToPrivateVar.put(key1, p$);
+				package_privateVarString.append(",").append(p$).append("={}");
 			}
 		}
 		return p$;
@@ -8148,9 +8890,10 @@ public class Java2ScriptVisitor extends ASTVisitor {
 	}
 
 	private void resetPrivateVars() {
-		privateVarCount = privateClassCount = 0;
-		privateVarString = "";
-		classToPrivateVar.clear();
+		package_privateCounts[0] = package_privateCounts[1] = 0;
+		package_switchMapCount[0] = 0;
+		package_privateVarString.setLength(0);
+		package_classToPrivateVar.clear();
 	}
 
 	///////////////// debugging //////////////////////////
@@ -0,0 +1,177 @@
+package net.sf.j2s.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The output stage of Java2ScriptCompiler: writes .js, .html, and other text
+ * files to the site directory.
+ *
+ * Text is encoded as UTF-8 straight into a direct buffer that is reused for
+ * every file and written with a FileChannel. If the file already holds the same
+ * bytes, it is not written at all, so its timestamp does not change; for .js
+ * files, the "//Created" time stamp that Java2ScriptVisitor adds is not
+ * counted as a difference. Directories are created only once per build.
+ *
+ * Not thread-safe; the compiler writes only from the build thread.
+ */
+class Java2ScriptWriter {
+
+	private final static int INITIAL_SIZE = 1 << 16;
+
+	/**
+	 * "//Created yyyy-MM-dd HH:mm:ss", as in Java2ScriptVisitor.getElementList
+	 */
+	private final static byte[] CREATED = "//Created ".getBytes(StandardCharsets.US_ASCII);
+	private final static int CREATED_LENGTH = CREATED.length + 19;
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private ByteBuffer out = ByteBuffer.allocateDirect(INITIAL_SIZE);
+
+	private ByteBuffer old = ByteBuffer.allocateDirect(INITIAL_SIZE);
+
+	private final Set<String> directories = new HashSet<String>();
+
+	/**
+	 * Create a directory if it has not already been seen in this build.
+	 *
+	 * @param dir
+	 * @throws IOException
+	 */
+	void ensureDirectory(File dir) throws IOException {
+		String path = dir.getPath();
+		if (directories.contains(path))
+			return;
+		Files.createDirectories(dir.toPath());
+		directories.add(path);
+	}
+
+	/**
+	 * Write text as UTF-8, unless the file already holds exactly those bytes.
+	 *
+	 * @param file
+	 * @param data
+	 * @param ignoreCreated true to ignore a difference only in the "//Created"
+	 *                      time stamp at the end of a .js file
+	 * @return true if the file was written; false if it was unchanged
+	 * @throws IOException
+	 */
+	boolean write(File file, CharSequence data, boolean ignoreCreated) throws IOException {
+		encode(data);
+		if (isUnchanged(file, ignoreCreated))
+			return false;
+		try {
+			writeOut(file);
+		} catch (NoSuchFileException e) {
+			// directory removed since we created it
+			directories.remove(file.getParent());
+			ensureDirectory(file.getParentFile());
+			writeOut(file);
+		}
+		return true;
+	}
+
+	private void writeOut(File file) throws IOException {
+		try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (out.hasRemaining())
+				ch.write(out);
+		}
+	}
+
+	/**
+	 * Encode data into the out buffer, growing it as necessary; leaves it ready
+	 * for reading.
+	 *
+	 * @param data
+	 */
+	private void encode(CharSequence data) {
+		int n = data.length();
+		if (n > out.capacity())
+			out = ByteBuffer.allocateDirect(Math.max(n + (n >> 2), out.capacity() * 2));
+		CharBuffer in = CharBuffer.wrap(data);
+		while (true) {
+			((Buffer) out).clear();
+			encoder.reset();
+			CoderResult result = encoder.encode(in, out, true);
+			if (!result.isOverflow())
+				result = encoder.flush(out);
+			if (!result.isOverflow())
+				break;
+			out = ByteBuffer.allocateDirect(out.capacity() * 2);
+			((Buffer) in).rewind();
+		}
+		((Buffer) out).flip();
+	}
+
+	/**
+	 * Compare the encoded bytes with what is in the file now.
+	 *
+	 * @param file
+	 * @param ignoreCreated
+	 * @return true if the file does not need to be written
+	 */
+	private boolean isUnchanged(File file, boolean ignoreCreated) {
+		int n = out.limit();
+		if (file.length() != n || !file.isFile())
+			return false;
+		if (old.capacity() < n)
+			old = ByteBuffer.allocateDirect(Math.max(n, old.capacity() * 2));
+		((Buffer) old).clear();
+		((Buffer) old).limit(n);
+		try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (old.hasRemaining())
+				if (ch.read(old) < 0)
+					return false;
+		} catch (IOException e) {
+			return false;
+		}
+		((Buffer) old).flip();
+		int pt = (ignoreCreated ? lastIndexOfCreated() : -1);
+		if (pt < 0)
+			return old.equals(out);
+		int ptEnd = pt + CREATED_LENGTH;
+		boolean same = regionEquals(0, pt) && regionEquals(ptEnd, n);
+		((Buffer) out).position(0).limit(n);
+		((Buffer) old).position(0).limit(n);
+		return same;
+	}
+
+	private boolean regionEquals(int from, int to) {
+		((Buffer) out).limit(to).position(from);
+		((Buffer) old).limit(to).position(from);
+		return old.equals(out);
+	}
+
+	/**
+	 *
+	 * @return the position of the last "//Created " in the out buffer, if it is
+	 *         followed by a full time stamp, or -1
+	 */
+	private int lastIndexOfCreated() {
+		for (int pt = out.limit() - CREATED_LENGTH; pt >= 0; pt--) {
+			int i = 0;
+			while (i < CREATED.length && out.get(pt + i) == CREATED[i])
+				i++;
+			if (i == CREATED.length)
+				return pt;
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,203 @@
+package net.sf.j2s.core;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+
+/**
+ * A timing harness for Java2ScriptVisitor's output buffer. The listed sources
+ * are parsed once, with bindings, and then each pass visits every unit with a
+ * new Java2ScriptVisitor, as the compiler does, without writing anything. The
+ * time of each pass, the units that took longest, and a hash of all of the
+ * JavaScript written are reported. What the visitor logs is dropped while
+ * timing.
+ *
+ * Java2ScriptBuffer is used only by Java2ScriptVisitor, so replacing its name
+ * there with StringBuffer gives the visitor as it was before; the hash shows
+ * that both write the same JavaScript. This is not part of the plugin build.
+ * From sources/net.sf.j2s.core, with org.eclipse.jdt.core and its dependencies
+ * (org.eclipse.text among them) in $JDT and Java 8's rt.jar in $RT:
+ *
+ * <pre>
+ * javac -nowarn -cp "$JDT/*" -d /tmp/j2sbench/chunked $(find src -name "*.java") \
+ *     test/net/sf/j2s/core/Java2ScriptBufferBenchmark.java
+ * rm -rf /tmp/j2sbench/src &amp;&amp; cp -r src /tmp/j2sbench/src
+ * sed -i 's/Java2ScriptBuffer/StringBuffer/g' /tmp/j2sbench/src/net/sf/j2s/core/Java2ScriptVisitor.java
+ * javac -nowarn -cp "$JDT/*" -d /tmp/j2sbench/stringbuffer $(find /tmp/j2sbench/src -name "*.java") \
+ *     test/net/sf/j2s/core/Java2ScriptBufferBenchmark.java
+ * for v in stringbuffer chunked stringbuffer chunked; do
+ *   java -cp "/tmp/j2sbench/$v:$JDT/*" net.sf.j2s.core.Java2ScriptBufferBenchmark -bootclasspath $RT \
+ *       ../net.sf.j2s.java.core/src ../net.sf.j2s.java.core/src/test
+ * done
+ * </pre>
+ *
+ * Arguments: [-passes n] [-warmup n] [-bootclasspath path] sourcepath
+ * file.java|dir ..., where a directory stands for the .java files directly in
+ * it, such as one package. As for Java2ScriptCommandLine, -bootclasspath gives
+ * the system library in place of the running JVM's; net.sf.j2s.java.core only
+ * resolves fully against Java 8's. A unit the visitor fails on is counted in
+ * the output line.
+ */
+public class Java2ScriptBufferBenchmark {
+
+	private static int passes = 10;
+	private static int warmup = 5;
+	private static String[] bootclasspath;
+
+	private static final int N_SLOWEST = 5;
+
+	public static void main(String[] args) {
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); i += 2) {
+			if (args[i].equals("-passes"))
+				passes = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-warmup"))
+				warmup = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-bootclasspath"))
+				bootclasspath = args[i + 1].split(File.pathSeparator);
+			else
+				i = args.length;
+		}
+		if (args.length - i < 2) {
+			System.err.println("Usage: java net.sf.j2s.core.Java2ScriptBufferBenchmark [-passes n] [-warmup n]"
+					+ " [-bootclasspath path] sourcepath file.java|dir ...");
+			System.exit(2);
+		}
+		String sourcepath = new File(args[i]).getAbsolutePath();
+		List<String> files = new ArrayList<String>();
+		for (i++; i < args.length; i++)
+			addJavaFiles(new File(args[i]), files);
+		List<String> names = new ArrayList<String>();
+		List<CompilationUnit> units = parse(sourcepath, files, names);
+		PrintStream out = System.out;
+		out.println("buffer: " + getBufferClass());
+		out.println("units: " + units.size());
+
+		long[] unitTimes = new long[units.size()];
+		long[] passTimes = new long[passes];
+		String result = null;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		try {
+			for (int pass = -warmup; pass < passes; pass++) {
+				long t = System.nanoTime();
+				String r = visitAll(units, pass < 0 ? null : unitTimes);
+				t = System.nanoTime() - t;
+				if (pass >= 0)
+					passTimes[pass] = t;
+				if (result == null)
+					result = r;
+				else if (!result.equals(r))
+					throw new IllegalStateException("output differs from one pass to the next");
+			}
+		} finally {
+			System.setOut(out);
+		}
+		out.println("output: " + result);
+		Arrays.sort(passTimes);
+		out.println(String.format("visit ms/pass: min %.1f median %.1f max %.1f", passTimes[0] / 1e6,
+				passTimes[passes / 2] / 1e6, passTimes[passes - 1] / 1e6));
+		Integer[] order = new Integer[units.size()];
+		for (i = 0; i < order.length; i++)
+			order[i] = Integer.valueOf(i);
+		Arrays.sort(order, (a, b) -> Long.compare(unitTimes[b], unitTimes[a]));
+		for (i = 0; i < N_SLOWEST && i < order.length; i++)
+			out.println(String.format("  %7.2f ms/pass %s", unitTimes[order[i]] / 1e6 / passes, names.get(order[i])));
+	}
+
+	/**
+	 * The class of Java2ScriptVisitor's buffer field, to show which version of
+	 * the visitor was compiled.
+	 */
+	private static String getBufferClass() {
+		try {
+			return Java2ScriptVisitor.class.getDeclaredField("buffer").getType().getName();
+		} catch (NoSuchFieldException e) {
+			return "?";
+		}
+	}
+
+	/**
+	 * Visit every unit once.
+	 *
+	 * @param units
+	 * @param unitTimes added to for each unit, or null while warming up
+	 * @return the number of characters written and their hash
+	 */
+	private static String visitAll(List<CompilationUnit> units, long[] unitTimes) {
+		Java2ScriptConfiguration config = new Java2ScriptConfiguration();
+		long length = 0;
+		int hash = 0;
+		int nError = 0;
+		for (int i = 0; i < units.size(); i++) {
+			long t = System.nanoTime();
+			Java2ScriptVisitor visitor = new Java2ScriptVisitor().setProject(null, config);
+			try {
+				units.get(i).accept(visitor);
+			} catch (Throwable e) {
+				// bindings that did not resolve, for example; the same for either buffer
+				nError++;
+			}
+			String js = visitor.buffer.toString();
+			if (unitTimes != null)
+				unitTimes[i] += System.nanoTime() - t;
+			length += js.length();
+			hash = hash * 31 + js.hashCode();
+		}
+		return length + " chars, hash " + Integer.toHexString(hash) + (nError == 0 ? "" : ", " + nError + " failed");
+	}
+
+	@SuppressWarnings("deprecation")
+	private static List<CompilationUnit> parse(final String sourcepath, List<String> files, final List<String> names) {
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+		@SuppressWarnings("unchecked")
+		Map<String, String> options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions("1.8", options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setEnvironment(bootclasspath == null ? new String[0] : bootclasspath, new String[] { sourcepath },
+				new String[] { "UTF-8" }, bootclasspath == null);
+		parser.setResolveBindings(true);
+		final List<CompilationUnit> units = new ArrayList<CompilationUnit>();
+		String[] encodings = new String[files.size()];
+		Arrays.fill(encodings, "UTF-8");
+		parser.createASTs(files.toArray(new String[files.size()]), encodings, new String[0], new FileASTRequestor() {
+
+			@Override
+			public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+				names.add(sourceFilePath.startsWith(sourcepath + File.separator)
+						? sourceFilePath.substring(sourcepath.length() + 1)
+						: sourceFilePath);
+				units.add(ast);
+			}
+
+		}, null);
+		return units;
+	}
+
+	private static void addJavaFiles(File f, List<String> files) {
+		if (f.isDirectory()) {
+			File[] list = f.listFiles();
+			Arrays.sort(list);
+			for (int i = 0; i < list.length; i++)
+				if (!list[i].isDirectory())
+					addJavaFiles(list[i], files);
+		} else if (f.getName().endsWith(".java")) {
+			files.add(f.getAbsolutePath());
+		}
+	}
+
+}
@@ -1966,6 +1966,10 @@ public final class Class<T> {
 			/**
 			 * @j2sNative
 			 * 
+			 * if (!o[qname] && !(o.prototype && o.prototype[qname])) {
+			 *   // j2s.compact.names
+			 *   qname = Clazz._getCompactName(qname) || qname;
+			 * }
 			 * if (o[qname]) {
 			 *   isStatic = true;
 			 *   o = o[qname];
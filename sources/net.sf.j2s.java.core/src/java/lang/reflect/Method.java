@@ -57,8 +57,10 @@ public final class Method extends AccessibleObject implements GenericDeclaration
 	public Method(Class<?> declaringClass, String name, Class<?>[] paramTypes, Class<?> returnType,
 			Class<?>[] checkedExceptions, int modifiers) {
 		this.Class_ = declaringClass;
-		int pt = name.indexOf("$");
-		this.name = (pt >= 0 ? name.substring(0, pt) : name);
+		// a short name from j2s.compact.names
+		String jsName = /** @j2sNative Clazz._getFullName(name) || */ name;
+		int pt = jsName.indexOf("$");
+		this.name = (pt >= 0 ? jsName.substring(0, pt) : jsName);
 		this.parameterTypes = (paramTypes == null ? Class.NO_PARAMETERS : paramTypes);
 		this.returnType = returnType;
 		this.exceptionTypes = checkedExceptions;
@@ -380,8 +382,12 @@ public final class Method extends AccessibleObject implements GenericDeclaration
 	 * @return the parameter types
 	 */
 	public Class<?>[] getParameterTypes() {
-		return (parameterTypes == Class.UNKNOWN_PARAMETERS ?
-			parameterTypes = AnnotationParser.JSAnnotationObject.guessMethodParameterTypes(signature) : parameterTypes);
+		if (parameterTypes == Class.UNKNOWN_PARAMETERS) {
+			// a short name from j2s.compact.names
+			String sig = /** @j2sNative Clazz._getFullName(this.signature) || */ signature;
+			parameterTypes = AnnotationParser.JSAnnotationObject.guessMethodParameterTypes(sig);
+		}
+		return parameterTypes;
 	}
 
 	/**
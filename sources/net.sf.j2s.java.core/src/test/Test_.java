@@ -14,6 +14,7 @@ public class Test_ {
 		Test_Anon.main(args);
 		Test_Appendable.main(args);
 		Test_Array.main(args);
+		Test_ArrayNew.main(args);
 		Test_Assert.main(args);
 		Test_BigDec.main(args);
 		Test_BigInt.main(args);
@@ -33,6 +34,7 @@ public class Test_ {
 		Test_ClassBase.main(args);
 
 		Test_Clone.main(args);
+		Test_CompactNames.main(args);
 		Test_DivEqual.main(args);
 		Test_Double.main(args);
 		// not the same in Java as in JS Test_EPS.main(args);
@@ -46,6 +48,7 @@ public class Test_ {
 		Test_Field_ok.main(args);
 		// Test_File.main(args);
 		Test_Final.main(args);
+		Test_ForList.main(args);
 		Test_Format.main(args);
 		Test_Generic_Method.main(args);
 		Test_GenericAnon.main(args);
@@ -54,6 +57,7 @@ public class Test_ {
 		Test_Generic_Java8.main(args);
 		Test_Image.main(args);
 		// only works independently Test_Init.main(args);
+		Test_InlineMethods.main(args);
 		Test_Inner.main(args);
 		Test_Instance.main(args);
 		Test_Interface.main(args);
@@ -84,7 +88,9 @@ public class Test_ {
 		Test_Resource.main(args);
 		Test_Sort.main(args);
 		Test_Static.main(args);
+		Test_StaticConst.main(args);
 		// timing test only Test_String.main(args);
+		Test_StringSwitch.main(args);
 		Test_Var.main(args);
 		Test_Vararg.main(args);
 		Test_Void.main(args);
@@ -0,0 +1,86 @@
+package test;
+
+import java.util.Arrays;
+
+/**
+ * Primitive arrays created with all of their dimensions given, such as new
+ * int[n] or new double[r][c], are transpiled as direct calls to
+ * Clazz.newIntA, Clazz.newDoubleA, etc., which create the typed array without
+ * going through the general Clazz.array. The arrays must still be zero-filled,
+ * report the right class, and reject negative sizes.
+ */
+public class Test_ArrayNew extends Test_ {
+
+	public static void main(String[] args) {
+		int n = 3;
+
+		byte[] b = new byte[n];
+		short[] s = new short[n];
+		int[] i = new int[n];
+		long[] l = new long[n];
+		float[] f = new float[n];
+		double[] d = new double[n];
+		char[] c = new char[n];
+		boolean[] z = new boolean[n];
+		assert (b.length == 3 && b[2] == 0);
+		assert (s.length == 3 && s[2] == 0);
+		assert (i.length == 3 && i[2] == 0);
+		assert (l.length == 3 && l[2] == 0);
+		assert (f.length == 3 && f[2] == 0);
+		assert (d.length == 3 && d[2] == 0);
+		assert (c.length == 3 && c[2] == 0);
+		assert (z.length == 3 && !z[2]);
+		assert (b.getClass() == byte[].class);
+		assert (i.getClass() == int[].class);
+		assert (l.getClass() == long[].class);
+		assert (c.getClass() == char[].class);
+		assert (z.getClass().getName().equals("[Z"));
+
+		b[0] = (byte) 200;
+		assert (b[0] == -56);
+		i[0] = 7;
+		int[] i2 = i.clone();
+		assert (i2 != i && Arrays.equals(i, i2));
+		i2[0] = 8;
+		assert (i[0] == 7);
+
+		double[][] dd = new double[n][n + 1];
+		assert (dd.length == 3 && dd[2].length == 4 && dd[2][3] == 0);
+		assert (dd.getClass() == double[][].class);
+		assert (dd[1].getClass() == double[].class);
+		long[][][] lll = new long[2][2][2];
+		assert (lll[1][1][1] == 0);
+		int[][] partial = new int[n][];
+		assert (partial[2] == null);
+
+		boolean failed = false;
+		try {
+			i = new int[n - 4];
+		} catch (NegativeArraySizeException e) {
+			failed = true;
+		}
+		assert (failed);
+		failed = false;
+		try {
+			// every dimension is checked, even below one that is 0
+			dd = new double[n - 3][n - 4];
+		} catch (NegativeArraySizeException e) {
+			failed = true;
+		}
+		assert (failed);
+
+		// scratch arrays allocated in a loop
+		long t0 = System.currentTimeMillis();
+		int sum = 0;
+		for (int k = 0; k < 200000; k++) {
+			int[] scratch = new int[16];
+			scratch[k & 15] = k;
+			sum += scratch.length;
+		}
+		assert (sum == 200000 * 16);
+		System.out.println("scratch int[16] x 200000: " + (System.currentTimeMillis() - t0) + " ms");
+
+		System.out.println("Test_ArrayNew OK");
+	}
+
+}
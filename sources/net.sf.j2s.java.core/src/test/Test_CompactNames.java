@@ -0,0 +1,132 @@
+package test;
+
+import java.lang.reflect.Method;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * With j2s.compact.names=test in .j2s, the private and package-private methods
+ * here are written with short names, such as _$1c, and the public ones keep
+ * their j2s names. Overriding, interfaces, method references, and reflection
+ * must all work just as they do with the full j2s names.
+ */
+public class Test_CompactNames extends Test_ {
+
+	interface Twice {
+		int twice(int i);
+	}
+
+	static class Base<T> {
+
+		public int twice(int i) {
+			return 2 * i;
+		}
+
+		String show(T t) {
+			return "base " + t;
+		}
+
+		private int secret() {
+			return 7;
+		}
+
+		int getSecret() {
+			return secret();
+		}
+
+		static int square(int i) {
+			return i * i;
+		}
+	}
+
+	static class Sub extends Base<String> {
+
+		@Override
+		String show(String s) {
+			return "sub " + super.show(s);
+		}
+	}
+
+	/**
+	 * twice(int) here both overrides Base.twice and implements Twice.twice
+	 */
+	static class SubTwice extends Base<String> implements Twice {
+
+		@Override
+		public int twice(int i) {
+			return 20 * i;
+		}
+	}
+
+	/**
+	 * twice(int) is inherited from Base and implements Twice.twice
+	 */
+	static class InheritedTwice extends Base<String> implements Twice {
+	}
+
+	enum Color {
+		RED, GREEN;
+
+		Color next() {
+			return values()[(ordinal() + 1) % values().length];
+		}
+	}
+
+	public int getValueAt(int row, int col) {
+		return row * 10 + col;
+	}
+
+	public static void main(String[] args) {
+		Base<String> b = new Base<>();
+		assert (b.twice(3) == 6);
+		assert (b.getSecret() == 7);
+		assert (Base.square(4) == 16);
+		assert (b.show("x").equals("base x"));
+
+		Base<String> s = new Sub();
+		assert (s.show("y").equals("sub base y"));
+		assert (s.twice(3) == 6);
+
+		Base<String> st = new SubTwice();
+		assert (st.twice(3) == 60);
+		assert (((Twice) st).twice(3) == 60);
+
+		Twice it = new InheritedTwice();
+		assert (it.twice(3) == 6);
+
+		Base<String> anon = new Base<String>() {
+			@Override
+			public int twice(int i) {
+				return -i;
+			}
+		};
+		assert (anon.twice(3) == -3);
+
+		IntUnaryOperator op = b::twice;
+		assert (op.applyAsInt(5) == 10);
+		op = Base::square;
+		assert (op.applyAsInt(5) == 25);
+
+		assert (Color.RED.next() == Color.GREEN);
+		assert (Color.valueOf("GREEN").next() == Color.RED);
+
+		try {
+			Test_CompactNames t = new Test_CompactNames();
+			Method m = Test_CompactNames.class.getMethod("getValueAt", int.class, int.class);
+			assert (m.getName().equals("getValueAt"));
+			assert (((Integer) m.invoke(t, 2, 3)).intValue() == 23);
+			boolean found = false;
+			for (Method dm : Test_CompactNames.class.getDeclaredMethods())
+				found |= dm.getName().equals("getValueAt");
+			assert (found);
+			m = Base.class.getDeclaredMethod("getSecret");
+			assert (m.getName().equals("getSecret"));
+			assert (((Integer) m.invoke(b)).intValue() == 7);
+		} catch (Exception e) {
+			e.printStackTrace();
+			assert (false);
+		}
+
+		System.out.println("Test_CompactNames OK");
+	}
+
+}
@@ -0,0 +1,112 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Stack;
+import java.util.Vector;
+
+import javajs.util.Lst;
+
+/**
+ * Enhanced for loops over ArrayList, Vector, and their subclasses are
+ * transpiled as indexed loops over the list's elementData. They must still
+ * fail fast on concurrent modification, just as the iterator does, and a
+ * subclass with its own iterator() must still have it called.
+ */
+public class Test_ForList extends Test_ {
+
+	static class CountingList extends ArrayList<Integer> {
+
+		int nIterators;
+
+		@Override
+		public Iterator<Integer> iterator() {
+			nIterators++;
+			return super.iterator();
+		}
+	}
+
+	public static void main(String[] args) {
+
+		ArrayList<Integer> list = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+			list.add(i);
+		int sum = 0;
+		for (int i : list)
+			sum += i;
+		assert (sum == 10);
+		sum = 0;
+		for (Integer i : list)
+			sum += i.intValue();
+		assert (sum == 10);
+
+		Vector<String> v = new Vector<>();
+		v.add("a");
+		v.add("b");
+		String s = "";
+		for (String e : v)
+			s += e;
+		assert (s.equals("ab"));
+
+		Stack<String> stack = new Stack<>();
+		stack.push("c");
+		stack.push("d");
+		for (String e : stack)
+			s += e;
+		assert (s.equals("abcd"));
+
+		Lst<String> lst = new Lst<>();
+		lst.addLast("e");
+		for (String e : lst)
+			s += e;
+		assert (s.equals("abcde"));
+
+		for (String e : new ArrayList<String>())
+			s += e;
+		assert (s.equals("abcde"));
+
+		CountingList cl = new CountingList();
+		cl.add(3);
+		sum = 0;
+		for (int i : cl)
+			sum += i;
+		assert (sum == 3 && cl.nIterators == 1);
+
+		boolean failed = false;
+		try {
+			for (int i : list)
+				if (i == 1)
+					list.add(5);
+		} catch (ConcurrentModificationException e) {
+			failed = true;
+		}
+		assert (failed);
+
+		failed = false;
+		try {
+			for (String e : v)
+				v.add(e);
+		} catch (ConcurrentModificationException e) {
+			failed = true;
+		}
+		assert (failed);
+
+		// as in Java, removing the next-to-last element ends the loop without an
+		// exception
+		list.clear();
+		list.add(1);
+		list.add(2);
+		list.add(3);
+		sum = 0;
+		for (int i : list) {
+			sum += i;
+			if (i == 2)
+				list.remove(0);
+		}
+		assert (sum == 3 && list.size() == 2);
+
+		System.out.println("Test_ForList OK");
+	}
+
+}
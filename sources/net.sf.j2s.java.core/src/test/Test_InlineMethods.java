@@ -0,0 +1,166 @@
+package test;
+
+import java.lang.reflect.Method;
+import java.util.function.DoubleSupplier;
+
+/**
+ * With j2s.inline.methods=true in .j2s, calls here to private, static, and
+ * final getters and setters are written as reads and writes of the field, and
+ * calls to the short static helpers as their expressions. The methods must
+ * still be there for reflection and method references, and calls that cannot
+ * be inlined -- an overridable getter, an argument with side effects -- must
+ * still work.
+ */
+public class Test_InlineMethods extends Test_ {
+
+	static final class Pt {
+
+		private double x, y;
+
+		private static int count;
+
+		Pt(double x, double y) {
+			this.x = x;
+			this.y = y;
+			count++;
+		}
+
+		double getX() {
+			return x;
+		}
+
+		double getY() {
+			return this.y;
+		}
+
+		void setX(double x) {
+			this.x = x;
+		}
+
+		void setY(double y) {
+			this.y = y;
+		}
+
+		static int getCount() {
+			return count;
+		}
+
+		double dot(Pt p) {
+			return getX() * p.getX() + getY() * p.getY();
+		}
+	}
+
+	static class Box {
+
+		int w = 2;
+
+		private int h = 3;
+
+		int getW() {
+			return w;
+		}
+
+		final int getH() {
+			return h;
+		}
+
+		private void setH(int h) {
+			this.h = h;
+		}
+
+		int area() {
+			return getW() * getH();
+		}
+
+		void grow() {
+			setH(getH() + 1);
+		}
+	}
+
+	static class WideBox extends Box {
+
+		@Override
+		int getW() {
+			return 10;
+		}
+	}
+
+	static int sq(int a) {
+		return a * a;
+	}
+
+	static int half(int a) {
+		return a / 2;
+	}
+
+	static double lerp(double a, double b, double t) {
+		return a + (b - a) * t;
+	}
+
+	static double len(double x, double y) {
+		return Math.sqrt(x * x + y * y);
+	}
+
+	static boolean between(int i, int min, int max) {
+		return i >= min && i <= max;
+	}
+
+	static String tag(String s) {
+		return "<" + s + ">";
+	}
+
+	static long lsq(long a) {
+		return a * a;
+	}
+
+	private int calls;
+
+	private int next() {
+		return ++calls;
+	}
+
+	public static void main(String[] args) {
+		Pt p = new Pt(3, 4);
+		assert (p.getX() == 3 && p.getY() == 4);
+		p.setX(6);
+		p.setY(p.getY() * 2);
+		assert (p.getX() == 6 && p.getY() == 8);
+		assert (p.dot(new Pt(1, 1)) == 14);
+		assert (Pt.getCount() == 2);
+
+		Box b = new Box();
+		assert (b.area() == 6);
+		b.grow();
+		assert (b.getH() == 4 && b.area() == 8);
+		Box wb = new WideBox();
+		assert (wb.getW() == 10 && wb.area() == 30);
+
+		int n = 7;
+		assert (sq(n) == 49 && sq(3) == 9);
+		assert (half(n) == 3 && half(-n) == -3);
+		double a = 1, t = 0.25;
+		assert (lerp(a, 5.0, t) == 2);
+		assert (len(3.0, 4.0) == 5);
+		assert (between(n, 1, 10) && !between(n, 8, 10));
+		String s = "x";
+		assert (tag(s).equals("<x>"));
+		assert (lsq(3000000000L) == 9000000000000000000L);
+
+		Test_InlineMethods test = new Test_InlineMethods();
+		assert (sq(test.next()) == 1 && test.calls == 1);
+		assert (sq(test.next() + 1) == 9 && test.calls == 2);
+
+		try {
+			Method m = Pt.class.getDeclaredMethod("getX");
+			assert (((Double) m.invoke(p)).doubleValue() == 6);
+		} catch (Exception e) {
+			e.printStackTrace();
+			assert (false);
+		}
+		DoubleSupplier ds = p::getY;
+		assert (ds.getAsDouble() == 8);
+
+		System.out.println("Test_InlineMethods OK");
+	}
+
+}
@@ -0,0 +1,48 @@
+package test;
+
+/**
+ * With j2s.exact.long, long local variables that provably stay within +/-2^53,
+ * such as loop counters and System.currentTimeMillis() differences, are
+ * transpiled as JavaScript numbers with plain operators. Fields are not
+ * analyzed, so the same loop over a long field uses Long.$lt and Long.$inc.
+ * Compare the two times in JavaScript, and again with
+ * j2s.exact.long.ranges=false in .j2s.
+ */
+public class Test_LongSpeed extends Test_ {
+
+	static long f;
+
+	public static void main(String[] args) {
+		int n = 10000000;
+
+		long t0 = System.currentTimeMillis();
+		int count = 0;
+		for (long i = 0; i < n; i++) {
+			long j = i * 3 - 1;
+			if (j < n)
+				count++;
+		}
+		long t1 = System.currentTimeMillis();
+		System.out.println("long local loop: " + (t1 - t0) + " ms");
+		assert (count == (n + 1) / 3 + 1);
+
+		count = 0;
+		for (f = 0; f < n; f++) {
+			long j = f * 3 - 1;
+			if (j < n)
+				count++;
+		}
+		long t2 = System.currentTimeMillis();
+		System.out.println("long field loop: " + (t2 - t1) + " ms");
+		assert (count == (n + 1) / 3 + 1);
+
+		// 2^53 + 1 cannot be a number, so this stays with Long.$inc
+		long big = (1L << 53) - 2;
+		for (int i = 0; i < 3; i++)
+			big++;
+		assert (big == (1L << 53) + 1);
+
+		System.out.println("Test_LongSpeed OK");
+	}
+
+}
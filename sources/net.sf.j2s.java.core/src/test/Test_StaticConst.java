@@ -0,0 +1,59 @@
+package test;
+
+/**
+ * A static constant of another class is written as its value, however it is
+ * reached -- through the class, an instance, this, or an expression whose only
+ * use is its side effects -- so reading it never loads or initializes that
+ * class, just as in Java.
+ */
+public class Test_StaticConst extends Test_ {
+
+	static boolean isInitialized;
+
+	static int nCalls;
+
+	static class Holder {
+
+		static {
+			isInitialized = true;
+		}
+
+		public static final int K = 42;
+
+		public static final long BIG = Long.MAX_VALUE - 1;
+
+		public static final char CH = 'b';
+
+		public static final String S = "s\"q";
+
+		int get() {
+			return this.K + K;
+		}
+	}
+
+	static Holder getHolder() {
+		nCalls++;
+		return null;
+	}
+
+	public static void main(String[] args) {
+		Holder h = null;
+		assert (h.K == 42);
+		assert (Holder.K + h.K == 84);
+		assert (h.BIG == Long.MAX_VALUE - 1);
+		assert (h.CH + 1 == 'c');
+		assert (h.S.length() == 3);
+		assert (!isInitialized);
+
+		assert (getHolder().K == 42 && nCalls == 1);
+		assert (getHolder().CH == 'b' && nCalls == 2);
+		assert ((getHolder().S + getHolder().BIG).equals("s\"q9223372036854775806") && nCalls == 4);
+		assert (!isInitialized);
+
+		assert (new Holder().get() == 84);
+		assert (isInitialized);
+
+		System.out.println("Test_StaticConst OK");
+	}
+
+}
@@ -0,0 +1,126 @@
+package test;
+
+/**
+ * A switch on a String with ten or more cases is transpiled as a switch on
+ * the case number, looked up in a Map made once per switch, and runs of
+ * constant operands in a String concatenation are joined when transpiled,
+ * where that does not change Java's left-to-right evaluation.
+ */
+public class Test_StringSwitch extends Test_ {
+
+	static final String ELEVEN = "eleven";
+
+	static int number(String s) {
+		switch (s) {
+		case "one":
+			return 1;
+		case "two":
+			return 2;
+		case "three":
+			return 3;
+		case "four":
+			return 4;
+		case "five":
+			return 5;
+		case "six":
+		case "seven":
+			return 67;
+		case "eight":
+			return 8;
+		case "nine":
+			return 9;
+		case "ten":
+			return 10;
+		case ELEVEN:
+			return 11;
+		case "__proto__":
+			return 12;
+		case "toString":
+			return 13;
+		case "":
+			return 14;
+		case "a\"b\\c":
+			return 15;
+		default:
+			return -1;
+		}
+	}
+
+	static String fallThrough(String s, int n) {
+		String ret = "";
+		switch (s) {
+		case "a":
+			ret += "a";
+		case "b":
+			ret += "b";
+			break;
+		case "c":
+		case "d":
+			switch (n) {
+			case 1:
+				ret += "1";
+				break;
+			default:
+				ret += "n";
+				break;
+			}
+			ret += "cd";
+			break;
+		default:
+			ret += "?";
+			break;
+		case "e":
+			ret += "e";
+		case "f":
+		case "g":
+		case "h":
+		case "i":
+		case "j":
+			ret += "j";
+		}
+		return ret;
+	}
+
+	public static void main(String[] args) {
+		assert (number("one") == 1);
+		assert (number("seven") == 67);
+		assert (number("ten") == 10);
+		assert (number("eleven") == 11);
+		assert (number("twos".substring(0, 3)) == 2);
+		assert (number("__proto__") == 12);
+		assert (number("toString") == 13);
+		assert (number("constructor") == -1);
+		assert (number("") == 14);
+		assert (number("a\"b\\c") == 15);
+		assert (number("zero") == -1);
+
+		assert (fallThrough("a", 0).equals("ab"));
+		assert (fallThrough("b", 0).equals("b"));
+		assert (fallThrough("c", 1).equals("1cd"));
+		assert (fallThrough("d", 2).equals("ncd"));
+		assert (fallThrough("e", 0).equals("ej"));
+		assert (fallThrough("i", 0).equals("j"));
+		assert (fallThrough("x", 0).equals("?"));
+
+		int n = 7;
+		char c = 'c';
+		String s = "s";
+		assert ((n + 1 + "c").equals("8c"));
+		assert ((n + "c" + 1 + 2).equals("7c12"));
+		assert ((s + 1 + 'c' + 2.5 + true + 10L + 1.5f).equals("s1c2.5true101.5"));
+		assert ((s + 1.0 + 1e20 + ELEVEN).equals("s1.01.0E20eleven"));
+		assert ((c + "x" + 'y' + 'z' + c).equals("cxyzc"));
+		assert (("a" + "b" + s + "c" + "d").equals("absc" + "d"));
+
+		long t0 = System.currentTimeMillis();
+		String[] words = { "one", "five", "nine", "eleven", "zero", "toString" };
+		int sum = 0;
+		for (int i = 0; i < 1000000; i++)
+			sum += number(words[i % words.length]);
+		assert (sum == 1000000 / 6 * (1 + 5 + 9 + 11 - 1 + 13) + 1 + 5 + 9 + 11);
+		System.out.println("number(String) x 1000000: " + (System.currentTimeMillis() - t0) + " ms");
+
+		System.out.println("Test_StringSwitch OK");
+	}
+
+}
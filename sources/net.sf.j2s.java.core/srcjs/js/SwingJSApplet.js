@@ -246,7 +246,7 @@ if (typeof(SwingJS) == "undefined") {
 	
 	proto._addCoreFiles = function() {
 		if (this.__Info.core != "NONE" && this.__Info.core != "none" && !J2S._debugCode)
-			J2S._addCoreFile((this.__Info.core || "swingjs"), this._j2sPath, this.__Info.preloadCore);
+			J2S._addCoreFile((this.__Info.core || "swingjs"), this._j2sPath, this.__Info.preloadCore, this.__Info.lazyCore);
 //		if (J2S._debugCode) {
 //		// no min package for that
 //			J2S._addExec([this, null, "swingjs.JSAppletViewer", "load " + this.__Info.code]);
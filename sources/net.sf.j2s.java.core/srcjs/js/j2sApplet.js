@@ -100,10 +100,15 @@ if (getFlag("j2s")) {
 	J2S._lang = getURIField("j2slang", null);    // preferred language; application should check
 	 // will alert in system.out.println with a message when events occur
 	J2S._loadcore = !getFlag("j2snocore");		 // no core files 
+	J2S._longBackend = getURIField("j2slong", null); // "i32" for int32-pair long arithmetic in j2sClazz.js
+	J2S._nobundles = getFlag("j2snobundles");    // ignore Info.bundles; load class files one at a time
+	J2S._noclasscache = getFlag("j2snoclasscache"); // ignore Info.classCache; neither read nor write the stored classes
 	J2S._nooutput = getFlag("j2snooutput");      // no System.out, only System.err message
+	J2S._noprefetch = getFlag("j2snoprefetch");  // ignore Info.prefetch; fetch each class file only when needed
 	J2S._nozcore = getFlag("j2snozcore");        // no compressed core.z.js files
 	J2S._strict = getFlag("j2sstrict");          // strict mode -- experimental
 	J2S._startProfiling = getFlag("j2sprofile"); // track object creation
+	J2S._startTrace = (getFlag("j2stimeline") ? getURIField("j2stimeline", "") : null); // class-load timeline; =pkg;pkg to count method calls
 	J2S._traceEvents = getFlag("j2sevents");     // reports ComponentEvent instances 
 	J2S._traceMouse = getFlag("j2smouse");       // mouse events, but not move
 	J2S._traceMouseMove = getFlag("j2smousemove"); // mouse messages including move
@@ -1483,6 +1488,13 @@ if (database == "_" && J2S._serverUrl.indexOf("//your.server.here/") >= 0) {
 		obj._noMonitor = Info.disableJ2SLoadMonitor;
 		J2S._j2sPath && (Info.j2sPath = J2S._j2sPath);
 		obj._j2sPath = Info.j2sPath;
+		// j2s.bundle.packages: load a package's classes with one request
+		Info.bundles && (J2S._bundles = true);
+		// fetch the classes a class uses as soon as it is loaded
+		Info.prefetch && (J2S._prefetch = true);
+		// keep class files in IndexedDB, keyed by the j2s.gzip manifest
+		// (true, or the manifest URL)
+		Info.classCache && (J2S._classCache = Info.classCache);
 		obj._coverImage = Info.coverImage;
 		obj._isCovered = !!obj._coverImage;
 		obj._deferApplet = Info.deferApplet || obj._isCovered && obj._isJava; 
@@ -2257,6 +2269,21 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 		Clazz.startProfiling(__profiling = (seconds || arguments.length == 0 || doProfile));
 	}
 
+	// the class-load timeline, object counts, and method-call counts as
+	// Chrome trace-event JSON; see Clazz.startTrace in j2sClazz.js
+
+	J2S.startTrace = function(packages) {
+		return Clazz.startTrace(packages);
+	}
+
+	J2S.getTrace = function(andStop) {
+		return JSON.stringify(Clazz.getTrace(andStop));
+	}
+
+	J2S.saveTrace = function(fileName, andStop) {
+		return J2S.saveFile(fileName || "j2stimeline.json", J2S.getTrace(andStop), "application/json");
+	}
+
 	J2S._getAttr = function(s, a) {
 		var pt = s.indexOf(a + "=");
 		return (pt >= 0 && (pt = s.indexOf('"', pt)) >= 0 ? s.substring(pt + 1,
@@ -2375,6 +2402,7 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 	J2S._asyncCallbacks = {};
 
 	J2S._coreFiles = []; // required for package.js
+	J2S._lazyCoreFiles = []; // loaded when the first class not in _coreFiles is needed
 
 	// /////////////////
 	// This section provides an asynchronous loading sequence
@@ -2424,6 +2452,8 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 				System.err.println("j2sApplet j2sstrict - 'use strict' will be used - this is experimental");
 			if (J2S._startProfiling) 
 				J2S.getProfile();
+			if (J2S._startTrace != null)
+				Clazz.startTrace(J2S._startTrace);
 			if (applet._noMonitor)
 				Clazz._LoaderProgressMonitor.showStatus = function() {
 				}
@@ -2440,8 +2470,16 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 				}
 			};
 			// load package.js and j2s/core/core.z.js
-			Clazz._Loader.loadPackageClasspath("java", null, true,
-					__nextExecution);
+			var loadCore = function() {
+				Clazz._Loader.loadPackageClasspath("java", null, true,
+						__nextExecution);
+			};
+			if (J2S._classCache && !J2S._noclasscache)
+				// the stored classes must be read before any are loaded
+				Clazz._Loader.openClassCache(null, 
+						typeof J2S._classCache == "string" ? J2S._classCache : null, loadCore);
+			else
+				loadCore();
 			return;
 		}
 		__nextExecution();
@@ -2472,7 +2510,7 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 		__execStack.push(e);
 	}
 
-	J2S._addCoreFile = function(type, path, more) {
+	J2S._addCoreFile = function(type, path, more, lazy) {
 
 		// BH 3/15: idea here is that when both Jmol and JSV are present,
 		// we want to load a common core file -- jmoljsv.z.js --
@@ -2508,6 +2546,11 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 					__coreMore.push(path + "/core/core" + more[i] + ".z.js")
 		for (var i = 0; i < __coreMore.length; i++)
 			J2S._coreFiles.push(__coreMore[i]);
+		// Info.lazyCore: the rest of an app's classes, as from tools/j2scorebundle.js
+		if (lazy && (Array.isArray(lazy) || (lazy = lazy.split(" "))))
+			for (var i = 0; i < lazy.length; i++)
+				if (lazy[i] && J2S._lazyCoreFiles.join("").indexOf("/core" + lazy[i] + ".z.js") < 0)
+					J2S._lazyCoreFiles.push(path + "/core/core" + lazy[i] + ".z.js");
 	}
 
 	J2S._Canvas2D = function(id, Info, type, checkOnly) {
@@ -10771,10 +10771,15 @@ if (getFlag("j2s")) {
 	J2S._lang = getURIField("j2slang", null);    // preferred language; application should check
 	 // will alert in system.out.println with a message when events occur
 	J2S._loadcore = !getFlag("j2snocore");		 // no core files 
+	J2S._longBackend = getURIField("j2slong", null); // "i32" for int32-pair long arithmetic in j2sClazz.js
+	J2S._nobundles = getFlag("j2snobundles");    // ignore Info.bundles; load class files one at a time
+	J2S._noclasscache = getFlag("j2snoclasscache"); // ignore Info.classCache; neither read nor write the stored classes
 	J2S._nooutput = getFlag("j2snooutput");      // no System.out, only System.err message
+	J2S._noprefetch = getFlag("j2snoprefetch");  // ignore Info.prefetch; fetch each class file only when needed
 	J2S._nozcore = getFlag("j2snozcore");        // no compressed core.z.js files
 	J2S._strict = getFlag("j2sstrict");          // strict mode -- experimental
 	J2S._startProfiling = getFlag("j2sprofile"); // track object creation
+	J2S._startTrace = (getFlag("j2stimeline") ? getURIField("j2stimeline", "") : null); // class-load timeline; =pkg;pkg to count method calls
 	J2S._traceEvents = getFlag("j2sevents");     // reports ComponentEvent instances 
 	J2S._traceMouse = getFlag("j2smouse");       // mouse events, but not move
 	J2S._traceMouseMove = getFlag("j2smousemove"); // mouse messages including move
@@ -12154,6 +12159,13 @@ if (database == "_" && J2S._serverUrl.indexOf("//your.server.here/") >= 0) {
 		obj._noMonitor = Info.disableJ2SLoadMonitor;
 		J2S._j2sPath && (Info.j2sPath = J2S._j2sPath);
 		obj._j2sPath = Info.j2sPath;
+		// j2s.bundle.packages: load a package's classes with one request
+		Info.bundles && (J2S._bundles = true);
+		// fetch the classes a class uses as soon as it is loaded
+		Info.prefetch && (J2S._prefetch = true);
+		// keep class files in IndexedDB, keyed by the j2s.gzip manifest
+		// (true, or the manifest URL)
+		Info.classCache && (J2S._classCache = Info.classCache);
 		obj._coverImage = Info.coverImage;
 		obj._isCovered = !!obj._coverImage;
 		obj._deferApplet = Info.deferApplet || obj._isCovered && obj._isJava; 
@@ -12928,6 +12940,21 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 		Clazz.startProfiling(__profiling = (seconds || arguments.length == 0 || doProfile));
 	}
 
+	// the class-load timeline, object counts, and method-call counts as
+	// Chrome trace-event JSON; see Clazz.startTrace in j2sClazz.js
+
+	J2S.startTrace = function(packages) {
+		return Clazz.startTrace(packages);
+	}
+
+	J2S.getTrace = function(andStop) {
+		return JSON.stringify(Clazz.getTrace(andStop));
+	}
+
+	J2S.saveTrace = function(fileName, andStop) {
+		return J2S.saveFile(fileName || "j2stimeline.json", J2S.getTrace(andStop), "application/json");
+	}
+
 	J2S._getAttr = function(s, a) {
 		var pt = s.indexOf(a + "=");
 		return (pt >= 0 && (pt = s.indexOf('"', pt)) >= 0 ? s.substring(pt + 1,
@@ -13046,6 +13073,7 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 	J2S._asyncCallbacks = {};
 
 	J2S._coreFiles = []; // required for package.js
+	J2S._lazyCoreFiles = []; // loaded when the first class not in _coreFiles is needed
 
 	// /////////////////
 	// This section provides an asynchronous loading sequence
@@ -13095,6 +13123,8 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 				System.err.println("j2sApplet j2sstrict - 'use strict' will be used - this is experimental");
 			if (J2S._startProfiling) 
 				J2S.getProfile();
+			if (J2S._startTrace != null)
+				Clazz.startTrace(J2S._startTrace);
 			if (applet._noMonitor)
 				Clazz._LoaderProgressMonitor.showStatus = function() {
 				}
@@ -13111,8 +13141,16 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 				}
 			};
 			// load package.js and j2s/core/core.z.js
-			Clazz._Loader.loadPackageClasspath("java", null, true,
-					__nextExecution);
+			var loadCore = function() {
+				Clazz._Loader.loadPackageClasspath("java", null, true,
+						__nextExecution);
+			};
+			if (J2S._classCache && !J2S._noclasscache)
+				// the stored classes must be read before any are loaded
+				Clazz._Loader.openClassCache(null, 
+						typeof J2S._classCache == "string" ? J2S._classCache : null, loadCore);
+			else
+				loadCore();
 			return;
 		}
 		__nextExecution();
@@ -13143,7 +13181,7 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 		__execStack.push(e);
 	}
 
-	J2S._addCoreFile = function(type, path, more) {
+	J2S._addCoreFile = function(type, path, more, lazy) {
 
 		// BH 3/15: idea here is that when both Jmol and JSV are present,
 		// we want to load a common core file -- jmoljsv.z.js --
@@ -13179,6 +13217,11 @@ if (ev.keyCode == 9 && ev.target["data-focuscomponent"]) {
 					__coreMore.push(path + "/core/core" + more[i] + ".z.js")
 		for (var i = 0; i < __coreMore.length; i++)
 			J2S._coreFiles.push(__coreMore[i]);
+		// Info.lazyCore: the rest of an app's classes, as from tools/j2scorebundle.js
+		if (lazy && (Array.isArray(lazy) || (lazy = lazy.split(" "))))
+			for (var i = 0; i < lazy.length; i++)
+				if (lazy[i] && J2S._lazyCoreFiles.join("").indexOf("/core" + lazy[i] + ".z.js") < 0)
+					J2S._lazyCoreFiles.push(path + "/core/core" + lazy[i] + ".z.js");
 	}
 
 	J2S._Canvas2D = function(id, Info, type, checkOnly) {
@@ -14344,6 +14387,79 @@ var _array = function(baseClass, paramType, ndims, params, isClone) {
   return newTypedA(baseClass, params, nbits, (dofill ? ndims : -ndims), isClone);
 }
 
+// new int[n], new double[n][m], and so on, with every dimension given, as
+// the transpiler writes them: Clazz.newIntA(n), Clazz.newDoubleA(n, m).
+// Unlike Clazz.array, these know their element type, so they go straight to
+// the typed array without parsing type codes. As in Clazz.array, float[] is a
+// Float64Array, and long[], char[], and boolean[] are filled Arrays.
+
+var newA = function(a, code, nBytes) {
+  a.__BYTESIZE = nBytes;
+  var base = primTypes[code].TYPE;
+  _profileNew && addProfileNew(base, -1);
+  return setArray(a, base, code + "A", 1);
+}
+
+var newAA = function(f, code, dims, i) {
+  if (i == 0) {
+    // as in Java, every dimension is checked, even below one that is 0
+    for (var k = 0; k < dims.length; k++)
+      dims[k] < 0 && negativeArraySize(dims[k]);
+  }
+  if (i == dims.length - 1)
+    return f(dims[i]);
+  var n = dims[i];
+  var a = new Array(n);
+  for (var j = 0; j < n; j++)
+    a[j] = newAA(f, code, dims, i + 1);
+  var nd = dims.length - i;
+  return setArray(a, primTypes[code].TYPE, code + "A".repeat(nd), nd);
+}
+
+var negativeArraySize = function(n) {
+  throw Clazz.new_(Clazz.load('NegativeArraySizeException').c$$S,["" + n]);
+}
+
+Clazz.newByteA = function(n) {
+  return (arguments.length > 1 ? newAA(Clazz.newByteA, "B", arguments, 0)
+    : newA(new Int8Array(n < 0 ? negativeArraySize(n) : n), "B", 1));
+}
+
+Clazz.newShortA = function(n) {
+  return (arguments.length > 1 ? newAA(Clazz.newShortA, "H", arguments, 0)
+    : newA(new Int16Array(n < 0 ? negativeArraySize(n) : n), "H", 2));
+}
+
+Clazz.newIntA = function(n) {
+  return (arguments.length > 1 ? newAA(Clazz.newIntA, "I", arguments, 0)
+    : newA(new Int32Array(n < 0 ? negativeArraySize(n) : n), "I", 4));
+}
+
+Clazz.newFloatA = function(n) {
+  return (arguments.length > 1 ? newAA(Clazz.newFloatA, "F", arguments, 0)
+    : newA(new Float64Array(n < 0 ? negativeArraySize(n) : n), "F", 8));
+}
+
+Clazz.newDoubleA = function(n) {
+  return (arguments.length > 1 ? newAA(Clazz.newDoubleA, "D", arguments, 0)
+    : newA(new Float64Array(n < 0 ? negativeArraySize(n) : n), "D", 8));
+}
+
+Clazz.newLongA = function(n) {
+  return (arguments.length > 1 ? newAA(Clazz.newLongA, "J", arguments, 0)
+    : newA(new Array(n < 0 ? negativeArraySize(n) : n).fill(0), "J", 8));
+}
+
+Clazz.newCharA = function(n) {
+  return (arguments.length > 1 ? newAA(Clazz.newCharA, "C", arguments, 0)
+    : newA(new Array(n < 0 ? negativeArraySize(n) : n).fill('\0'), "C", 0));
+}
+
+Clazz.newBooleanA = function(n) {
+  return (arguments.length > 1 ? newAA(Clazz.newBooleanA, "Z", arguments, 0)
+    : newA(new Array(n < 0 ? negativeArraySize(n) : n).fill(false), "Z", 0));
+}
+
 Clazz.assert = function(clazz, obj, tf, msg) {
   if (!clazz.$_ASSERT_ENABLED_)return;
   var ok = true;
@@ -14391,7 +14507,7 @@ if (me.__ARRAYTYPE) {
  */
 Clazz.exceptionOf = function(e, clazz) {
   if (typeof clazz == "string")
-    clazz = Clazz.load(clazz);
+    clazz = Clazz._getDeclared(clazz) || Clazz.load(clazz);
   if(e.__CLASS_NAME__)
     return Clazz.instanceOf(e, clazz);
   if (!e.getMessage) {
@@ -14510,6 +14626,9 @@ Clazz.instanceOf = function (obj, clazz) {
       return obj.__ARRAYTYPE && clazz.__ARRAYTYPE && obj.__NDIM == clazz.__NDIM 
                && isInstanceOf(obj.__BASECLASS, clazz.__BASECLASS); 
   }
+  var s;
+  if (typeof obj == "object" && obj.__CLASS_NAME__ && clazz.__CLASS_NAME__ && (s = getSupertypes(obj)))
+    return (s[clazz.__CLASS_NAME__] === clazz || clazz === Clazz._O || obj instanceof clazz);
   return (obj instanceof clazz || isInstanceOf(getClassName(obj, true), clazz, true));
 };
 
@@ -14529,6 +14648,14 @@ var initStatic = function(cl, impls) {
  * Just finalize this class if from $clinit$. 
  */
 Clazz.load = function(cName, from$clinit$) {
+  if (!from$clinit$ || !_trace || !cName)
+    return load0(cName, from$clinit$);
+  var t0 = traceNow();
+  load0(cName, from$clinit$);
+  _trace && addTraceEvent((from$clinit$ == 1 ? "$clinit$ " : "$static$ ") + cName.__CLASS_NAME__, "clinit", t0, traceNow());
+}
+
+var load0 = function(cName, from$clinit$) {
   if (!cName)
     return null;
   var cl = cName;  
@@ -14764,11 +14891,17 @@ Clazz.new_ = function(c, args, cl) {
 		return Clazz.new_(Clazz.load(c)["c$" + args], cl)
 	}
   }
+  var f;
+  if (!cl && !generics && !_profileNew && Clazz._newFast && (f = (c.exClazz || c).$new$)) {
+    _trace && traceNew(c.exClazz || c);
+    return f(c, haveArgs ? args : null);
+  }
     
   // an inner class will attach arguments to the arguments returned
   // Integer will be passed as is here, without c.exClazz, or cl
   var clInner = cl;
   cl = cl || c.exClazz || c;
+  _trace && traceNew(cl);
   Clazz._initClass(cl,1,0,0); 
   // BH note: Critical here that the above is not 1,1,0; 
   // static init is the responsibility of newInstance
@@ -14785,10 +14918,51 @@ Clazz.new_ = function(c, args, cl) {
 
   if (generics) {
 	obj.$init$.generics = generics;
+  } else if (!clInner && cl.$new$ === undefined) {
+    (f = getNewFast(cl)) === null || (cl.$new$ = f);
   }
   return obj;
 }
 
+// The Clazz.new_ fast path. Once a class has been created the usual way, its
+// $clinit$ and static initialization have run, and if it is not an inner class,
+// not a Number, and has only the class function the transpiler writes (or the
+// default one from Clazz.newClass), C$.$new$ is set to a function that does
+// just what Clazz.new_ and Clazz.newInstance would then still do: set
+// __JSID__, run $init0$ for the field defaults, and call the constructor.
+// Inner and anonymous classes, generics, and the j2sprofile count of new
+// objects all go the usual way. (Clazz._newFast = false turns this off.)
+// An object made while its class is still being initialized -- an enum
+// constant or a static singleton -- leaves $new$ unset, so that the next one
+// tries again.
+
+Clazz._newFast = true;
+
+var newFastFunction = /^function\s*\(\)\s*\{\s*Clazz[._]newInstance\(this,\s*arguments(\[0\])?,\s*(0|false|!1),\s*[\w$]+\);?\s*\}$/;
+
+// null while the class is still being initialized, 0 if it can never take
+// the fast path
+var getNewFast = function(cl) {
+  var f = cl.$clinit$;
+  if (cl.$load$ || f === 1 || f === 2 || typeof f == "function")
+    return null;
+  if (cl.prototype.__VAL0__ || !cl.$newDefault$ && !newFastFunction.test(cl.toString()))
+    return 0;
+  var F = function() {};
+  F.prototype = cl.prototype;
+  return function(c, args) {
+    var obj = new F();
+    obj.__JSID__ = ++_jsid;
+    var f = cl.$init0$;
+    f && f.apply(obj);
+    if (args)
+      c.apply(obj, args);
+    else
+      (f = obj.c$) && f.apply(obj);
+    return obj;
+  };
+};
+
 //var C$=Clazz.newClass(P$, 
 //        "Test_Local$1", 
 //		function(){Clazz.newInstance(this, arguments[0],1,C$);}, 
@@ -14800,7 +14974,10 @@ Clazz.newClass = function (prefix, name, clazz, clazzSuper, interfacez, type) {
 //    var qualifiedName = (prefix ? (prefix.__PKG_NAME__ || prefix.__CLASS_NAME__) + "." : "") + name;
 //    checkDeclared(qualifiedName, type);
 //  }
-  clazz || (clazz = function () {Clazz.newInstance(this,arguments,0,clazz)});  
+  if (!clazz) {
+    clazz = function () {Clazz.newInstance(this,arguments,0,clazz)};
+    clazz.$newDefault$ = true;
+  }
   
   clazz.__NAME__ = name;
   // prefix class means this is an inner class, and $this$0 refers to the outer class. 
@@ -15107,6 +15284,8 @@ Clazz.newMeth = function (clazzThis, funName, funBody, modifiers) {
     return;
   }
   
+  if (_trace && _trace.packages && isTracedClass(clazzThis.__CLASS_NAME__))
+    funBody = traceCalls(clazzThis.__CLASS_NAME__ + "." + funName, funBody);
   var isStatic = (modifiers == 1 || modifiers == 2);
   var isPrivate = (typeof modifiers == "object");
   if (isPrivate) 
@@ -15127,6 +15306,50 @@ Clazz.newMeth = function (clazzThis, funName, funBody, modifiers) {
   return funBody; // allow static calls as though they were not static
 };
 
+// j2s.compact.names
+//
+// Private and package-private methods of the listed packages may be written
+// with short names such as _$1c in place of j2s names such as getValueAt$I$I;
+// public and protected methods always keep their j2s names, so code built
+// separately can call them. The transpiler keeps the table in
+// swingjs/j2s/_names.txt; reflection reads it the first time it needs it.
+
+var compactNames = null;
+
+var getCompactNames = function() {
+  if (!compactNames) {
+    compactNames = { toShort: {}, toFull: {} };
+    var data = null;
+    try {
+      data = J2S.getFileData(Clazz._Loader.getJ2SLibBase() + "_names.txt");
+    } catch (e) {
+    }
+    if (typeof data == "string" && data.indexOf("# j2s.compact.names") == 0) {
+      var lines = data.split("\n");
+      for (var i = 1; i < lines.length; i++) {
+        var pt = lines[i].indexOf("\t");
+        if (pt > 0) {
+          var s = lines[i].substring(0, pt);
+          var name = lines[i].substring(pt + 1).trim();
+          compactNames.toShort[name] = s;
+          compactNames.toFull[s] = name;
+        }
+      }
+    }
+  }
+  return compactNames;
+};
+
+// the short name for a j2s method name, or null
+Clazz._getCompactName = function(name) {
+  return getCompactNames().toShort[name] || null;
+};
+
+// the j2s method name for a short name; any other name is returned as is
+Clazz._getFullName = function(name) {
+  return (name && name.indexOf("_$") == 0 && getCompactNames().toFull[name] || name);
+};
+
 Clazz.newPackage = function (pkgName) {
   Clazz._Loader && Clazz._Loader.doTODO();
   if (Clazz.lastPackageName == pkgName || !pkgName)
@@ -15294,6 +15517,96 @@ var addProfileNew = function(c, t) {
   p[1]+=t;
 }
 
+// Timeline tracing (Clazz.startTrace and Clazz.getTrace; J2S.saveTrace and the
+// j2stimeline URL flag). While a trace is running, the class loader records
+// each file it loads -- the time to fetch it, whether from the server, the
+// class cache, a prefetch, or a package bundle, and the time to run it -- and
+// each $clinit$ and static initialization, as Chrome trace events, which
+// chrome://tracing, Perfetto, and the browser's performance panel can open.
+// It also counts the objects of each class made with Clazz.new_ and, for the
+// packages given to Clazz.startTrace, the calls to each method of classes
+// that are loaded after that. (Those methods are wrapped to be counted.)
+
+var _trace = null; // {events, news, calls, packages}
+
+/**
+ * Start (or restart) a trace.
+ * 
+ * @param packages packages, each with its subpackages, whose methods are to
+ *                 have their calls counted, as an array or a string
+ *                 separated by semicolons; optional
+ */
+Clazz.startTrace = function(packages) {
+  typeof packages == "string" && (packages = packages.split(/[;,\s]+/));
+  _trace = { events: [], news: {}, calls: {}, packages: null };
+  for (var i = 0; packages && i < packages.length; i++)
+    packages[i] && (_trace.packages || (_trace.packages = [])).push(packages[i]);
+  return "use Clazz.getTrace() or J2S.saveTrace() for the results";
+};
+
+/**
+ * The trace so far, in the Chrome trace-event format; the object counts and
+ * call counts are the args of the last event, "j2s counts".
+ * 
+ * @param andStop true to stop tracing
+ */
+Clazz.getTrace = function(andStop) {
+  var events = [{ name: "process_name", ph: "M", pid: 1, tid: 1, args: { name: "SwingJS" } }];
+  if (_trace) {
+    events = events.concat(_trace.events);
+    events.push({ name: "j2s counts", cat: "j2s", ph: "i", s: "g", ts: traceNow(), pid: 1, tid: 1,
+        args: { "new": sortCounts(_trace.news), calls: sortCounts(_trace.calls) } });
+  }
+  andStop && (_trace = null);
+  return { traceEvents: events, displayTimeUnit: "ms" };
+};
+
+var traceNow = function() {
+  return window.performance.now() * 1000; // microseconds
+};
+
+var addTraceEvent = function(name, cat, ts, te, args) {
+  _trace.events.push({ name: name, cat: cat, ph: "X", ts: ts, dur: te - ts, pid: 1, tid: 1, args: args });
+};
+
+// a file fetched from t0 to t1 and run from t1 to now
+var traceLoad = function(name, file, from, t0, t1) {
+  var t2 = traceNow();
+  addTraceEvent(name, "load", t0, t2, { file: file, from: from });
+  addTraceEvent("fetch", "fetch", t0, t1);
+  addTraceEvent("evaluate", "evaluate", t1, t2);
+};
+
+var traceNew = function(cl) {
+  var s = cl.__CLASS_NAME__ || cl.__PARAMCODE;
+  _trace.news[s] = (_trace.news[s] || 0) + 1;
+};
+
+var isTracedClass = function(name) {
+  var packages = _trace.packages;
+  for (var i = packages.length; --i >= 0;) {
+    var p = packages[i];
+    if (name.indexOf(p) == 0 && (name.length == p.length || name.charAt(p.length) == "."))
+      return true;
+  }
+  return false;
+};
+
+var traceCalls = function(key, f) {
+  return function() {
+    _trace && (_trace.calls[key] = (_trace.calls[key] || 0) + 1);
+    return f.apply(this, arguments);
+  };
+};
+
+var sortCounts = function(counts) {
+  var keys = Object.keys(counts).sort(function(a, b) { return counts[b] - counts[a] || (a < b ? -1 : 1) });
+  var sorted = {};
+  for (var i = 0; i < keys.length; i++)
+    sorted[keys[i]] = counts[keys[i]];
+  return sorted;
+};
+
 ///////////////////// method creation ////////////////////////////////
 
 var doDebugger = function() { debugger }
@@ -15319,14 +15632,12 @@ var doDebugger = function() { debugger }
  var bHCOffset = 100000000000
 
 
- var setArray = function(vals, baseClass, paramType, ndims) {
-  ndims = Math.abs(ndims);
-  vals.__JSID__ = ++_jsid;
-  vals.getClass$ = function () { return arrayClass(this.__BASECLASS, this.__NDIM) };
-  vals.hashCode$ = function() {return System.identityHashCode$O(this, aHCOffset);}
-  vals.equals$O = function (a) {return this == a; } 
+ // shared by all arrays, rather than new closures for each one
+ var aGetClass = function () { return arrayClass(this.__BASECLASS, this.__NDIM) };
+ var aHashCode = function() {return System.identityHashCode$O(this, aHCOffset);}
+ var aEquals = function (a) {return this == a; } 
 
-  vals.reallyEquals$O = function (a) { 
+ var aReallyEquals = function (a) { 
     if (!a || a.__ARRAYTYPE != this.__ARRAYTYPE || a.length != this.length)
       return false;
     if (a.length == 0)
@@ -15343,8 +15654,15 @@ var doDebugger = function() { debugger }
               return false;
     }
     return true;  
-  }; 
-  
+ }; 
+
+ var setArray = function(vals, baseClass, paramType, ndims) {
+  ndims = Math.abs(ndims);
+  vals.__JSID__ = ++_jsid;
+  vals.getClass$ = aGetClass;
+  vals.hashCode$ = aHashCode;
+  vals.equals$O = aEquals;
+  vals.reallyEquals$O = aReallyEquals;
   vals.__ARRAYTYPE = paramType; // referenced in java.lang.Class
   vals.__BASECLASS = baseClass;
   vals.__NDIM = ndims;
@@ -15696,6 +16014,9 @@ var excludeSuper = function(o) {
       || o == "$classes$"
       || o == "$fields$"
       || o == "$load$"
+      || o == "$new$"
+      || o == "$supertypes$"
+      || o == "$newDefault$"
       || o == "$Class$"
       || o == "$getMembers$"
       || o == "$getAnn$"
@@ -15817,6 +16138,49 @@ var equalsOrExtendsLevel = function (clazzThis, clazzAncestor) {
 
 var knownInst = {};
 
+// The supertypes of a class -- itself, its superclasses, and all the
+// interfaces that they and their interfaces implement -- by name, for
+// Clazz.instanceOf (and so Clazz.exceptionOf and casts) to find in one
+// lookup. The map is kept, as $supertypes$ (not enumerable), on the class's
+// prototype and made when an instance is first checked, but only once the
+// class and every one of its supertypes has been through $clinit$, as the
+// superclass and interfaces are only set then. Until that time, the check
+// goes the long way each time; after it, the map cannot change, so the
+// loading of other classes does not affect it.
+
+var getSupertypes = function(obj) {
+  var s = obj.$supertypes$;
+  var name = obj.__CLASS_NAME__;
+  if (s && s.$owner$ === name)
+    return s;
+  var cl = Clazz._getDeclared(name);
+  if (!cl || cl.prototype.__CLASS_NAME__ !== name)
+    return null;
+  s = {};
+  if (!addSupertypes(s, cl))
+    return null;
+  s.$owner$ = name;
+  Object.defineProperty(cl.prototype, "$supertypes$", {value: s, writable: true, configurable: true});
+  return s;
+};
+
+var addSupertypes = function(s, cl) {
+  for (var c = cl; c; c = c.superclazz) {
+    var name = c.__CLASS_NAME__, f = c.$clinit$;
+    if (!name || f > 0 || typeof f == "function")
+      return false;
+    if (s[name] === c)
+      return true;
+    s[name] = c;
+    var impls = c.implementz;
+    if (impls)
+      for (var i = impls.length; --i >= 0;)
+        if (!addSupertypes(s, impls[i]))
+          return false;
+  }
+  return true;
+};
+
 var isInstanceOf = function (clazzTarget, clazzBase, isTgtStr, isBaseStr) {
   if (clazzTarget === clazzBase)
     return true;
@@ -16577,11 +16941,113 @@ _Loader.loadClass = _Loader.prototype.loadClass = function (name, onLoaded, forc
     return evalType(name);
 
   //System.out.println("loadClass " + name)
+  if (J2S._lazyCoreFiles && J2S._lazyCoreFiles.length) {
+    // first class not in the startup core files: one request for the rest
+    var files = J2S._lazyCoreFiles;
+    J2S._lazyCoreFiles = null;
+    for (var i = 0; i < files.length; i++)
+      Clazz.loadScript(files[i]);
+    if (Clazz._isClassDefined(name))
+      return;
+  }
   var path = _Loader.getClasspathFor(name);
   lastLoaded = name;
+  if (J2S._bundles && loadBundled(path, name))
+    return;
    Clazz.loadScript(path, name);
  }
 
+// Per-package bundles (j2s.bundle.packages in .j2s). The transpiler also writes
+// each class file of a bundled package, wrapped in a function, into
+// swingjs/j2s/_bundles/<package>.js, and lists those packages in
+// swingjs/j2s/_bundles.txt. With Info.bundles, the first class needed from a
+// listed package loads its bundle; that class and the rest of the package are
+// then run from memory, each only when it is first needed, just as
+// Clazz.loadScript would have run it.
+
+var bundledPackages = null; // package name to true until its bundle is loaded
+var bundledFiles = {};      // class file path under swingjs/j2s to its function
+
+// called by a bundle
+_Loader.addBundle = function(files) {
+  for (var file in files)
+    bundledFiles[file] = files[file];
+};
+
+var getBundledPackages = function() {
+  if (!bundledPackages) {
+    bundledPackages = {};
+    var data = null;
+    try {
+      data = J2S.getFileData(_Loader.getJ2SLibBase() + "_bundles.txt");
+    } catch (e) {
+    }
+    if (typeof data == "string" && data.indexOf("# j2s.bundle.packages") == 0) {
+      var lines = data.split("\n");
+      for (var i = 1; i < lines.length; i++) {
+        var pkg = lines[i].trim();
+        pkg && (bundledPackages[pkg] = true);
+      }
+    }
+  }
+  return bundledPackages;
+};
+
+var loadBundled = function(path, name) {
+  var base = _Loader.getJ2SLibBase();
+  if (J2S._nobundles || !base || path.indexOf(base) != 0)
+    return false;
+  var file = path.substring(base.length);
+  var pkg = file.substring(0, file.lastIndexOf("/")).replace(/\//g, ".");
+  var packages = getBundledPackages();
+  if (packages[pkg]) {
+    packages[pkg] = false;
+    var bundle = base + "_bundles/" + pkg + ".js";
+    var data = null;
+    var t0 = (_trace ? traceNow() : 0), t1;
+    try {
+      _Loader.onScriptLoading(bundle);
+      data = getCachedFileData(bundle);
+    } catch (e) {
+    }
+    t0 && (t1 = traceNow());
+    if (typeof data == "string" && data.indexOf("// j2s.bundle.packages") == 0) {
+      // a script error anywhere in a bundle only sends its classes back to
+      // Clazz.loadScript, which reports the one that is at fault
+      var quiet = Clazz._isQuietLoad, err = Clazz._lastEvalError;
+      Clazz._isQuietLoad = true;
+      try {
+        evaluate(bundle, data);
+      } finally {
+        Clazz._isQuietLoad = quiet;
+      }
+      if (Clazz._lastEvalError != err)
+        System.err.println("j2s bundle " + bundle + " could not be loaded; loading its class files separately");
+      else if (classCache)
+        cacheFileData(bundle, data);
+      t0 && _trace && traceLoad("bundle " + pkg, bundle, fetchedFrom, t0, t1);
+    }
+  }
+  var f = bundledFiles[file];
+  if (!f)
+    return false;
+  delete bundledFiles[file];
+  Clazz.currentPath = path;
+  _Loader.onScriptLoading(path);
+  var t0 = (_trace ? traceNow() : 0);
+  try {
+    f();
+    t0 && _trace && traceLoad(name, path, "bundle", t0, t0);
+    Clazz.ClassFilesLoaded.push(name.replace(/\./g,"/") + ".js");
+    _Loader.onScriptLoaded(path, null, "");
+  } catch (e) {
+    _Loader.onScriptLoaded(path, e, "");
+    alert(e + " loading file " + path + " from its bundle\n\n" + e.stack);
+    doDebugger();
+  }
+  return true;
+};
+
 /* private */
 _Loader.loadPackage = function(pkg, fSuccess) {
   fSuccess || (fSuccess = null);
@@ -16798,6 +17264,274 @@ Clazz._4Name = function(clazzName, applet, state, asClazz, initialize, isQuiet)
 // BH: possibly useful for debugging
 Clazz.currentPath= "";
 
+// Prefetching (Info.prefetch). Each class file lists the classes it uses in
+// its I$=[[0,...]] header. After a class file is run, those of its classes
+// not yet defined, and not in a package bundle, are requested asynchronously,
+// all at once, and their text is kept here until Clazz.loadScript needs it,
+// so that the synchronous load finds it in memory instead of waiting on the
+// server. Only one level is fetched ahead -- the classes used by classes that
+// have actually been loaded -- and the rest of the loader is not changed: a
+// class that is needed before its text has arrived is simply loaded
+// synchronously, as before, and the late text is then discarded.
+
+var prefetched = {}; // class file path to true while pending, then its text
+
+_Loader.prefetchStats = { requested: 0, used: 0 };
+
+var prefetchIncludes = function(data) {
+  var i = data.indexOf("I$=[[0,");
+  var j = (i < 0 ? -1 : data.indexOf("]],I$0=", i));
+  if (j < 0)
+    return;
+  var names = data.substring(i + 7, j).match(/'[^'.][^']*\.[^']*'/g);
+  if (!names)
+    return;
+  var packages = (J2S._bundles && !J2S._nobundles ? getBundledPackages() : null);
+  for (var k = 0; k < names.length; k++) {
+    var name = names[k].substring(1, names[k].length - 1);
+    if (Clazz._isClassDefined(name))
+      continue;
+    var path = _Loader.getClasspathFor(name);
+    var file = name.replace(/\./g, "/") + ".js";
+    var key = getClassCacheKey(path);
+    if (prefetched[path] || path.substring(path.length - file.length) != file
+        || packages && packages[name.substring(0, name.lastIndexOf("."))] != null
+        || key && classCache.texts[key])
+      continue;
+    prefetched[path] = true;
+    _Loader.prefetchStats.requested++;
+    prefetch(path);
+  }
+};
+
+var prefetch = function(path) {
+  J2S.getFileData(path, function(data) {
+    if (prefetched[path] !== true)
+      return;
+    if (typeof data == "string" && data.indexOf("(function(){") == 0)
+      prefetched[path] = data;
+    else
+      delete prefetched[path];
+  }, false, {dataType: "text"});
+};
+
+// Persistent class cache (Info.classCache). The j2s-manifest.txt that the
+// transpiler writes with j2s.gzip gives the SHA-256 digest of every file
+// under swingjs/j2s. Class files, core files, and package bundles, once run,
+// are kept in a persistent store -- IndexedDB in the browser -- keyed by
+// that digest, so a file is taken from the store only while the manifest
+// still lists it with the same content; a file that has changed just has a
+// new key. Before the first class is loaded (see _Loader.openClassCache),
+// the stored keys are listed, those the manifest no longer lists are deleted
+// unread, and the texts of the rest are read. After that, a file found there
+// is run without a request to the server, and one that was not is stored after
+// it has run -- but only if its own SHA-256 digest is the key, so that a stale
+// or truncated response is never kept as current. The digest needs
+// crypto.subtle, which browsers give only to https and localhost pages;
+// elsewhere nothing is stored.
+//
+// A store is any object with
+//
+//   keys(fDone)        calls fDone with an array of the stored keys
+//   get(keys, fDone)   calls fDone with a map of key to text for those keys
+//   put(key, text)
+//   remove(key)
+//
+// where put and remove need not have finished when they return.
+
+var classCache = null; // {storage, digests, texts, keys}
+
+_Loader.classCacheStats = { hits: 0, stored: 0, removed: 0, rejected: 0 };
+
+/**
+ * Read the manifest and the persistent store, then call fWhenReady; the
+ * cache is not used if there is no manifest or no store.
+ * 
+ * @param storage  the store, or null for IndexedDB
+ * @param manifest the manifest URL, or null for swingjs/j2s-manifest.txt
+ * @param fWhenReady
+ */
+_Loader.openClassCache = function(storage, manifest, fWhenReady) {
+  storage || (storage = _Loader.getIndexedDBStorage("j2s-classes"));
+  manifest || (manifest = _Loader.getJ2SLibBase() + "../j2s-manifest.txt");
+  var done = function(msg) {
+    msg && System.err.println("j2s class cache not used: " + msg);
+    fWhenReady && fWhenReady();
+  };
+  if (!storage)
+    return done("no persistent storage");
+  J2S.getFileData(manifest, function(data) {
+    if (typeof data != "string" || data.indexOf("# j2s.gzip") != 0)
+      return done("no manifest at " + manifest);
+    // path under swingjs/j2s to digest
+    var digests = {};
+    var current = {};
+    var lines = data.split("\n");
+    for (var i = 1; i < lines.length; i++) {
+      var fields = lines[i].split("\t");
+      if (fields.length == 4 && fields[0].indexOf("swingjs/j2s/") == 0) {
+        digests[fields[0].substring(12)] = fields[3];
+        current[fields[3]] = true;
+      }
+    }
+    storage.keys(function(stored) {
+      var wanted = [];
+      for (var i = 0; i < stored.length; i++) {
+        if (current[stored[i]]) {
+          wanted.push(stored[i]);
+        } else {
+          storage.remove(stored[i]);
+          _Loader.classCacheStats.removed++;
+        }
+      }
+      storage.get(wanted, function(texts) {
+        var keys = {};
+        for (var key in texts)
+          keys[key] = true;
+        classCache = { storage: storage, digests: digests, texts: texts, keys: keys };
+        done();
+      });
+    });
+  }, false, {dataType: "text"});
+};
+
+var getClassCacheKey = function(file) {
+  var base = (classCache ? _Loader.getJ2SLibBase() : null);
+  return (base && file.indexOf(base) == 0 ? classCache.digests[file.substring(base.length)] : null);
+};
+
+var fetchedFrom = null; // for the trace
+
+var getCachedFileData = function(file) {
+  var key = getClassCacheKey(file);
+  var data = (key ? classCache.texts[key] : null);
+  fetchedFrom = (data ? "cache" : "server");
+  if (!data)
+    return J2S.getFileData(file);
+  // only needed once
+  delete classCache.texts[key];
+  _Loader.classCacheStats.hits++;
+  return data;
+};
+
+var cacheFileData = function(file, data) {
+  var key = getClassCacheKey(file);
+  if (!key || classCache.keys[key])
+    return;
+  classCache.keys[key] = true;
+  var storage = classCache.storage;
+  getDigest(data, function(digest) {
+    if (digest == key) {
+      storage.put(key, data);
+      _Loader.classCacheStats.stored++;
+    } else {
+      _Loader.classCacheStats.rejected++;
+    }
+  });
+};
+
+/**
+ * The SHA-256 digest of a text's UTF-8 bytes, as the manifest gives it.
+ * 
+ * @param text
+ * @param fDone called with sha256-<base64>, or null if there is no crypto.subtle
+ */
+var getDigest = function(text, fDone) {
+  var subtle = (self.crypto && self.TextEncoder ? self.crypto.subtle : null);
+  if (!subtle)
+    return fDone(null);
+  subtle.digest("SHA-256", new TextEncoder().encode(text)).then(function(buf) {
+    var bytes = new Uint8Array(buf), s = "";
+    for (var i = 0; i < bytes.length; i++)
+      s += String.fromCharCode(bytes[i]);
+    fDone("sha256-" + btoa(s));
+  }, function() {
+    fDone(null);
+  });
+};
+
+/**
+ * An IndexedDB store for _Loader.openClassCache.
+ * 
+ * @param name the database name
+ * @return the store, or null if there is no IndexedDB
+ */
+_Loader.getIndexedDBStorage = function(name) {
+  if (!self.indexedDB)
+    return null;
+  var db = null;
+  var objectStore = function(mode) {
+    return db.transaction("classes", mode).objectStore("classes");
+  };
+  return {
+    keys: function(fDone) {
+      var keys = [];
+      var done = function() {
+        keys && fDone(keys);
+        keys = null;
+      };
+      try {
+        var req = indexedDB.open(name, 1);
+        req.onupgradeneeded = function() {
+          req.result.createObjectStore("classes");
+        };
+        req.onerror = req.onblocked = done;
+        req.onsuccess = function() {
+          db = req.result;
+          var cursor = objectStore("readonly").openKeyCursor();
+          cursor.onsuccess = function() {
+            var c = cursor.result;
+            if (!c)
+              return done();
+            keys && keys.push(c.key);
+            c["continue"]();
+          };
+          cursor.onerror = done;
+        };
+      } catch (e) {
+        done();
+      }
+    },
+    get: function(keys, fDone) {
+      var texts = {}, n = keys.length;
+      var done = function() {
+        texts && fDone(texts);
+        texts = null;
+      };
+      if (!db || n == 0)
+        return done();
+      try {
+        var store = objectStore("readonly");
+        for (var i = 0; i < keys.length; i++) {
+          (function(key) {
+            var req = store.get(key);
+            req.onsuccess = function() {
+              texts && typeof req.result == "string" && (texts[key] = req.result);
+              --n == 0 && done();
+            };
+            req.onerror = function() {
+              --n == 0 && done();
+            };
+          })(keys[i]);
+        }
+      } catch (e) {
+        done();
+      }
+    },
+    put: function(key, text) {
+      try {
+        db && objectStore("readwrite").put(text, key);
+      } catch (e) {
+      }
+    },
+    remove: function(key) {
+      try {
+        db && objectStore("readwrite")["delete"](key);
+      } catch (e) {
+      }
+    }
+  };
+};
 
 Clazz.loadScript = function(file, nameForList) {
 
@@ -16810,11 +17544,23 @@ Clazz.loadScript = function(file, nameForList) {
   if (J2S._nozcore) {
     file = file.replace(/\.z\.js/,".js");
   }
-  var data = "";
+  var data = prefetched[file];
+  delete prefetched[file];
+  if (typeof data == "string")
+    _Loader.prefetchStats.used++;
+  else
+    data = "";
+  var t0 = (_trace ? traceNow() : 0), t1;
+  fetchedFrom = "prefetch";
   try{
     _Loader.onScriptLoading(file);
-    data = J2S.getFileData(file);
+    data || (data = getCachedFileData(file));
+    t0 && (t1 = traceNow());
     evaluate(file, data);
+    t0 && _trace && traceLoad(nameForList || file, file, fetchedFrom, t0, t1);
+    classCache && cacheFileData(file, data);
+    if (nameForList && J2S._prefetch && !J2S._noprefetch)
+      prefetchIncludes(data);
     if (nameForList)
     	Clazz.ClassFilesLoaded.push(nameForList.replace(/\./g,"/") + ".js");
     _Loader.onScriptLoaded(file, null, data);
@@ -17828,6 +18574,18 @@ Clazz.incrAN = function(A,i,n,isPost) {
 	return (isPost ? v : A[i]);
 }
 
+// for (x : list), where list is an ArrayList or a Vector (see Java2ScriptVisitor):
+// if the list uses that class's own iterator, the loop indexes list.elementData
+// as the iterator would, and this returns list.modCount for it to check;
+// otherwise this returns list.iterator$(). With no arguments, the loop has found
+// a modification; throw as the iterator would.
+Clazz.forList = function(list, isVector) {
+	if (list === undefined)
+		throw Clazz.new_(Clazz.load("java.util.ConcurrentModificationException"));
+	return (list.iterator$ === (isVector ? java.util.Vector : java.util.ArrayList).prototype.iterator$
+		? list.modCount : list.iterator$());
+}
+
 Clazz._setDeclared("java.lang.Integer", java.lang.Integer=Integer=function(){
 if (arguments[0] === null || typeof arguments[0] != "object")this.c$(arguments[0]);
 });
@@ -18842,7 +19600,7 @@ Long.$mod=function(a,n){
 		return a%n;
 	}
 	// a mod n = a - (a/n)*n
-	return Long.sub(a,Long.mul(Long.div(a,n),n));
+	return Long.$sub(a,Long.$mul(Long.$div(a,n),n));
 }
 
 var doLong = function(f,args) {
@@ -18891,6 +19649,431 @@ var fromLongRLH = function(rlh) {
 	return checkLong([r,m, !r&&!m ? 0 : isNeg ? -1 : 1]);
 }
 
+// 64-bit long methods using int32 pairs (J2S._longBackend = "i32", or ?j2slong=i32)
+//
+// The RMS methods above convert their operands and intermediate values to new
+// [r,m,s] and [r,l,h] arrays. These instead load each operand into the scratch
+// variables ah/al and bh/bl as a two's-complement pair of int32s and work on those,
+// so that the only allocation is for a result beyond +/-2^53, which must be an
+// RMS array. Any other result is a number. Shifts mask their distance by 63, as
+// in Java, and division and remainder are done bitwise. Use
+// Clazz._setLongBackend("i32"|"rms") to switch, for example to compare the two.
+
+var T32 = 4294967296;
+var T52 = 4503599627370496;
+var ah = 0, al = 0, bh = 0, bl = 0, rh = 0, rl = 0;
+
+var setA = function(a) {
+	if (a.length) {
+		(a[0] < 0 || a[0] >= MAXR) && checkLong(a);
+		var m = a[1];
+		al = a[0] | ((m & 0xFF) << 24);
+		ah = (m / 256) | 0;
+		if (a[2] < 0) {
+			al = -al | 0;
+			ah = (al == 0 ? -ah : ~ah) | 0;
+		}
+	} else {
+		al = a | 0;
+		ah = Math.floor(a / T32) | 0;
+	}
+}
+
+var setB = function(b) {
+	if (b.length) {
+		(b[0] < 0 || b[0] >= MAXR) && checkLong(b);
+		var m = b[1];
+		bl = b[0] | ((m & 0xFF) << 24);
+		bh = (m / 256) | 0;
+		if (b[2] < 0) {
+			bl = -bl | 0;
+			bh = (bl == 0 ? -bh : ~bh) | 0;
+		}
+	} else {
+		bl = b | 0;
+		bh = Math.floor(b / T32) | 0;
+	}
+}
+
+var negB = function() {
+	bl = -bl | 0;
+	bh = (bl == 0 ? -bh : ~bh) | 0;
+}
+
+// rh/rl as a number if within +/-2^53, or as an RMS array
+var getR = function() {
+	if (rh >= -0x200000 && rh < 0x200000 && (rh != -0x200000 || rl != 0))
+		return rh * T32 + (rl >>> 0);
+	var h = rh, l = rl, s = 1;
+	if (h < 0) {
+		l = -l | 0;
+		h = (l == 0 ? -h : ~h) | 0;
+		s = -1;
+	}
+	l >>>= 0;
+	return [l & RMASK, (h >>> 0) * 256 + (l >>> 24), s];
+}
+
+var addABR = function() {
+	var lo = (al >>> 0) + (bl >>> 0);
+	rh = (ah + bh + (lo >= T32 ? 1 : 0)) | 0;
+	rl = lo | 0;
+}
+
+// as in Closure Library's goog.math.Long, in 16-bit chunks
+var mulABR = function() {
+	var a48 = ah >>> 16, a32 = ah & 0xFFFF, a16 = al >>> 16, a00 = al & 0xFFFF;
+	var b48 = bh >>> 16, b32 = bh & 0xFFFF, b16 = bl >>> 16, b00 = bl & 0xFFFF;
+	var c48 = 0, c32 = 0, c16 = 0, c00 = 0;
+	c00 += a00 * b00;
+	c16 += c00 >>> 16;
+	c00 &= 0xFFFF;
+	c16 += a16 * b00;
+	c32 += c16 >>> 16;
+	c16 &= 0xFFFF;
+	c16 += a00 * b16;
+	c32 += c16 >>> 16;
+	c16 &= 0xFFFF;
+	c32 += a32 * b00;
+	c48 += c32 >>> 16;
+	c32 &= 0xFFFF;
+	c32 += a16 * b16;
+	c48 += c32 >>> 16;
+	c32 &= 0xFFFF;
+	c32 += a00 * b32;
+	c48 += c32 >>> 16;
+	c32 &= 0xFFFF;
+	c48 += a48 * b00 + a32 * b16 + a16 * b32 + a00 * b48;
+	c48 &= 0xFFFF;
+	rh = (c48 << 16) | c32;
+	rl = (c16 << 16) | c00;
+}
+
+// quotient to rh/rl or remainder to rh/rl, truncating toward zero
+var divABR = function(isMod) {
+	if (bh == 0 && bl == 0)
+		arex("/ by zero");
+	var isNegA = (ah < 0), isNegB = (bh < 0);
+	if (isNegA) {
+		al = -al | 0;
+		ah = (al == 0 ? -ah : ~ah) | 0;
+	}
+	isNegB && negB();
+	// unsigned long division, one bit at a time
+	var qh = 0, ql = 0, mh = 0, ml = 0, lo;
+	for (var i = (ah ? 63 - Math.clz32(ah) : 31 - Math.clz32(al)); i >= 0; i--) {
+		mh = (mh << 1) | (ml >>> 31);
+		ml = (ml << 1) | ((i >= 32 ? ah >>> (i - 32) : al >>> i) & 1);
+		if ((mh >>> 0) > (bh >>> 0) || mh == bh && (ml >>> 0) >= (bl >>> 0)) {
+			lo = (ml >>> 0) - (bl >>> 0);
+			mh = (mh - bh - (lo < 0 ? 1 : 0)) | 0;
+			ml = lo | 0;
+			i >= 32 ? (qh |= 1 << (i - 32)) : (ql |= 1 << i);
+		}
+	}
+	if (isMod) {
+		rh = mh;
+		rl = ml;
+		isNegA && (rl = -rl | 0, rh = (rl == 0 ? -rh : ~rh) | 0);
+	} else {
+		rh = qh;
+		rl = ql;
+		isNegA != isNegB && (rl = -rl | 0, rh = (rl == 0 ? -rh : ~rh) | 0);
+	}
+}
+
+var cmpABR = function(unsigned) {
+	if (ah != bh)
+		return (unsigned ? (ah >>> 0) < (bh >>> 0) : ah < bh) ? -1 : 1;
+	return (al == bl ? 0 : (al >>> 0) < (bl >>> 0) ? -1 : 1);
+}
+
+var shiftR = function(a, n, type) {
+	n = (n.length ? Long.$ival(n) : n) & 63;
+	if (n == 0)
+		return a;
+	if (!a.length) {
+		switch (type) {
+		case 0: // <<
+			if (n < 53) {
+				var c = a * Math.pow(2, n);
+				if (c >= -JSSAFE && c <= JSSAFE)
+					return c;
+			}
+			break;
+		case 1: // >>
+			if (a == (a | 0))
+				return (n < 32 ? a >> n : a < 0 ? -1 : 0);
+			break;
+		case 2: // >>>
+			if (a >= 0 && a == (a | 0))
+				return (n < 32 ? a >> n : 0);
+			break;
+		}
+	}
+	setA(a);
+	switch (type) {
+	case 0:
+		if (n < 32) {
+			rh = (ah << n) | (al >>> (32 - n));
+			rl = al << n;
+		} else {
+			rh = al << (n - 32);
+			rl = 0;
+		}
+		break;
+	case 1:
+		if (n < 32) {
+			rl = (al >>> n) | (ah << (32 - n));
+			rh = ah >> n;
+		} else {
+			rl = ah >> (n - 32);
+			rh = ah >> 31;
+		}
+		break;
+	case 2:
+		if (n < 32) {
+			rl = (al >>> n) | (ah << (32 - n));
+			rh = (ah >>> n) | 0;
+		} else {
+			rl = (ah >>> (n - 32)) | 0;
+			rh = 0;
+		}
+		break;
+	}
+	return getR();
+}
+
+var DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+var longI32 = {
+	$add: function(a, b) {
+		if (arguments.length > 2)
+			return doLong(Long.$add, arguments);
+		if (!a.length && !b.length) {
+			var r = a + b;
+			if (r >= -JSSAFE && r <= JSSAFE)
+				return r;
+		}
+		setA(a);
+		setB(b);
+		addABR();
+		return getR();
+	},
+	$sub: function(a, b) {
+		if (arguments.length > 2)
+			return doLong(Long.$sub, arguments);
+		if (!a.length && !b.length) {
+			var r = a - b;
+			if (r >= -JSSAFE && r <= JSSAFE)
+				return r;
+		}
+		setA(a);
+		setB(b);
+		negB();
+		addABR();
+		return getR();
+	},
+	$inc: function(x, n) {
+		return Long.$add(x, n);
+	},
+	$neg: function(a) {
+		if (!a.length)
+			return -a;
+		setA(0);
+		setB(a);
+		negB();
+		addABR();
+		return getR();
+	},
+	$not: function(a) {
+		if (!a.length)
+			return -a - 1;
+		setA(a);
+		rh = ~ah;
+		rl = ~al;
+		return getR();
+	},
+	$mul: function(a, b) {
+		if (arguments.length > 2)
+			return doLong(Long.$mul, arguments);
+		if (!a.length && !b.length) {
+			var r = a * b;
+			if (r >= -JSSAFE && r <= JSSAFE)
+				return r;
+		}
+		setA(a);
+		setB(b);
+		mulABR();
+		return getR();
+	},
+	$div: function(a, b) {
+		if (arguments.length > 2)
+			return doLong(Long.$div, arguments);
+		if (!a.length && !b.length && a >= -T52 && a <= T52) {
+			if (b == 0)
+				arex("/ by zero");
+			return (a/b) - (a/b)%1;
+		}
+		setA(a);
+		setB(b);
+		divABR(false);
+		return getR();
+	},
+	$mod: function(a, b) {
+		if (arguments.length > 2)
+			return doLong(Long.$mod, arguments);
+		if (!a.length && !b.length) {
+			if (b == 0)
+				arex("/ by zero");
+			return a%b;
+		}
+		setA(a);
+		setB(b);
+		divABR(true);
+		return getR();
+	},
+	$and: function(a, b) {
+		if (arguments.length > 2)
+			return doLong(Long.$and, arguments);
+		if (!a.length && !b.length && a == (a | 0) && b == (b | 0))
+			return a & b;
+		setA(a);
+		setB(b);
+		rh = ah & bh;
+		rl = al & bl;
+		return getR();
+	},
+	$or: function(a, b) {
+		if (arguments.length > 2)
+			return doLong(Long.$or, arguments);
+		if (!a.length && !b.length && a == (a | 0) && b == (b | 0))
+			return a | b;
+		setA(a);
+		setB(b);
+		rh = ah | bh;
+		rl = al | bl;
+		return getR();
+	},
+	$xor: function(a, b) {
+		if (arguments.length > 2)
+			return doLong(Long.$xor, arguments);
+		if (!a.length && !b.length && a == (a | 0) && b == (b | 0))
+			return a ^ b;
+		setA(a);
+		setB(b);
+		rh = ah ^ bh;
+		rl = al ^ bl;
+		return getR();
+	},
+	$sl: function(a, n) {
+		if (arguments.length > 2)
+			return doLong(Long.$sl, arguments);
+		return shiftR(a, n, 0);
+	},
+	$sr: function(a, n) {
+		if (arguments.length > 2)
+			return doLong(Long.$sr, arguments);
+		return shiftR(a, n, 1);
+	},
+	$usr: function(a, n) {
+		if (arguments.length > 2)
+			return doLong(Long.$usr, arguments);
+		return shiftR(a, n, 2);
+	},
+	$cmp: function(a, b, unsigned) {
+		if (!a.length && !b.length && (!unsigned || a >= 0 && b >= 0))
+			return (a < b ? -1 : a > b ? 1 : 0);
+		setA(a);
+		setB(b);
+		return cmpABR(unsigned);
+	},
+	$eq: function(a, b) {
+		if (!a.length && !b.length)
+			return a == b;
+		setA(a);
+		setB(b);
+		return ah == bh && al == bl;
+	},
+	$ne: function(a, b) {
+		if (!a.length && !b.length)
+			return a != b;
+		setA(a);
+		setB(b);
+		return ah != bh || al != bl;
+	},
+	$lt: function(a, b) {
+		if (!a.length && !b.length)
+			return a < b;
+		setA(a);
+		setB(b);
+		return cmpABR() < 0;
+	},
+	$le: function(a, b) {
+		if (!a.length && !b.length)
+			return a <= b;
+		setA(a);
+		setB(b);
+		return cmpABR() <= 0;
+	},
+	$gt: function(a, b) {
+		if (!a.length && !b.length)
+			return a > b;
+		setA(a);
+		setB(b);
+		return cmpABR() > 0;
+	},
+	$ge: function(a, b) {
+		if (!a.length && !b.length)
+			return a >= b;
+		setA(a);
+		setB(b);
+		return cmpABR() >= 0;
+	},
+	$s: function(a, radix, unsigned) {
+		radix || (radix = 10);
+		if (!a.length && (a >= 0 || !unsigned))
+			return (radix == 10 ? "" + a : a.toString(radix));
+		if (radix == 10 && !unsigned)
+			return longRMS.$s(a);
+		setA(a);
+		var isNeg = (!unsigned && ah < 0);
+		if (isNeg) {
+			al = -al | 0;
+			ah = (al == 0 ? -ah : ~ah) | 0;
+		}
+		// digits of the unsigned hi:lo, dividing it by radix in two parts
+		var h = ah >>> 0, l = al >>> 0, s = "", x, d;
+		do {
+			d = h % radix;
+			h = (h - d) / radix;
+			x = d * T32 + l;
+			d = x % radix;
+			l = (x - d) / radix;
+			s = DIGITS.charAt(d) + s;
+		} while (h || l);
+		return (isNeg ? "-" + s : s);
+	}
+};
+
+var longRMS = (function() {
+	var fs = {};
+	for (var f in longI32)
+		fs[f] = Long[f];
+	return fs;
+})();
+
+Clazz._longBackend = "rms";
+
+Clazz._setLongBackend = function(name) {
+	var fs = (name == "i32" ? longI32 : longRMS);
+	for (var f in fs)
+		Long[f] = fs[f];
+	Clazz._longBackend = (name == "i32" ? name : "rms");
+}
+
+J2S._longBackend && Clazz._setLongBackend(J2S._longBackend);
+
 //Long.TYPE=Long.prototype.TYPE=Long;
 //Note that the largest usable "Long" in JavaScript is 53 digits:
 
@@ -21704,7 +22887,7 @@ if (typeof(SwingJS) == "undefined") {
 	
 	proto._addCoreFiles = function() {
 		if (this.__Info.core != "NONE" && this.__Info.core != "none" && !J2S._debugCode)
-			J2S._addCoreFile((this.__Info.core || "swingjs"), this._j2sPath, this.__Info.preloadCore);
+			J2S._addCoreFile((this.__Info.core || "swingjs"), this._j2sPath, this.__Info.preloadCore, this.__Info.lazyCore);
 //		if (J2S._debugCode) {
 //		// no min package for that
 //			J2S._addExec([this, null, "swingjs.JSAppletViewer", "load " + this.__Info.code]);
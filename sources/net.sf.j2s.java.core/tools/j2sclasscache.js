@@ -0,0 +1,189 @@
+// j2sclasscache.js
+//
+// Checks the persistent class cache of j2sClazz.js (Info.classCache; see
+// _Loader.openClassCache) in Node.js, with a fake store -- a JSON file --
+// in place of the browser's IndexedDB. The site must have been built with
+// j2s.gzip=true, for its swingjs/j2s-manifest.txt.
+//
+// The main class is run four times, each in a new Node.js process, as for
+// four page loads:
+//
+//   bad     with an empty store, and one file from the site changed, as a
+//           stale or truncated response would be: that file is not stored,
+//           since its digest is not the manifest's; the store is then emptied
+//   cold    with an empty store: every file comes from the site and is stored
+//   warm    every file comes from the store, and none from the site
+//   stale   as warm, but with one stored entry under a digest the manifest
+//           no longer lists, as after a rebuild: that entry is deleted unread
+//           and its file comes from the site again
+//
+// The output of the runs must be the same.
+//
+// usage:
+//
+//   node tools/j2sclasscache.js -site site -main my.App [-args "..."] [-store file]
+//
+//   -site     the site directory holding swingjs/j2s (default site)
+//   -main     the class whose main(String[]) is run
+//   -args     arguments for main()
+//   -store    the fake store (default j2sclasscache.json in the system
+//             temporary directory); it is deleted first
+
+var fs = require("fs");
+var os = require("os");
+var path = require("path");
+var child_process = require("child_process");
+var j2snode = require("./j2snode.js");
+
+var opts = { site: "site", args: "", store: path.join(os.tmpdir(), "j2sclasscache.json"), run: false,
+	bad: false };
+
+var usage = function(msg) {
+	msg && console.error(msg);
+	console.error("usage: node j2sclasscache.js -site site -main my.App [-args \"...\"] [-store file]");
+	process.exit(2);
+};
+
+var argv = process.argv.slice(2);
+for (var i = 0; i < argv.length; i++) {
+	var key = argv[i];
+	switch (key) {
+	case "-run":
+		opts.run = true;
+		break;
+	case "-bad":
+		opts.bad = true;
+		break;
+	case "-site":
+	case "-main":
+	case "-args":
+	case "-store":
+		if (i + 1 >= argv.length)
+			usage("missing value for " + key);
+		opts[key.substring(1)] = argv[++i];
+		break;
+	default:
+		usage("unknown option " + key);
+	}
+}
+opts.main || usage("no -main class");
+
+// the fake store: read when the cache is opened, written when the process
+// exits; the number of texts read is kept for the check that only current
+// ones are
+var fileStorage = function(file) {
+	var texts = {};
+	process.on("exit", function() {
+		fs.writeFileSync(file, JSON.stringify(texts));
+	});
+	return {
+		nRead: 0,
+		keys: function(fDone) {
+			fs.readFile(file, "utf8", function(err, data) {
+				texts = (err ? {} : JSON.parse(data));
+				fDone(Object.keys(texts));
+			});
+		},
+		get: function(keys, fDone) {
+			var ret = {};
+			for (var i = 0; i < keys.length; i++)
+				if (texts[keys[i]] != null) {
+					ret[keys[i]] = texts[keys[i]];
+					this.nRead++;
+				}
+			setTimeout(function() {
+				fDone(ret);
+			}, 0);
+		},
+		put: function(key, text) {
+			texts[key] = text;
+		},
+		remove: function(key) {
+			delete texts[key];
+		}
+	};
+};
+
+if (opts.run) {
+	// one page load; the last line of output is the counts
+	var Clazz = j2snode.load({ site: opts.site });
+	var reads = 0;
+	var getFileData = J2S.getFileData;
+	var changed = null;
+	J2S.getFileData = function(fileName, fWhenDone) {
+		if (fWhenDone)
+			return getFileData.apply(J2S, arguments);
+		reads++;
+		var data = getFileData.apply(J2S, arguments);
+		if (opts.bad && !changed && /\/j2s\/.*\.js$/.test(fileName) && typeof data == "string") {
+			changed = fileName;
+			data += "\n// changed";
+		}
+		return data;
+	};
+	var storage = fileStorage(opts.store);
+	Clazz._Loader.openClassCache(storage, null, function() {
+		j2snode.runMain(Clazz, opts.main, opts.args ? opts.args.split(" ") : []);
+		// files are stored once their digests are checked, which is asynchronous
+		process.on("exit", function() {
+			var stats = Clazz._Loader.classCacheStats;
+			console.log("j2sclasscache: site " + reads + " hits " + stats.hits + " stored " + stats.stored
+				+ " removed " + stats.removed + " rejected " + stats.rejected + " read " + storage.nRead);
+		});
+	});
+	return;
+}
+
+var run = function(name, bad) {
+	var args = [ __filename, "-run", "-site", opts.site, "-main", opts.main, "-args", opts.args, "-store", opts.store ];
+	bad && args.push("-bad");
+	var out = child_process.execFileSync(process.execPath, args, { encoding: "utf8" }).split("\n");
+	while (out.length && !out[out.length - 1])
+		out.pop();
+	var counts = out.pop().split(" ");
+	var ret = { output: out.join("\n") };
+	for (var i = 1; i < counts.length; i += 2)
+		ret[counts[i]] = +counts[i + 1];
+	console.log((name + "       ").substring(0, 7) + " from site " + ret.site + ", from store " + ret.hits
+		+ ", stored " + ret.stored + ", removed " + ret.removed + ", rejected " + ret.rejected);
+	return ret;
+};
+
+var failed = false;
+var check = function(ok, msg) {
+	if (!ok) {
+		console.error("j2sclasscache: FAILED: " + msg);
+		failed = true;
+	}
+};
+
+fs.existsSync(opts.store) && fs.unlinkSync(opts.store);
+var bad = run("bad", true);
+check(bad.rejected == 1, "the changed file was not rejected");
+
+fs.unlinkSync(opts.store);
+var cold = run("cold");
+check(cold.stored > 0, "nothing was stored");
+check(cold.hits == 0, "the empty store had files");
+check(cold.rejected == 0, "a file from the site was rejected");
+check(bad.stored == cold.stored - 1, "the changed file was stored");
+
+var warm = run("warm");
+check(warm.hits == cold.stored, "not every stored file was used");
+check(warm.stored == 0 && warm.removed == 0, "the store was changed");
+check(warm.site < cold.site, "no fewer files came from the site");
+check(warm.output == cold.output, "the output differs");
+
+var texts = JSON.parse(fs.readFileSync(opts.store, "utf8"));
+var keys = Object.keys(texts);
+texts["sha256-stale"] = texts[keys[keys.length - 1]];
+delete texts[keys[keys.length - 1]];
+fs.writeFileSync(opts.store, JSON.stringify(texts));
+var stale = run("stale");
+check(stale.removed == 1 && stale.stored == 1, "the stale entry was not replaced");
+check(stale.hits == cold.stored - 1, "the other stored files were not used");
+check(stale.read == cold.stored - 1, "the stale entry was read");
+check(stale.output == cold.output, "the output differs");
+
+console.log(failed ? "j2sclasscache: FAILED" : "j2sclasscache: OK");
+process.exit(failed ? 1 : 0);
@@ -0,0 +1,155 @@
+// j2scorebundle.js
+//
+// Builds an app-specific core bundle from the order in which the class loader
+// actually loads classes, in place of the hand-maintained _j2sclasslist.txt.
+//
+// The app's main class is run headlessly in Node.js (see j2snode.js) and
+// Clazz.ClassFilesLoaded, which records each class file as Clazz.loadScript
+// loads it, gives the list in load order. With -tiers, classes loaded
+// before main() returns form the startup bundle and those loaded afterward,
+// within -wait ms, form a second bundle that the page loads only when the
+// first of them is needed. java.lang.Thread and Swing timers need the display
+// toolkit, which does not run headlessly, so in practice these are classes
+// loaded by JavaScript timers and callbacks; use -include for the rest.
+//
+// usage:
+//
+//   node tools/j2scorebundle.js -site site -main my.App -name myapp
+//        [-args "arg1 arg2"] [-wait ms] [-tiers] [-include list.txt] [-core swingjs]
+//
+//   -site     the site directory holding swingjs/j2s (default site)
+//   -main     the class whose main(String[]) is run
+//   -name     the bundle name: writes _j2sclasslist_<name>.txt here and
+//             <site>/swingjs/j2s/core/core<name>.js, and with -tiers also
+//             _j2sclasslist_<name>_lazy.txt and core<name>_lazy.js
+//   -args     arguments for main()
+//   -wait     time to wait after main() returns (default 1000)
+//   -tiers    split off the classes loaded after main() returns
+//   -include  a class list, such as _j2sclasslist.txt, to add to the startup
+//             bundle after the recorded classes -- for example, classes only
+//             needed with a display, which a headless run never loads
+//   -core     existing core bundle(s) to load first; only classes not in them
+//             are recorded, and the result is an add-on to them
+//
+// The bundles are made as build-core-applet.xml makes coreswingjs.js, except
+// that only the Clazz methods that coretop2.js passes in as Clazz_xxx are
+// renamed, so that other uses of Clazz in app code still work. Run its
+// app-core target with -Dapp.name=<name> to compress them with Closure
+// Compiler to core<name>.z.js, which the page loads. Then use
+//
+//   Info.core: "<name>",  Info.lazyCore: "<name>_lazy"
+//
+// or, with -core swingjs,
+//
+//   Info.core: "swingjs", Info.preloadCore: "<name>",  Info.lazyCore: "<name>_lazy"
+//
+// Without compression, add ?j2snozcore to the page URL to load the .js files.
+
+var fs = require("fs");
+var path = require("path");
+var j2snode = require("./j2snode.js");
+
+var opts = { site: "site", args: "", wait: 1000, tiers: false, include: null, core: null };
+
+var usage = function(msg) {
+	msg && console.error(msg);
+	console.error("usage: node j2scorebundle.js -site site -main my.App -name myapp"
+		+ " [-args \"...\"] [-wait ms] [-tiers] [-include list.txt] [-core swingjs]");
+	process.exit(2);
+};
+
+var argv = process.argv.slice(2);
+for (var i = 0; i < argv.length; i++) {
+	var key = argv[i];
+	switch (key) {
+	case "-tiers":
+		opts.tiers = true;
+		break;
+	case "-site":
+	case "-main":
+	case "-name":
+	case "-args":
+	case "-wait":
+	case "-include":
+	case "-core":
+		if (i + 1 >= argv.length)
+			usage("missing value for " + key);
+		opts[key.substring(1)] = argv[++i];
+		break;
+	default:
+		usage("unknown option " + key);
+	}
+}
+if (!opts.main || !opts.name)
+	usage();
+
+var j2sDir = path.join(opts.site, "swingjs/j2s");
+var coreDir = path.join(j2sDir, "core");
+
+var readList = function(file) {
+	return fs.readFileSync(file, "utf8").split(/\r?\n/).map(function(s) { return s.trim(); })
+		.filter(function(s) { return s && s.indexOf("#") != 0; });
+};
+
+var writeList = function(name, files) {
+	var f = "_j2sclasslist_" + name + ".txt";
+	fs.writeFileSync(f, files.join("\n") + "\n");
+	console.log("j2scorebundle: " + files.length + " classes in " + f);
+};
+
+// as for the call-core target of build-core-applet.xml
+var writeBundle = function(name, files) {
+	var core = path.join(__dirname, "../srcjs/js/core");
+	var top = fs.readFileSync(path.join(core, "coretop2.js"), "utf8");
+	// (function(Clazz,Clazz_setTVer,Clazz_toLong,...){
+	var aliases = top.substring(top.indexOf("(", top.indexOf("function")) + 1, top.indexOf(")"))
+		.split(",").filter(function(s) { return s.indexOf("Clazz_") == 0; })
+		.map(function(s) { return s.substring(6); });
+	var re = new RegExp("Clazz\\.(" + aliases.join("|") + ")\\b", "g");
+	var js = [];
+	for (var i = 0; i < files.length; i++) {
+		var s = fs.readFileSync(path.join(j2sDir, files[i]), "utf8");
+		js.push(s.endsWith("\n") ? s : s + "\n");
+	}
+	js = top + js.join("").replace(re, "Clazz_$1")
+		+ fs.readFileSync(path.join(core, "corebottom2.js"), "utf8");
+	var f = path.join(coreDir, "core" + name + ".js");
+	fs.mkdirSync(coreDir, { recursive: true });
+	fs.writeFileSync(f, js);
+	console.log("j2scorebundle: wrote " + f + " (" + Math.round(js.length / 1024) + " KB)");
+};
+
+var Clazz = j2snode.load({ site: opts.site, core: opts.core ? opts.core.split(/[ ,]/) : null });
+var t0 = Date.now();
+j2snode.runMain(Clazz, opts.main, opts.args ? opts.args.split(" ") : []);
+var nStartup = Clazz.ClassFilesLoaded.length;
+console.log("j2scorebundle: main() returned after " + (Date.now() - t0) + " ms; " + nStartup
+	+ " classes loaded");
+
+setTimeout(function() {
+	var loaded = Clazz.ClassFilesLoaded;
+	var seen = {};
+	var isNew = function(f) {
+		return !seen[f] && fs.existsSync(path.join(j2sDir, f)) && (seen[f] = true);
+	};
+	var startup = (opts.tiers ? loaded.slice(0, nStartup) : loaded).filter(isNew);
+	if (opts.include) {
+		var more = readList(opts.include);
+		for (var i = 0; i < more.length; i++)
+			if (isNew(more[i]))
+				startup.push(more[i]);
+	}
+	writeList(opts.name, startup);
+	writeBundle(opts.name, startup);
+	if (opts.tiers) {
+		var lazy = loaded.slice(nStartup).filter(isNew);
+		if (lazy.length) {
+			writeList(opts.name + "_lazy", lazy);
+			writeBundle(opts.name + "_lazy", lazy);
+		} else {
+			console.log("j2scorebundle: no classes loaded after main() returned");
+		}
+	}
+	// threads and timers started by the app would otherwise keep Node running
+	process.exit(0);
+}, +opts.wait);
@@ -0,0 +1,124 @@
+// j2slongbench.js
+//
+// Compares the two exact-long backends of j2sClazz.js -- "rms", the default,
+// and "i32", int32 pairs in scratch variables -- on long-heavy loops of the
+// kind transpiled code runs: java.util.Random's linear congruential
+// generator, 64-bit FNV-1a hashing, xorshift64, and long division and
+// remainder. Each loop is run with both backends from the same inputs, and
+// any difference in the results is reported. (rms's $div works in doubles and
+// can be off by a few units for dividends beyond 2^53; i32 divides exactly.)
+//
+// usage:
+//
+//   node tools/j2slongbench.js -site site [-n 1000000] [-runs 3]
+//
+//   -site     the site directory holding swingjs/j2s (default site)
+//   -n        iterations per loop (default 1000000)
+//   -runs     times to run each loop; the best time is reported (default 3)
+
+var j2snode = require("./j2snode.js");
+
+var opts = { site: "site", n: 1000000, runs: 3 };
+
+var usage = function(msg) {
+	msg && console.error(msg);
+	console.error("usage: node j2slongbench.js -site site [-n 1000000] [-runs 3]");
+	process.exit(2);
+};
+
+var argv = process.argv.slice(2);
+for (var i = 0; i < argv.length; i++) {
+	var key = argv[i];
+	switch (key) {
+	case "-site":
+	case "-n":
+	case "-runs":
+		if (i + 1 >= argv.length)
+			usage("missing value for " + key);
+		opts[key.substring(1)] = argv[++i];
+		break;
+	default:
+		usage("unknown option " + key);
+	}
+}
+
+var Clazz = j2snode.load({ site: opts.site, quiet: true });
+var Long = java.lang.Long;
+var hex = function(s) {
+	return Long.parseLong$S$I(s, 16);
+};
+var dec = function(s) {
+	return Long.parseLong$S(s);
+};
+
+// each loop is written as the transpiler writes the Java in its comment
+var loops = {
+
+	// seed = (seed * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1); sum += (int) (seed >>> 16);
+	random: function(n) {
+		var mult = hex("5DEECE66D"), mask = hex("FFFFFFFFFFFF");
+		var seed = hex("2A5DEECE66D"), sum = 0;
+		for (var i = 0; i < n; i++) {
+			seed = Long.$and(Long.$add(Long.$mul(seed, mult), 11), mask);
+			sum = (sum + Long.$ival(Long.$usr(seed, 16))) | 0;
+		}
+		return Long.$s(seed) + " " + sum;
+	},
+
+	// h ^= s.charAt(i % 64); h *= 0x100000001b3L;
+	fnv1a: function(n) {
+		var prime = hex("100000001B3"), h = dec("-3750763034362895579"); // 0xCBF29CE484222325
+		for (var i = 0; i < n; i++) {
+			h = Long.$xor(h, 48 + (i % 64));
+			h = Long.$mul(h, prime);
+		}
+		return Long.$s(h);
+	},
+
+	// x ^= x << 13; x ^= x >>> 7; x ^= x << 17;
+	xorshift: function(n) {
+		var x = dec("-7046029254386353131"); // 0x9E3779B97F4A7C15
+		for (var i = 0; i < n; i++) {
+			x = Long.$xor(x, Long.$sl(x, 13));
+			x = Long.$xor(x, Long.$usr(x, 7));
+			x = Long.$xor(x, Long.$sl(x, 17));
+		}
+		return Long.$s(x);
+	},
+
+	// q += x / 1000003 + x % 97; x += 0x1234567890123L;
+	divmod: function(n) {
+		var step = hex("1234567890123"), x = hex("7FFF000000000000"), q = 0;
+		n = Math.max(1, n / 10 | 0);
+		for (var i = 0; i < n; i++) {
+			q = Long.$add(q, Long.$div(x, 1000003), Long.$mod(x, 97));
+			x = Long.$add(x, step);
+		}
+		return Long.$s(q);
+	}
+};
+
+var time = function(f) {
+	var best = Infinity, ret;
+	for (var i = 0; i < opts.runs; i++) {
+		var t = Date.now();
+		ret = f(+opts.n);
+		best = Math.min(best, Date.now() - t);
+	}
+	return [best, ret];
+};
+
+console.log("j2slongbench: n=" + opts.n + ", best of " + opts.runs);
+console.log("loop        rms ms    i32 ms");
+for (var name in loops) {
+	Clazz._setLongBackend("rms");
+	var rms = time(loops[name]);
+	Clazz._setLongBackend("i32");
+	var i32 = time(loops[name]);
+	var pad = function(s, n) {
+		s = "" + s;
+		return (s.length >= n ? s : "          ".substring(0, n - s.length) + s);
+	};
+	console.log((name + "          ").substring(0, 10) + pad(rms[0], 8) + pad(i32[0], 10)
+		+ (rms[1] == i32[1] ? "" : "   results differ: rms " + rms[1] + ", i32 " + i32[1]));
+}
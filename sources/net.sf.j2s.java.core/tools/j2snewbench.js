@@ -0,0 +1,130 @@
+// j2snewbench.js
+//
+// Times Clazz.new_ with and without its fast path (C$.$new$; see
+// Clazz._newFast in j2sClazz.js) on the kinds of objects that transpiled
+// code makes many of: javajs.util.P3 points, with the default constructor
+// and with P3.new3, java.awt.Point and java.awt.Rectangle with constructor
+// arguments, java.util.ArrayList, and java.awt.event.ActionEvent, a subclass
+// several levels down from java.util.EventObject. Each loop is run both ways
+// and the objects made are checked to be the same.
+//
+// usage:
+//
+//   node tools/j2snewbench.js -site site [-n 1000000] [-runs 3]
+//
+//   -site     the site directory holding swingjs/j2s (default site)
+//   -n        objects made per loop (default 1000000)
+//   -runs     times to run each loop; the best time is reported (default 3)
+
+var j2snode = require("./j2snode.js");
+
+var opts = { site: "site", n: 1000000, runs: 3 };
+
+var usage = function(msg) {
+	msg && console.error(msg);
+	console.error("usage: node j2snewbench.js -site site [-n 1000000] [-runs 3]");
+	process.exit(2);
+};
+
+var argv = process.argv.slice(2);
+for (var i = 0; i < argv.length; i++) {
+	var key = argv[i];
+	switch (key) {
+	case "-site":
+	case "-n":
+	case "-runs":
+		if (i + 1 >= argv.length)
+			usage("missing value for " + key);
+		opts[key.substring(1)] = argv[++i];
+		break;
+	default:
+		usage("unknown option " + key);
+	}
+}
+
+var Clazz = j2snode.load({ site: opts.site, quiet: true });
+var P3 = Clazz.loadClass("javajs.util.P3");
+var Point = Clazz.loadClass("java.awt.Point");
+var Rectangle = Clazz.loadClass("java.awt.Rectangle");
+var ArrayList = Clazz.loadClass("java.util.ArrayList");
+var ActionEvent = Clazz.loadClass("java.awt.event.ActionEvent");
+
+// each loop is written as the transpiler writes the Java in its comment;
+// the last object made is returned, as a string, for the check
+var loops = {
+
+	// P3 p = new P3(); p.x = i;
+	P3: function(n) {
+		var p;
+		for (var i = 0; i < n; i++) {
+			p = Clazz.new_(P3);
+			p.x = i;
+		}
+		return p.toString();
+	},
+
+	// P3 p = P3.new3(i, 1, 2);
+	"P3.new3": function(n) {
+		var p;
+		for (var i = 0; i < n; i++)
+			p = P3.new3$F$F$F(i, 1, 2);
+		return p.toString();
+	},
+
+	// Point p = new Point(i, i + 1);
+	Point: function(n) {
+		var p;
+		for (var i = 0; i < n; i++)
+			p = Clazz.new_(Point.c$$I$I, [i, i + 1]);
+		return p.toString();
+	},
+
+	// Rectangle r = new Rectangle(i, 0, 10, 20);
+	Rectangle: function(n) {
+		var r;
+		for (var i = 0; i < n; i++)
+			r = Clazz.new_(Rectangle.c$$I$I$I$I, [i, 0, 10, 20]);
+		return r.toString();
+	},
+
+	// List<Object> list = new ArrayList<>();
+	ArrayList: function(n) {
+		var list;
+		for (var i = 0; i < n; i++)
+			list = Clazz.new_(ArrayList);
+		return list.size$() + " " + list.__CLASS_NAME__;
+	},
+
+	// ActionEvent e = new ActionEvent(src, ActionEvent.ACTION_PERFORMED, "go" + (i & 7));
+	ActionEvent: function(n) {
+		var src = Clazz.new_(ArrayList), e;
+		for (var i = 0; i < n; i++)
+			e = Clazz.new_(ActionEvent.c$$O$I$S, [src, 1001, "go" + (i & 7)]);
+		return e.getActionCommand$() + " " + e.getID$() + " " + (e.getSource$() === src);
+	}
+};
+
+var time = function(f) {
+	var best = Infinity, ret;
+	for (var i = 0; i < opts.runs; i++) {
+		var t = Date.now();
+		ret = f(+opts.n);
+		best = Math.min(best, Date.now() - t);
+	}
+	return [best, ret];
+};
+
+console.log("j2snewbench: n=" + opts.n + ", best of " + opts.runs);
+console.log("loop           usual ms   fast ms");
+for (var name in loops) {
+	Clazz._newFast = false;
+	var usual = time(loops[name]);
+	Clazz._newFast = true;
+	var fast = time(loops[name]);
+	var pad = function(s, n) {
+		s = "" + s;
+		return (s.length >= n ? s : "          ".substring(0, n - s.length) + s);
+	};
+	console.log((name + "            ").substring(0, 12) + pad(usual[0], 11) + pad(fast[0], 10)
+		+ (usual[1] == fast[1] ? "" : "   results differ: usual " + usual[1] + ", fast " + fast[1]));
+}
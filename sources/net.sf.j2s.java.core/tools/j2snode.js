@@ -0,0 +1,99 @@
+// j2snode.js
+//
+// Runs the SwingJS class loader (srcjs/js/j2sClazz.js) in Node.js, without a
+// browser, against a built site directory, so that tools can run transpiled
+// code headlessly. Only j2sClazz.js is loaded -- no jQuery and no j2sApplet.js --
+// so J2S, window, document, and navigator are minimal stand-ins. Class files are
+// read synchronously from site/swingjs/j2s, just as the browser reads them with
+// synchronous XHR, and asynchronously when prefetched. Code that needs a real
+// DOM (Swing or AWT components) will not run.
+//
+// var j2s = require("./j2snode.js");
+// var Clazz = j2s.load({ site: "site" });
+// j2s.runMain(Clazz, "test.Test_Map", []);
+//
+// options:
+//   site       the site directory (required)
+//   clazz      the j2sClazz.js to load (default ../srcjs/js/j2sClazz.js)
+//   core       core bundle names to load first, as Info.core, e.g. ["swingjs"]
+//   lazyCore   core bundle names to load on the first class not yet defined,
+//              as Info.lazyCore
+//   bundles    true to load the j2s.bundle.packages bundles, as Info.bundles
+//   prefetch   true to prefetch the classes a class uses, as Info.prefetch;
+//              see Clazz._Loader.prefetchStats
+//   quiet      true to discard System.out and System.err
+//   trace      true, or packages whose method calls are to be counted, to
+//              start a trace with Clazz.startTrace before any class is loaded
+//   long       "i32" for the int32-pair exact-long methods (see j2sClazz.js)
+
+var fs = require("fs");
+var path = require("path");
+var vm = require("vm");
+
+var element = function() {
+	return { style: {}, appendChild: function() {}, removeChild: function() {},
+		setAttribute: function() {}, addEventListener: function() {} };
+};
+
+var load = function(options) {
+	var site = path.resolve(options.site);
+	var clazzFile = options.clazz || path.join(__dirname, "../srcjs/js/j2sClazz.js");
+	var j2sPath = "swingjs/j2s";
+	var coreFile = function(name) {
+		return j2sPath + "/core/core" + name + ".z.js";
+	};
+
+	global.window = global.self = global;
+	global.navigator = { userAgent: "node", appVersion: "node", userA: "node" };
+	global.document = { location: { href: "file:///" + site + "/index.html", protocol: "file:", host: "" },
+		body: element(), title: "", createElement: element, createTextNode: element,
+		getElementById: function() { return null; } };
+	global.alert = function(s) { console.error("j2snode alert: " + s); };
+	console.err || (console.err = console.error);
+	global.J2S = {
+		// System.out and System.err go to window.console, using console.err
+		Globals: { "j2s.lib": { base: j2sPath + "/", alias: ".", console: (options.quiet ? null : console) } },
+		setGlobal: function(a, v) { J2S.Globals[a] = v; },
+		getGlobal: function(a) { return J2S.Globals[a]; },
+		_version: "node",
+		_isAsync: false,
+		_loadcore: true,
+		_coreFiles: (options.core || []).map(coreFile),
+		_lazyCoreFiles: (options.lazyCore || []).map(coreFile),
+		_bundles: !!options.bundles,
+		_prefetch: !!options.prefetch,
+		_nozcore: true,
+		_checkLoad: false,
+		_longBackend: options.long || null,
+		// java.lang.Thread names threads for the page's first applet
+		_applets: { master: { _id: "node" } },
+		getFileData: function(fileName, fWhenDone) {
+			var f = path.join(site, fileName.replace(/^\.?\//, ""));
+			if (fWhenDone) {
+				fs.readFile(f, "utf8", function(err, data) { fWhenDone(err ? null : data); });
+				return;
+			}
+			// as for a 404; the class loader reports "was not found"
+			return (fs.existsSync(f) ? fs.readFileSync(f, "utf8") : "data: no " + fileName);
+		}
+	};
+	global.Clazz = { _VERSION_R: "node", _VERSION_T: "unknown" };
+	vm.runInThisContext(fs.readFileSync(clazzFile, "utf8"), { filename: clazzFile });
+	J2S.LoadClazz(Clazz);
+	options.trace && Clazz.startTrace(options.trace === true ? null : options.trace);
+	// in the browser, java.lang.Class comes in with the core files
+	Clazz.loadClass("java.lang.Class");
+	return Clazz;
+};
+
+var runMain = function(Clazz, className, args) {
+	var cl = Clazz.loadClass(className);
+	if (!cl || !cl.main$SA)
+		throw new Error("j2snode: no main method in " + className);
+	var a = Clazz.array(String, args.length);
+	for (var i = 0; i < args.length; i++)
+		a[i] = args[i];
+	cl.main$SA(a);
+};
+
+module.exports = { load: load, runMain: runMain };
@@ -0,0 +1,84 @@
+// j2stimeline.js
+//
+// Runs an app's main class headlessly in Node.js (see j2snode.js) with a
+// trace running from the start (Clazz.startTrace in j2sClazz.js) and writes
+// the trace as Chrome trace-event JSON, for chrome://tracing or Perfetto:
+// the time to fetch and run each class file, each $clinit$ and static
+// initialization, the objects made of each class, and, with -packages, the
+// calls to each method of the classes in those packages. A summary of where
+// the time went is printed.
+//
+// In the browser, use the j2stimeline URL flag and J2S.saveTrace() instead.
+//
+// usage:
+//
+//   node tools/j2stimeline.js -site site -main my.App [-args "..."] [-packages my.app;my.lib]
+//        [-wait ms] [-out j2stimeline.json] [-core swingjs]
+//
+//   -site      the site directory holding swingjs/j2s (default site)
+//   -main      the class whose main(String[]) is run
+//   -args      arguments for main()
+//   -packages  packages, each with its subpackages, whose method calls are counted
+//   -wait      time to keep tracing after main() returns (default 0)
+//   -out       the trace file (default j2stimeline.json)
+//   -core      core bundle names to load first, as Info.core
+
+var fs = require("fs");
+var j2snode = require("./j2snode.js");
+
+var opts = { site: "site", args: "", packages: null, wait: 0, out: "j2stimeline.json", core: null };
+
+var usage = function(msg) {
+	msg && console.error(msg);
+	console.error("usage: node j2stimeline.js -site site -main my.App [-args \"...\"] [-packages my.app;my.lib]"
+		+ " [-wait ms] [-out j2stimeline.json] [-core swingjs]");
+	process.exit(2);
+};
+
+var argv = process.argv.slice(2);
+for (var i = 0; i < argv.length; i++) {
+	var key = argv[i];
+	switch (key) {
+	case "-site":
+	case "-main":
+	case "-args":
+	case "-packages":
+	case "-wait":
+	case "-out":
+	case "-core":
+		if (i + 1 >= argv.length)
+			usage("missing value for " + key);
+		opts[key.substring(1)] = argv[++i];
+		break;
+	default:
+		usage("unknown option " + key);
+	}
+}
+opts.main || usage("no -main class");
+
+var Clazz = j2snode.load({ site: opts.site, core: opts.core ? opts.core.split(" ") : null,
+	trace: opts.packages || true });
+j2snode.runMain(Clazz, opts.main, opts.args ? opts.args.split(" ") : []);
+
+setTimeout(function() {
+	var trace = Clazz.getTrace(true);
+	fs.writeFileSync(opts.out, JSON.stringify(trace));
+	// the time in each kind of event, not counting the events within it
+	var events = trace.traceEvents.filter(function(e) { return e.ph == "X"; });
+	events.sort(function(a, b) { return a.ts - b.ts || b.dur - a.dur; });
+	var self = {}, stack = [];
+	for (var i = 0; i < events.length; i++) {
+		var e = events[i];
+		while (stack.length && stack[stack.length - 1].ts + stack[stack.length - 1].dur <= e.ts)
+			stack.pop();
+		stack.length && (self[stack[stack.length - 1].cat] -= e.dur);
+		self[e.cat] = (self[e.cat] || 0) + e.dur;
+		stack.push(e);
+	}
+	var counts = trace.traceEvents[trace.traceEvents.length - 1].args;
+	var n = function(o) { return Object.keys(o).length; };
+	console.error("j2stimeline: " + opts.out + ": " + events.length + " events, "
+		+ n(counts["new"]) + " classes instantiated, " + n(counts.calls) + " methods called");
+	for (var cat in self)
+		console.error("  " + (cat + "          ").substring(0, 10) + (self[cat] / 1000).toFixed(1) + " ms");
+}, +opts.wait);